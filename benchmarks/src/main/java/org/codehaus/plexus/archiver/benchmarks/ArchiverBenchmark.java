@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.plexus.archiver.AbstractArchiver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures creating archives of every format from every corpus.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 2, time = 10 )
+@Measurement( iterations = 5, time = 10 )
+public class ArchiverBenchmark
+{
+
+    @Param
+    public Corpus corpus;
+
+    @Param
+    public Format format;
+
+    private File sourceDir;
+
+    private long[] measured;
+
+    private File destFile;
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws IOException
+    {
+        final File baseDir = Util.getBaseDir();
+        sourceDir = corpus.getDirectory( baseDir );
+        measured = Util.measure( sourceDir );
+        destFile = new File( baseDir, "created-" + corpus + "." + format.getExtension() );
+    }
+
+    @Setup( Level.Invocation )
+    public void deleteArchive()
+        throws IOException
+    {
+        Util.delete( destFile );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+        throws IOException
+    {
+        Util.delete( destFile );
+    }
+
+    @Benchmark
+    public File create( Throughput throughput )
+        throws IOException
+    {
+        final AbstractArchiver archiver = format.newArchiver();
+        archiver.setDestFile( destFile );
+        archiver.addDirectory( sourceDir );
+        archiver.createArchive();
+        throughput.add( measured );
+        return destFile;
+    }
+
+}
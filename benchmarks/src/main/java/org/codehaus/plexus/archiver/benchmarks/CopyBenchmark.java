@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.plexus.archiver.util.Streams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the copy paths shared by the archivers and unarchivers, whose buffers come from the buffer pool. Run
+ * with {@code -prof gc}, the allocations per operation don't depend on the size of the contents copied.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 5, time = 5 )
+public class CopyBenchmark
+{
+
+    private static final OutputStream SINK = new OutputStream()
+    {
+
+        @Override
+        public void write( int b )
+        {
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+        {
+        }
+
+    };
+
+    @Param( { "4096", "1048576" } )
+    public int size;
+
+    private ByteArrayInputStream contents;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        final byte[] data = new byte[ size ];
+        new Random( 4711 ).nextBytes( data );
+        contents = new ByteArrayInputStream( data );
+    }
+
+    @Benchmark
+    public long copy()
+        throws IOException
+    {
+        contents.reset();
+        return Streams.copy( contents, SINK );
+    }
+
+    @Benchmark
+    public long copyBufferedStreams()
+        throws IOException
+    {
+        contents.reset();
+        final InputStream in = Streams.bufferedInputStream( contents );
+        final OutputStream out = Streams.bufferedOutputStream( SINK );
+        final long copied = Streams.copy( in, out );
+        in.close();
+        out.close();
+        return copied;
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Synthetic sets of files to archive. They are generated from a fixed seed, so every run archives the same data.
+ */
+public enum Corpus
+{
+
+    /**
+     * Many small text files in a shallow tree.
+     */
+    SMALL_FILES
+    {
+        @Override
+        void generate( File dir, Random random )
+            throws IOException
+        {
+            for ( int i = 0; i < 5000; i++ )
+            {
+                writeText( new File( dir, "d" + ( i % 50 ) + "/file" + i + ".txt" ), 1024 + random.nextInt( 7168 ),
+                           random );
+            }
+        }
+    },
+
+    /**
+     * A few large compressible files.
+     */
+    HUGE_FILES
+    {
+        @Override
+        void generate( File dir, Random random )
+            throws IOException
+        {
+            for ( int i = 0; i < 2; i++ )
+            {
+                writeText( new File( dir, "huge" + i + ".txt" ), 32 * 1024 * 1024, random );
+            }
+        }
+    },
+
+    /**
+     * Files of random bytes, which behave like already compressed content such as images or nested archives.
+     */
+    PRE_COMPRESSED
+    {
+        @Override
+        void generate( File dir, Random random )
+            throws IOException
+        {
+            for ( int i = 0; i < 200; i++ )
+            {
+                writeRandom( new File( dir, "d" + ( i % 10 ) + "/blob" + i + ".bin" ), 256 * 1024, random );
+            }
+        }
+    },
+
+    /**
+     * Small files in a deep directory tree, with long paths.
+     */
+    DEEP_TREE
+    {
+        @Override
+        void generate( File dir, Random random )
+            throws IOException
+        {
+            for ( int branch = 0; branch < 25; branch++ )
+            {
+                File level = new File( dir, "branch" + branch );
+                for ( int depth = 0; depth < 40; depth++ )
+                {
+                    level = new File( level, "level-" + depth );
+                    writeText( new File( level, "file.txt" ), 512 + random.nextInt( 2048 ), random );
+                }
+            }
+        }
+    };
+
+    private static final String[] WORDS =
+    {
+        "archive", "entry", "plexus", "compress", "stream", "manifest", "resource", "directory", "file", "jar",
+        "public", "class", "void", "return", "final", "static", "import", "package", "new", "null"
+    };
+
+    abstract void generate( File dir, Random random )
+        throws IOException;
+
+    /**
+     * Returns the directory holding the corpus, generating it first if needed.
+     *
+     * @param baseDir the directory corpora are generated in
+     *
+     * @return the directory holding the corpus
+     *
+     * @throws IOException if the corpus can't be generated
+     */
+    public File getDirectory( File baseDir )
+        throws IOException
+    {
+        final File dir = new File( baseDir, name() );
+        final File complete = new File( baseDir, name() + ".complete" );
+        if ( !complete.exists() )
+        {
+            Util.delete( dir );
+            generate( dir, new Random( ordinal() ) );
+            complete.createNewFile();
+        }
+        return dir;
+    }
+
+    static void writeText( File file, int size, Random random )
+        throws IOException
+    {
+        final OutputStream out = open( file );
+        try
+        {
+            int written = 0;
+            while ( written < size )
+            {
+                final byte[] word = ( WORDS[random.nextInt( WORDS.length )]
+                    + ( random.nextInt( 10 ) == 0 ? "\n" : " " ) ).getBytes( "US-ASCII" );
+                final int n = Math.min( word.length, size - written );
+                out.write( word, 0, n );
+                written += n;
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    static void writeRandom( File file, int size, Random random )
+        throws IOException
+    {
+        final byte[] data = new byte[ size ];
+        random.nextBytes( data );
+        final OutputStream out = open( file );
+        try
+        {
+            out.write( data );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static OutputStream open( File file )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        return new BufferedOutputStream( new FileOutputStream( file ) );
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.benchmarks;
+
+import org.codehaus.plexus.archiver.AbstractArchiver;
+import org.codehaus.plexus.archiver.AbstractUnArchiver;
+import org.codehaus.plexus.archiver.dir.DirectoryArchiver;
+import org.codehaus.plexus.archiver.jar.JarArchiver;
+import org.codehaus.plexus.archiver.tar.TarArchiver;
+import org.codehaus.plexus.archiver.tar.TarGZipUnArchiver;
+import org.codehaus.plexus.archiver.tar.TarLongFileMode;
+import org.codehaus.plexus.archiver.tar.TarUnArchiver;
+import org.codehaus.plexus.archiver.tar.TarXZUnArchiver;
+import org.codehaus.plexus.archiver.zip.ZipArchiver;
+import org.codehaus.plexus.archiver.zip.ZipUnArchiver;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+
+/**
+ * The archive formats benchmarked, with the archivers and unarchivers handling them.
+ */
+public enum Format
+{
+
+    ZIP( "zip" ),
+
+    JAR( "jar" ),
+
+    TAR( "tar" ),
+
+    TAR_GZ( "tar.gz" ),
+
+    TAR_XZ( "tar.xz" ),
+
+    /**
+     * Copying the files to a directory, for {@link ArchiverBenchmark} only.
+     */
+    DIRECTORY( "dir" );
+
+    private static final Logger LOGGER = new ConsoleLogger( Logger.LEVEL_WARN, "benchmark" );
+
+    private final String extension;
+
+    Format( String extension )
+    {
+        this.extension = extension;
+    }
+
+    public String getExtension()
+    {
+        return extension;
+    }
+
+    public AbstractArchiver newArchiver()
+    {
+        final AbstractArchiver archiver;
+        switch ( this )
+        {
+            case ZIP:
+                archiver = new ZipArchiver();
+                break;
+            case JAR:
+                archiver = new JarArchiver();
+                break;
+            case TAR:
+            case TAR_GZ:
+            case TAR_XZ:
+                final TarArchiver tarArchiver = new TarArchiver();
+                tarArchiver.setLongfile( TarLongFileMode.posix );
+                if ( this == TAR_GZ )
+                {
+                    tarArchiver.setCompression( TarArchiver.TarCompressionMethod.gzip );
+                }
+                else if ( this == TAR_XZ )
+                {
+                    tarArchiver.setCompression( TarArchiver.TarCompressionMethod.xz );
+                }
+                archiver = tarArchiver;
+                break;
+            default:
+                archiver = new DirectoryArchiver();
+        }
+        archiver.enableLogging( LOGGER );
+        return archiver;
+    }
+
+    public AbstractUnArchiver newUnArchiver()
+    {
+        final AbstractUnArchiver unArchiver;
+        switch ( this )
+        {
+            case ZIP:
+            case JAR:
+                unArchiver = new ZipUnArchiver();
+                break;
+            case TAR:
+                unArchiver = new TarUnArchiver();
+                break;
+            case TAR_GZ:
+                unArchiver = new TarGZipUnArchiver();
+                break;
+            case TAR_XZ:
+                unArchiver = new TarXZUnArchiver();
+                break;
+            default:
+                throw new UnsupportedOperationException( "There is no unarchiver for " + this );
+        }
+        unArchiver.enableLogging( LOGGER );
+        return unArchiver;
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the uncompressed megabytes and the entries processed, which JMH reports per second next to the
+ * operations.
+ */
+@State( Scope.Thread )
+@AuxCounters( AuxCounters.Type.OPERATIONS )
+public class Throughput
+{
+
+    private long bytes;
+
+    private long entries;
+
+    @Setup( Level.Iteration )
+    public void reset()
+    {
+        bytes = 0;
+        entries = 0;
+    }
+
+    /**
+     * @param measured the number of files processed and their total size, see {@link Util#measure(java.io.File)}
+     */
+    void add( long[] measured )
+    {
+        entries += measured[0];
+        bytes += measured[1];
+    }
+
+    public double megabytes()
+    {
+        return bytes / ( 1024.0 * 1024.0 );
+    }
+
+    public long entries()
+    {
+        return entries;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import org.codehaus.plexus.util.FileUtils;
+
+final class Util
+{
+
+    private Util()
+    {
+    }
+
+    /**
+     * @return the directory corpora and archives are generated in, the {@code benchmark.dir} system property or
+     * a directory below the temporary directory
+     */
+    static File getBaseDir()
+    {
+        final String dir = System.getProperty( "benchmark.dir" );
+        return dir != null
+                   ? new File( dir )
+                   : new File( System.getProperty( "java.io.tmpdir" ), "plexus-archiver-benchmarks" );
+    }
+
+    static void delete( File file )
+        throws IOException
+    {
+        if ( file.isDirectory() )
+        {
+            FileUtils.deleteDirectory( file );
+        }
+        else
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * @return the number of regular files below a directory and their total size
+     */
+    static long[] measure( File file )
+    {
+        final File[] children = file.listFiles();
+        if ( children == null )
+        {
+            return new long[]{ 1, file.length() };
+        }
+        final long[] total = new long[ 2 ];
+        for ( File child : children )
+        {
+            final long[] measured = measure( child );
+            total[0] += measured[0];
+            total[1] += measured[1];
+        }
+        return total;
+    }
+
+}
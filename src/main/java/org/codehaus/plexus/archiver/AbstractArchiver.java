@@ -19,7 +19,10 @@
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -32,8 +35,10 @@
 import javax.annotation.Nonnull;
 import org.codehaus.plexus.PlexusConstants;
 import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.archiver.diags.ArchiverEvents;
 import org.codehaus.plexus.archiver.manager.ArchiverManager;
 import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
+import org.codehaus.plexus.archiver.util.ArchiveOutputCache;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
 import org.codehaus.plexus.components.io.attributes.PlexusIoResourceAttributes;
 import org.codehaus.plexus.components.io.functions.ResourceAttributeSupplier;
@@ -107,6 +112,10 @@
     // contextualized.
     private ArchiverManager archiverManager;
 
+    private ArchiveOutputCache outputCache;
+
+    private OutputStream destStream;
+
     private static class AddedResourceCollection
     {
 
@@ -143,6 +152,8 @@ private int maybeOverridden( int suggestedMode, boolean isDir )
      */
     private boolean ignorePermissions = false;
 
+    private ArchiverMetrics metrics = ArchiverMetrics.NONE;
+
     @Override
     public String getDuplicateBehavior()
     {
@@ -944,7 +955,7 @@ else if ( o instanceof AddedResourceCollection )
     protected boolean checkForced()
         throws ArchiverException
     {
-        if ( !isForced() && isSupportingForced() && isUptodate() )
+        if ( destStream == null && !isForced() && isSupportingForced() && isUptodate() )
         {
             getLogger().debug( "Archive " + getDestFile() + " is uptodate." );
             return false;
@@ -965,7 +976,9 @@ protected void runArchiveFinalizers()
         {
             for ( final ArchiveFinalizer finalizer : finalizers )
             {
+                final ArchiverEvents.Recording recording = ArchiverEvents.finalizerExecution( finalizer );
                 finalizer.finalizeArchiveCreation( this );
+                recording.end( -1 );
             }
         }
     }
@@ -975,6 +988,16 @@ public final void createArchive()
         throws ArchiverException, IOException
     {
         validate();
+        final long startNanos = System.nanoTime();
+        final ArchiverEvents.Recording recording =
+            ArchiverEvents.archiveCreation( getArchiveType(), destStream == null ? getDestFile() : null );
+        final String fingerprint = getFingerprint();
+        if ( fingerprint != null && restoreFromOutputCache( fingerprint ) )
+        {
+            cleanUp();
+            archiveCreated( startNanos, recording );
+            return;
+        }
         try
         {
             try
@@ -1011,6 +1034,150 @@ public final void createArchive()
         }
 
         postCreateArchive();
+
+        if ( fingerprint != null )
+        {
+            try
+            {
+                outputCache.store( fingerprint, getDestFile() );
+            }
+            catch ( IOException e )
+            {
+                getLogger().warn( "Unable to store " + getDestFile() + " in the archive cache: " + e.getMessage() );
+            }
+        }
+        archiveCreated( startNanos, recording );
+    }
+
+    private void archiveCreated( long startNanos, ArchiverEvents.Recording recording )
+    {
+        metrics.phaseCompleted( ArchiverMetrics.Phase.TOTAL, System.nanoTime() - startNanos );
+        final File destFile = getDestFile();
+        final long size = destStream == null && destFile != null && destFile.isFile() ? destFile.length() : -1;
+        metrics.archiveProcessed( size );
+        recording.end( size );
+    }
+
+    /**
+     * Creates the archive into a stream instead of the destination file, for instance to upload it while it is
+     * created. The destination file is neither written nor required, nor is the archive ever considered up to date.
+     * <p>
+     * The stream is written sequentially and flushed, but not closed. Archivers which can't create their archive
+     * this way, see {@link #isSupportingStreaming()}, throw an {@link ArchiverException}.</p>
+     *
+     * @param out the stream the archive is written to
+     *
+     * @throws ArchiverException if the archive can't be created, or not into a stream
+     * @throws IOException if writing the archive fails
+     *
+     * @since 4.1.1
+     */
+    public final void createArchive( @Nonnull OutputStream out )
+        throws ArchiverException, IOException
+    {
+        if ( !isSupportingStreaming() )
+        {
+            throw new ArchiverException( getArchiveType() + " archives can't be written to a stream." );
+        }
+        destStream = out;
+        try
+        {
+            createArchive();
+        }
+        finally
+        {
+            destStream = null;
+        }
+    }
+
+    /**
+     * Creates the archive into a channel instead of the destination file, see {@link #createArchive(OutputStream)}.
+     *
+     * @param channel the channel the archive is written to, written sequentially but not closed
+     *
+     * @throws ArchiverException if the archive can't be created, or not into a channel
+     * @throws IOException if writing the archive fails
+     *
+     * @since 4.1.1
+     */
+    public final void createArchive( @Nonnull WritableByteChannel channel )
+        throws ArchiverException, IOException
+    {
+        createArchive( Channels.newOutputStream( channel ) );
+    }
+
+    /**
+     * @return whether the archive can be written to a stream, see {@link #createArchive(OutputStream)}
+     *
+     * @since 4.1.1
+     */
+    public boolean isSupportingStreaming()
+    {
+        return false;
+    }
+
+    /**
+     * @return the stream the archive is being written to, or null if it is written to the destination file
+     *
+     * @since 4.1.1
+     */
+    protected OutputStream getDestStream()
+    {
+        return destStream;
+    }
+
+    /**
+     * @return the fingerprint of the archive about to be created, or null if it isn't cached
+     */
+    private String getFingerprint()
+        throws IOException
+    {
+        if ( outputCache == null || destStream != null || getDestFile() == null || dotFileDirectory != null
+                 || ( finalizers != null && !finalizers.isEmpty() ) )
+        {
+            return null;
+        }
+        final String configuration = getConfigurationFingerprint();
+        if ( configuration == null )
+        {
+            return null;
+        }
+        return outputCache.fingerprint( getClass().getName() + '\n' + duplicateBehavior + '\n' + includeEmptyDirs
+                                            + '\n' + ignorePermissions + '\n' + configuration, getResources() );
+    }
+
+    private boolean restoreFromOutputCache( String fingerprint )
+    {
+        try
+        {
+            if ( outputCache.restore( fingerprint, getDestFile() ) )
+            {
+                getLogger().info( "Restored " + getArchiveType() + ": " + getDestFile().getAbsolutePath()
+                                      + " from the archive cache" );
+                return true;
+            }
+        }
+        catch ( IOException e )
+        {
+            getLogger().warn( "Unable to restore " + getDestFile() + " from the archive cache: " + e.getMessage() );
+        }
+        return false;
+    }
+
+    /**
+     * Describes the configuration of the archiver the archive depends on, besides its entries, for the
+     * {@link ArchiveOutputCache}.
+     * <p>
+     * Archivers return null by default, which means their archives are never cached. Subclasses supporting the cache
+     * must describe every setting that changes the archive they create.</p>
+     *
+     * @return a description of the configuration, or null if the archive can't be cached
+     *
+     * @since 4.1.1
+     */
+    protected String getConfigurationFingerprint()
+    {
+        return null;
     }
 
     protected boolean hasVirtualFiles()
@@ -1134,4 +1301,41 @@ public void setIgnorePermissions( final boolean ignorePermissions )
         this.ignorePermissions = ignorePermissions;
     }
 
+    /**
+     * @since 4.1.1
+     */
+    @Override
+    public void setMetrics( ArchiverMetrics metrics )
+    {
+        this.metrics = metrics != null ? metrics : ArchiverMetrics.NONE;
+    }
+
+    /**
+     * @since 4.1.1
+     */
+    @Override
+    public ArchiverMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Sets a cache of archives to restore the archive from, if an archive with identical entries has been created
+     * before with the same configuration. Only archivers describing their configuration, see
+     * {@link #getConfigurationFingerprint()}, and without archive finalizers use the cache.
+     *
+     * @param outputCache the cache, or null to always create the archive
+     *
+     * @since 4.1.1
+     */
+    public void setOutputCache( ArchiveOutputCache outputCache )
+    {
+        this.outputCache = outputCache;
+    }
+
+    public ArchiveOutputCache getOutputCache()
+    {
+        return outputCache;
+    }
+
 }
@@ -21,17 +21,22 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import javax.annotation.Nonnull;
+import org.codehaus.plexus.archiver.diags.ArchiverEvents;
 import org.codehaus.plexus.archiver.util.ArchiveEntryUtils;
+import org.codehaus.plexus.archiver.util.ExtractionSession;
+import org.codehaus.plexus.archiver.util.FileRegionInputStream;
+import org.codehaus.plexus.archiver.util.Streams;
 import org.codehaus.plexus.components.io.attributes.SymlinkUtils;
 import org.codehaus.plexus.components.io.filemappers.FileMapper;
 import org.codehaus.plexus.components.io.fileselectors.FileSelector;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
 import org.codehaus.plexus.logging.AbstractLogEnabled;
-import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
 
@@ -71,6 +76,12 @@
      */
     private boolean ignorePermissions = false;
 
+    private ArchiverMetrics metrics = ArchiverMetrics.NONE;
+
+    private ExtractionSession session;
+
+    private InputStream sourceStream;
+
     public AbstractUnArchiver()
     {
         // no op
@@ -146,8 +157,79 @@ public final void extract()
         throws ArchiverException
     {
         validate();
+        final long startNanos = System.nanoTime();
+        final ArchiverEvents.Recording recording = startExtraction();
+        resetSession();
         execute();
+        metrics.phaseCompleted( ArchiverMetrics.Phase.EXTRACT, System.nanoTime() - startNanos );
         runArchiveFinalizers();
+        archiveExtracted( startNanos, recording );
+    }
+
+    /**
+     * Extracts an archive read from a stream instead of the source file, for instance while it is downloaded. The
+     * source file is neither read nor required. The stream is read sequentially, but not closed.
+     * <p>
+     * Unarchivers which can't extract this way, see {@link #isSupportingStreaming()}, throw an
+     * {@link ArchiverException}.</p>
+     *
+     * @param in the stream the archive is read from
+     *
+     * @throws ArchiverException if the archive can't be extracted, or not from a stream
+     *
+     * @since 4.1.1
+     */
+    public final void extract( @Nonnull final InputStream in )
+        throws ArchiverException
+    {
+        if ( !isSupportingStreaming() )
+        {
+            throw new ArchiverException( getClass().getSimpleName() + " can't extract archives read from a stream." );
+        }
+        sourceStream = in;
+        try
+        {
+            extract();
+        }
+        finally
+        {
+            sourceStream = null;
+        }
+    }
+
+    /**
+     * Extracts an archive read from a channel instead of the source file, see {@link #extract(InputStream)}.
+     *
+     * @param channel the channel the archive is read from, read sequentially but not closed
+     *
+     * @throws ArchiverException if the archive can't be extracted, or not from a channel
+     *
+     * @since 4.1.1
+     */
+    public final void extract( @Nonnull final ReadableByteChannel channel )
+        throws ArchiverException
+    {
+        extract( Channels.newInputStream( channel ) );
+    }
+
+    /**
+     * @return whether archives can be read from a stream, see {@link #extract(InputStream)}
+     *
+     * @since 4.1.1
+     */
+    public boolean isSupportingStreaming()
+    {
+        return false;
+    }
+
+    /**
+     * @return the stream the archive is being read from, or null if it is read from the source file
+     *
+     * @since 4.1.1
+     */
+    protected InputStream getSourceStream()
+    {
+        return sourceStream;
     }
 
     @Override
@@ -155,8 +237,26 @@ public final void extract( final String path, final File outputDirectory )
         throws ArchiverException
     {
         validate( path, outputDirectory );
+        final long startNanos = System.nanoTime();
+        final ArchiverEvents.Recording recording = startExtraction();
+        resetSession();
         execute( path, outputDirectory );
+        metrics.phaseCompleted( ArchiverMetrics.Phase.EXTRACT, System.nanoTime() - startNanos );
         runArchiveFinalizers();
+        archiveExtracted( startNanos, recording );
+    }
+
+    private ArchiverEvents.Recording startExtraction()
+    {
+        return ArchiverEvents.archiveExtraction( getClass().getSimpleName(), sourceStream == null ? sourceFile : null );
+    }
+
+    private void archiveExtracted( long startNanos, ArchiverEvents.Recording recording )
+    {
+        metrics.phaseCompleted( ArchiverMetrics.Phase.TOTAL, System.nanoTime() - startNanos );
+        final long size = sourceStream == null && sourceFile != null ? sourceFile.length() : -1;
+        metrics.archiveProcessed( size );
+        recording.end( size );
     }
 
     @Override
@@ -185,7 +285,9 @@ private void runArchiveFinalizers()
             {
                 final ArchiveFinalizer finalizer = (ArchiveFinalizer) finalizer1;
 
+                final ArchiverEvents.Recording recording = ArchiverEvents.finalizerExecution( finalizer );
                 finalizer.finalizeArchiveExtraction( this );
+                recording.end( -1 );
             }
         }
     }
@@ -197,19 +299,23 @@ protected void validate( final String path, final File outputDirectory )
     protected void validate()
         throws ArchiverException
     {
-        if ( sourceFile == null )
+        // an archive read from a stream has no source file
+        if ( sourceStream == null )
         {
-            throw new ArchiverException( "The source file isn't defined." );
-        }
+            if ( sourceFile == null )
+            {
+                throw new ArchiverException( "The source file isn't defined." );
+            }
 
-        if ( sourceFile.isDirectory() )
-        {
-            throw new ArchiverException( "The source must not be a directory." );
-        }
+            if ( sourceFile.isDirectory() )
+            {
+                throw new ArchiverException( "The source must not be a directory." );
+            }
 
-        if ( !sourceFile.exists() )
-        {
-            throw new ArchiverException( "The source file " + sourceFile + " doesn't exist." );
+            if ( !sourceFile.exists() )
+            {
+                throw new ArchiverException( "The source file " + sourceFile + " doesn't exist." );
+            }
         }
 
         if ( destDirectory == null && destFile == null )
@@ -316,6 +422,46 @@ public void setIgnorePermissions( final boolean ignorePermissions )
         this.ignorePermissions = ignorePermissions;
     }
 
+    /**
+     * @since 4.1.1
+     */
+    @Override
+    public void setMetrics( ArchiverMetrics metrics )
+    {
+        this.metrics = metrics != null ? metrics : ArchiverMetrics.NONE;
+    }
+
+    /**
+     * @since 4.1.1
+     */
+    @Override
+    public ArchiverMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    private synchronized void resetSession()
+    {
+        session = null;
+    }
+
+    private synchronized ExtractionSession getSession( File dir )
+        throws IOException
+    {
+        if ( session == null || !session.getDirectory().equals( dir ) )
+        {
+            session = new ExtractionSession( dir );
+        }
+        return session;
+    }
+
+    private static boolean isUpToDate( File f, Date entryDate )
+    {
+        // a single stat, lastModified() is zero for files that don't exist
+        final long lastModified = f.lastModified();
+        return ( lastModified != 0 || f.exists() ) && lastModified >= entryDate.getTime();
+    }
+
     protected void extractFile( final File srcF, final File dir, final InputStream compressedInputStream,
                                 String entryName, final Date entryDate, final boolean isDirectory,
                                 final Integer mode, String symlinkDestination, final FileMapper[] fileMappers )
@@ -329,48 +475,50 @@ protected void extractFile( final File srcF, final File dir, final InputStream c
             }
         }
 
-        // Hmm. Symlinks re-evaluate back to the original file here. Unsure if this is a good thing...
-        final File f = FileUtils.resolveFile( dir, entryName );
-
         // Make sure that the resolved path of the extracted file doesn't escape the destination directory
-        String canonicalDirPath = dir.getCanonicalPath();
-        String canonicalDestPath = f.getCanonicalPath();
-
-        if ( !canonicalDestPath.startsWith( canonicalDirPath ) )
-        {
-            throw new ArchiverException( "Entry is outside of the target directory (" + entryName + ")" );
-        }
+        final ExtractionSession session = getSession( dir );
+        final File f = session.resolve( entryName );
 
         try
         {
-            if ( !isOverwrite() && f.exists() && ( f.lastModified() >= entryDate.getTime() ) )
+            if ( !isOverwrite() && session.mayExist( f ) && isUpToDate( f, entryDate ) )
             {
                 return;
             }
+            final long startNanos = System.nanoTime();
+            final ArchiverEvents.Recording recording = ArchiverEvents.entryExtraction( entryName );
+            long size = 0;
 
             // create intermediary directories - sometimes zip don't add them
-            final File dirF = f.getParentFile();
-            if ( dirF != null )
-            {
-                dirF.mkdirs();
-            }
+            session.createParentDirectories( f );
 
             if ( !StringUtils.isEmpty( symlinkDestination ) )
             {
                 SymlinkUtils.createSymbolicLink( f, new File( symlinkDestination ) );
+                session.symlinkCreated();
             }
             else if ( isDirectory )
             {
-                f.mkdirs();
+                session.createDirectories( f );
             }
             else
             {
-                OutputStream out = null;
+                FileOutputStream out = null;
                 try
                 {
                     out = new FileOutputStream( f );
 
-                    IOUtil.copy( compressedInputStream, out );
+                    if ( compressedInputStream instanceof FileRegionInputStream )
+                    {
+                        // stored as is in the archive, copied by the kernel rather than through the heap
+                        final FileRegionInputStream region = (FileRegionInputStream) compressedInputStream;
+                        region.copyTo( out.getChannel() );
+                        size = region.getLength();
+                    }
+                    else
+                    {
+                        size = Streams.copy( compressedInputStream, out );
+                    }
                     out.close();
                     out = null;
                 }
@@ -380,11 +528,19 @@ else if ( isDirectory )
                 }
             }
 
+            session.extracted( f );
             f.setLastModified( entryDate.getTime() );
 
             if ( !isIgnorePermissions() && mode != null && !isDirectory )
             {
+                final long chmodNanos = System.nanoTime();
                 ArchiveEntryUtils.chmod( f, mode );
+                metrics.phaseCompleted( ArchiverMetrics.Phase.CHMOD, System.nanoTime() - chmodNanos );
+            }
+            if ( !isDirectory )
+            {
+                metrics.entryProcessed( entryName, size, System.nanoTime() - startNanos );
+                recording.end( size );
             }
         }
         catch ( final FileNotFoundException ex )
@@ -394,4 +394,18 @@ ResourceIterator getResources()
      */
     void setIgnorePermissions( final boolean ignorePermissions );
 
+    /**
+     * Sets the listener of the counters and timings of this archiver.
+     *
+     * @param metrics the listener, or null for {@link ArchiverMetrics#NONE}
+     *
+     * @since 4.1.1
+     */
+    void setMetrics( ArchiverMetrics metrics );
+
+    /**
+     * @since 4.1.1
+     */
+    ArchiverMetrics getMetrics();
+
 }
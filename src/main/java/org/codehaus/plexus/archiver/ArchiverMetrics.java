@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver;
+
+/**
+ * Receives the counters and timings of archivers and unarchivers, see {@link Archiver#setMetrics(ArchiverMetrics)}
+ * and {@link UnArchiver#setMetrics(ArchiverMetrics)}.
+ * <p>
+ * Entries compressed or extracted in parallel are reported by the threads processing them, so implementations
+ * must be thread safe. Timings are in nanoseconds. {@link org.codehaus.plexus.archiver.diags.InMemoryArchiverMetrics}
+ * adds them all up.</p>
+ *
+ * @since 4.1.1
+ */
+public interface ArchiverMetrics
+{
+
+    /**
+     * The phases of creating or extracting an archive.
+     */
+    enum Phase
+    {
+
+        /**
+         * Iterating the resources and adding them to the archive, which includes compressing them unless they are
+         * compressed in parallel.
+         */
+        ADD_RESOURCES,
+
+        /**
+         * Writing the entries compressed in parallel into the archive.
+         */
+        GATHER,
+
+        /**
+         * Finishing the archive, like writing the central directory of a zip file, and closing it.
+         */
+        CLOSE,
+
+        /**
+         * Extracting the entries of an archive.
+         */
+        EXTRACT,
+
+        /**
+         * Setting the permissions of extracted files, reported once per file.
+         */
+        CHMOD,
+
+        /**
+         * Creating or extracting the whole archive, reported once per archive.
+         */
+        TOTAL
+
+    }
+
+    /**
+     * The metrics of an archiver or unarchiver nobody listens to.
+     */
+    ArchiverMetrics NONE = new ArchiverMetrics()
+    {
+
+        @Override
+        public void phaseCompleted( Phase phase, long elapsedNanos )
+        {
+        }
+
+        @Override
+        public void entryProcessed( String name, long size, long elapsedNanos )
+        {
+        }
+
+        @Override
+        public void archiveProcessed( long size )
+        {
+        }
+
+        @Override
+        public void bytesSpilled( long size )
+        {
+        }
+
+        @Override
+        public void queueWaited( long elapsedNanos )
+        {
+        }
+
+    };
+
+    /**
+     * @param phase the phase completed
+     * @param elapsedNanos the wall time the phase took
+     */
+    void phaseCompleted( Phase phase, long elapsedNanos );
+
+    /**
+     * An entry has been added to an archive, or extracted from it.
+     *
+     * @param name the name of the entry
+     * @param size the uncompressed size of the entry
+     * @param elapsedNanos the time reading, compressing and writing the entry took, or extracting it
+     */
+    void entryProcessed( String name, long size, long elapsedNanos );
+
+    /**
+     * An archive has been created or extracted.
+     *
+     * @param size the size of the archive, or -1 if unknown
+     */
+    void archiveProcessed( long size );
+
+    /**
+     * Compressed entries were kept in temporary files or outside the heap until they were written into the archive,
+     * see {@link org.codehaus.plexus.archiver.zip.ScatterSpillPolicy}.
+     *
+     * @param size the number of bytes spilled
+     */
+    void bytesSpilled( long size );
+
+    /**
+     * An entry waited for a thread to compress it.
+     *
+     * @param elapsedNanos the time the entry waited
+     */
+    void queueWaited( long elapsedNanos );
+
+}
@@ -132,4 +132,18 @@ void extract( String path, File outputDirectory )
      */
     void setIgnorePermissions( final boolean ignorePermissions );
 
+    /**
+     * Sets the listener of the counters and timings of this unarchiver.
+     *
+     * @param metrics the listener, or null for {@link ArchiverMetrics#NONE}
+     *
+     * @since 4.1.1
+     */
+    void setMetrics( ArchiverMetrics metrics );
+
+    /**
+     * @since 4.1.1
+     */
+    ArchiverMetrics getMetrics();
+
 }
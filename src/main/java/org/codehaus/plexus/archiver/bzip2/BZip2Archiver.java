@@ -29,6 +29,16 @@
 
     private BZip2Compressor compressor = new BZip2Compressor();
 
+    /**
+     * @param threads the number of threads used to compress, see {@link BZip2Compressor#setThreads(int)}
+     *
+     * @since 4.1.1
+     */
+    public void setCompressionThreads( int threads )
+    {
+        compressor.setThreads( threads );
+    }
+
     @Override
     public void execute()
         throws ArchiverException, IOException
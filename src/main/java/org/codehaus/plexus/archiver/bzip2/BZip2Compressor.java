@@ -17,6 +17,7 @@
 package org.codehaus.plexus.archiver.bzip2;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.archiver.util.Compressor;
@@ -27,7 +28,27 @@
     extends Compressor
 {
 
-    private BZip2CompressorOutputStream zOut;
+    private OutputStream zOut;
+
+    private int threads = 1;
+
+    /**
+     * Sets the number of threads used to compress. With more than one thread, blocks of 900k are compressed
+     * in parallel, see {@link ParallelBZip2OutputStream}.
+     *
+     * @param threads the number of threads, 1 by default
+     *
+     * @since 4.1.1
+     */
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
 
     /**
      * perform the BZip2 compression operation.
@@ -38,7 +59,8 @@ public void compress()
     {
         try
         {
-            zOut = new BZip2CompressorOutputStream( bufferedOutputStream( fileOutputStream( getDestFile() ) ) );
+            final OutputStream out = bufferedOutputStream( fileOutputStream( getDestFile() ) );
+            zOut = threads > 1 ? new ParallelBZip2OutputStream( out, threads ) : new BZip2CompressorOutputStream( out );
             // BUffering of the source stream seems to have little/no impact
             compress( getSource(), zOut );
         }
@@ -68,7 +68,8 @@ BZip2CompressorInputStream getBZip2InputStream( InputStream bis )
         try
         {
             // Note that bis must be buffered for performance. Does not need buffering around BZip2CompressorInputStream
-            return new BZip2CompressorInputStream( bis );
+            // Concatenated streams are written by pbzip2 and ParallelBZip2OutputStream
+            return new BZip2CompressorInputStream( bis, true );
         }
         catch ( IOException e )
         {
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.bzip2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.codehaus.plexus.archiver.util.ParallelCompressorOutputStream;
+
+/**
+ * An output stream compressing blocks of data to bzip2 in parallel.
+ * <p>
+ * This is the approach taken by pbzip2: every block of data is compressed to a bzip2 stream of its own and the
+ * streams are concatenated. The bzip2 tool and decompressors supporting concatenated streams, like
+ * {@link org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream} when asked to, read the result
+ * as a whole.</p>
+ *
+ * @since 4.1.1
+ */
+public class ParallelBZip2OutputStream
+    extends ParallelCompressorOutputStream
+{
+
+    private final int blockSize100k;
+
+    /**
+     * Creates a stream compressing blocks of 900k.
+     *
+     * @param out the stream to write the compressed data to
+     * @param threads the number of threads to compress blocks with
+     */
+    public ParallelBZip2OutputStream( OutputStream out, int threads )
+    {
+        this( out, BZip2CompressorOutputStream.MAX_BLOCKSIZE, threads );
+    }
+
+    /**
+     * @param out the stream to write the compressed data to
+     * @param blockSize100k the bzip2 block size, in units of 100k, from 1 to 9
+     * @param threads the number of threads to compress blocks with
+     */
+    public ParallelBZip2OutputStream( OutputStream out, int blockSize100k, int threads )
+    {
+        super( out, checkBlockSize( blockSize100k ) * 100000, threads );
+        this.blockSize100k = blockSize100k;
+    }
+
+    private static int checkBlockSize( int blockSize100k )
+    {
+        if ( blockSize100k < BZip2CompressorOutputStream.MIN_BLOCKSIZE
+            || blockSize100k > BZip2CompressorOutputStream.MAX_BLOCKSIZE )
+        {
+            throw new IllegalArgumentException( "Block size must be between 1 and 9: " + blockSize100k );
+        }
+        return blockSize100k;
+    }
+
+    @Override
+    protected Callable<byte[]> newBlockCompressor( final byte[] data, final int length, byte[] previousData,
+                                                  boolean last )
+    {
+        if ( length == 0 && previousData != null )
+        {
+            // nothing left after the last full block, an empty stream is only needed for empty input
+            return new Callable<byte[]>()
+            {
+
+                @Override
+                public byte[] call()
+                {
+                    return new byte[ 0 ];
+                }
+
+            };
+        }
+        return new Callable<byte[]>()
+        {
+
+            @Override
+            public byte[] call()
+                throws IOException
+            {
+                final ByteArrayOutputStream compressed = new ByteArrayOutputStream( length / 4 + 64 );
+                final BZip2CompressorOutputStream bzip2 = new BZip2CompressorOutputStream( compressed, blockSize100k );
+                bzip2.write( data, 0, length );
+                bzip2.close();
+                return compressed.toByteArray();
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.diags;
+
+import java.io.File;
+
+/**
+ * Emits Java Flight Recorder events for the operations of the archivers and unarchivers.
+ * <p>
+ * This implementation is the one of Java runtimes without the {@code jdk.jfr} API, it records nothing. The
+ * multi-release jar carries the implementation for Java 11 and later, which emits the events of the
+ * {@code Plexus Archiver} category. The compression or extraction of an entry is only recorded from
+ * {@link #DEFAULT_ENTRY_SIZE_THRESHOLD} bytes, or as many as the {@code plexus.archiver.jfr.entrySizeThreshold}
+ * system property tells.</p>
+ *
+ * @since 4.1.1
+ */
+public class ArchiverEvents
+{
+
+    /**
+     * The uncompressed size from which the compression or extraction of an entry is recorded.
+     */
+    public static final long DEFAULT_ENTRY_SIZE_THRESHOLD = 1024 * 1024;
+
+    private static final Recording NONE = new Recording();
+
+    /**
+     * An operation being recorded.
+     */
+    public static class Recording
+    {
+
+        Recording()
+        {
+        }
+
+        /**
+         * Ends the operation, whose event is committed if it is enabled.
+         *
+         * @param size the number of bytes written or extracted, or -1 if unknown
+         */
+        public void end( long size )
+        {
+        }
+
+    }
+
+    private ArchiverEvents()
+    {
+    }
+
+    /**
+     * @param archiveType the type of the archive, like {@code zip}
+     * @param file the archive created, or null if written into a stream
+     */
+    public static Recording archiveCreation( String archiveType, File file )
+    {
+        return NONE;
+    }
+
+    /**
+     * @param archiveType the type of the unarchiver
+     * @param file the archive extracted, or null if read from a stream
+     */
+    public static Recording archiveExtraction( String archiveType, File file )
+    {
+        return NONE;
+    }
+
+    /**
+     * @param name the name of the entry compressed into an archive
+     */
+    public static Recording entryCompression( String name )
+    {
+        return NONE;
+    }
+
+    /**
+     * @param name the name of the entry extracted from an archive
+     */
+    public static Recording entryExtraction( String name )
+    {
+        return NONE;
+    }
+
+    /**
+     * @param finalizer the finalizer run after the entries were added to an archive or extracted
+     */
+    public static Recording finalizerExecution( Object finalizer )
+    {
+        return NONE;
+    }
+
+    /**
+     * @param file the archive the JDK jar tool updates
+     */
+    public static Recording jarToolInvocation( File file )
+    {
+        return NONE;
+    }
+
+    /**
+     * Records that compressed entries didn't fit into the memory of the scatter backing stores.
+     *
+     * @param size the number of bytes kept in a temporary file or outside the heap
+     */
+    public static void scatterSpill( long size )
+    {
+    }
+
+}
@@ -24,6 +24,7 @@
 import org.codehaus.plexus.archiver.ArchivedFileSet;
 import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.ArchiverMetrics;
 import org.codehaus.plexus.archiver.FileSet;
 import org.codehaus.plexus.archiver.ResourceIterator;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
@@ -331,4 +332,16 @@ public void setIgnorePermissions( boolean ignorePermissions )
         target.setIgnorePermissions( ignorePermissions );
     }
 
+    @Override
+    public void setMetrics( ArchiverMetrics metrics )
+    {
+        target.setMetrics( metrics );
+    }
+
+    @Override
+    public ArchiverMetrics getMetrics()
+    {
+        return target.getMetrics();
+    }
+
 }
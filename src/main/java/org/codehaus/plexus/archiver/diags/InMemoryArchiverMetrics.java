@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.diags;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codehaus.plexus.archiver.ArchiverMetrics;
+
+/**
+ * Adds up the metrics of any number of archivers and unarchivers, which may share it.
+ *
+ * @since 4.1.1
+ */
+public class InMemoryArchiverMetrics
+    implements ArchiverMetrics
+{
+
+    private final Map<Phase, AtomicLong> phaseNanos = new EnumMap<Phase, AtomicLong>( Phase.class );
+
+    private final AtomicLong entries = new AtomicLong();
+
+    private final AtomicLong entryBytes = new AtomicLong();
+
+    private final AtomicLong entryNanos = new AtomicLong();
+
+    private final AtomicLong maxEntryNanos = new AtomicLong();
+
+    private final AtomicLong archives = new AtomicLong();
+
+    private final AtomicLong archiveBytes = new AtomicLong();
+
+    private final AtomicLong spilledBytes = new AtomicLong();
+
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+
+    public InMemoryArchiverMetrics()
+    {
+        // filled once, so threads only ever read the map
+        for ( Phase phase : Phase.values() )
+        {
+            phaseNanos.put( phase, new AtomicLong() );
+        }
+    }
+
+    @Override
+    public void phaseCompleted( Phase phase, long elapsedNanos )
+    {
+        phaseNanos.get( phase ).addAndGet( elapsedNanos );
+    }
+
+    @Override
+    public void entryProcessed( String name, long size, long elapsedNanos )
+    {
+        entries.incrementAndGet();
+        entryBytes.addAndGet( size );
+        entryNanos.addAndGet( elapsedNanos );
+        long max;
+        do
+        {
+            max = maxEntryNanos.get();
+        }
+        while ( elapsedNanos > max && !maxEntryNanos.compareAndSet( max, elapsedNanos ) );
+    }
+
+    @Override
+    public void archiveProcessed( long size )
+    {
+        archives.incrementAndGet();
+        if ( size > 0 )
+        {
+            archiveBytes.addAndGet( size );
+        }
+    }
+
+    @Override
+    public void bytesSpilled( long size )
+    {
+        spilledBytes.addAndGet( size );
+    }
+
+    @Override
+    public void queueWaited( long elapsedNanos )
+    {
+        queueWaitNanos.addAndGet( elapsedNanos );
+    }
+
+    /**
+     * @return the wall time of all the completions of the phase
+     */
+    public long getPhaseNanos( Phase phase )
+    {
+        return phaseNanos.get( phase ).get();
+    }
+
+    public long getEntries()
+    {
+        return entries.get();
+    }
+
+    /**
+     * @return the uncompressed size of all the entries
+     */
+    public long getEntryBytes()
+    {
+        return entryBytes.get();
+    }
+
+    /**
+     * @return the time processing all the entries took, which exceeds the wall time if they are processed in
+     * parallel
+     */
+    public long getEntryNanos()
+    {
+        return entryNanos.get();
+    }
+
+    /**
+     * @return the longest time processing an entry took
+     */
+    public long getMaxEntryNanos()
+    {
+        return maxEntryNanos.get();
+    }
+
+    public long getArchives()
+    {
+        return archives.get();
+    }
+
+    /**
+     * @return the size of all the archives of known size
+     */
+    public long getArchiveBytes()
+    {
+        return archiveBytes.get();
+    }
+
+    /**
+     * @return the uncompressed size of the entries divided by the size of the archives, or 0 if unknown
+     */
+    public double getCompressionRatio()
+    {
+        final long archived = archiveBytes.get();
+        return archived == 0 ? 0 : (double) entryBytes.get() / archived;
+    }
+
+    public long getSpilledBytes()
+    {
+        return spilledBytes.get();
+    }
+
+    public long getQueueWaitNanos()
+    {
+        return queueWaitNanos.get();
+    }
+
+    public void reset()
+    {
+        for ( AtomicLong nanos : phaseNanos.values() )
+        {
+            nanos.set( 0 );
+        }
+        entries.set( 0 );
+        entryBytes.set( 0 );
+        entryNanos.set( 0 );
+        maxEntryNanos.set( 0 );
+        archives.set( 0 );
+        archiveBytes.set( 0 );
+        spilledBytes.set( 0 );
+        queueWaitNanos.set( 0 );
+    }
+
+    public String getStatisticsMessage()
+    {
+        final StringBuilder message = new StringBuilder( "Archiver metrics: " );
+        message.append( archives.get() ).append( " archives of " ).append( archiveBytes.get() ).append( " bytes, " );
+        message.append( entries.get() ).append( " entries of " ).append( entryBytes.get() ).append( " bytes" );
+        message.append( String.format( " (ratio %.2f), ", getCompressionRatio() ) );
+        message.append( "longest entry " ).append( toMillis( maxEntryNanos.get() ) ).append( "ms, " );
+        message.append( spilledBytes.get() ).append( " bytes spilled, " );
+        message.append( "queue wait " ).append( toMillis( queueWaitNanos.get() ) ).append( "ms" );
+        for ( Map.Entry<Phase, AtomicLong> phase : phaseNanos.entrySet() )
+        {
+            message.append( ", " ).append( phase.getKey() ).append( ' ' );
+            message.append( toMillis( phase.getValue().get() ) ).append( "ms" );
+        }
+        return message.toString();
+    }
+
+    private static long toMillis( long nanos )
+    {
+        return TimeUnit.NANOSECONDS.toMillis( nanos );
+    }
+
+}
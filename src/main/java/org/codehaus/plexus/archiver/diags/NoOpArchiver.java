@@ -25,6 +25,7 @@
 import org.codehaus.plexus.archiver.ArchivedFileSet;
 import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.ArchiverMetrics;
 import org.codehaus.plexus.archiver.FileSet;
 import org.codehaus.plexus.archiver.ResourceIterator;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
@@ -41,6 +42,8 @@ public class NoOpArchiver implements Archiver
 
     private boolean ignorePermissions;
 
+    private ArchiverMetrics metrics = ArchiverMetrics.NONE;
+
     @Override
     public void createArchive()
         throws ArchiverException, IOException
@@ -346,4 +349,16 @@ public void setIgnorePermissions( boolean ignorePermissions )
         this.ignorePermissions = ignorePermissions;
     }
 
+    @Override
+    public void setMetrics( ArchiverMetrics metrics )
+    {
+        this.metrics = metrics != null ? metrics : ArchiverMetrics.NONE;
+    }
+
+    @Override
+    public ArchiverMetrics getMetrics()
+    {
+        return metrics;
+    }
+
 }
@@ -30,6 +30,7 @@
 import org.codehaus.plexus.archiver.ArchivedFileSet;
 import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.ArchiverMetrics;
 import org.codehaus.plexus.archiver.FileSet;
 import org.codehaus.plexus.archiver.ResourceIterator;
 import org.codehaus.plexus.components.io.attributes.PlexusIoResourceAttributes;
@@ -52,6 +53,8 @@
 
     private boolean ignorePermissions;
 
+    private ArchiverMetrics metrics = ArchiverMetrics.NONE;
+
     @Override
     public void createArchive()
         throws ArchiverException, IOException
@@ -401,4 +404,16 @@ public void setIgnorePermissions( final boolean ignorePermissions )
         this.ignorePermissions = ignorePermissions;
     }
 
+    @Override
+    public void setMetrics( ArchiverMetrics metrics )
+    {
+        this.metrics = metrics != null ? metrics : ArchiverMetrics.NONE;
+    }
+
+    @Override
+    public ArchiverMetrics getMetrics()
+    {
+        return metrics;
+    }
+
 }
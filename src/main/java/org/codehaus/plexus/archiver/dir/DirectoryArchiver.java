@@ -16,9 +16,21 @@
 package org.codehaus.plexus.archiver.dir;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.codehaus.plexus.archiver.AbstractArchiver;
 import org.codehaus.plexus.archiver.ArchiveEntry;
 import org.codehaus.plexus.archiver.ArchiverException;
@@ -26,7 +38,9 @@
 import org.codehaus.plexus.archiver.exceptions.EmptyArchiveException;
 import org.codehaus.plexus.archiver.util.ArchiveEntryUtils;
 import org.codehaus.plexus.archiver.util.ResourceUtils;
+import org.codehaus.plexus.archiver.util.Streams;
 import org.codehaus.plexus.components.io.attributes.SymlinkUtils;
+import org.codehaus.plexus.components.io.functions.FileSupplier;
 import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
 
@@ -39,6 +53,79 @@
 
     private final List<Runnable> directoryChmods = new ArrayList<Runnable>();
 
+    private int copyThreads = 1;
+
+    private ExecutorService executorService;
+
+    private boolean hardLinks;
+
+    /**
+     * Sets the number of threads used to copy files.
+     * <p>
+     * A value greater than one enables parallel copying. Directories are still created on the calling thread
+     * before the files they contain are copied, and symbolic links are created in order once all files have been
+     * copied. Defaults to one, which copies all files sequentially.</p>
+     *
+     * @param copyThreads the number of copy threads
+     *
+     * @since 4.1.1
+     */
+    public void setCopyThreads( int copyThreads )
+    {
+        if ( copyThreads < 1 )
+        {
+            throw new IllegalArgumentException( "The number of copy threads must be positive." );
+        }
+        this.copyThreads = copyThreads;
+    }
+
+    public int getCopyThreads()
+    {
+        return copyThreads;
+    }
+
+    /**
+     * Sets the executor used for parallel copying.
+     * <p>
+     * If set, files are copied in parallel on the given executor regardless of {@link #setCopyThreads(int)}. The
+     * executor is not shut down by the archiver.</p>
+     *
+     * @param executorService the executor to use, or {@code null} to let the archiver manage its own threads
+     *
+     * @since 4.1.1
+     */
+    public void setExecutorService( ExecutorService executorService )
+    {
+        this.executorService = executorService;
+    }
+
+    public ExecutorService getExecutorService()
+    {
+        return executorService;
+    }
+
+    /**
+     * Sets whether files are staged as hard links to their sources rather than copied.
+     * <p>
+     * Only files whose contents aren't transformed are linked, and only where the file system supports it, as
+     * between directories of the same file system; the others are copied. A linked file is its source, so it
+     * keeps the permissions and modification time of the source, regardless of the file modes of the archiver,
+     * and changing it changes the source. Defaults to false.</p>
+     *
+     * @param hardLinks true to link files to their sources
+     *
+     * @since 4.1.1
+     */
+    public void setHardLinks( boolean hardLinks )
+    {
+        this.hardLinks = hardLinks;
+    }
+
+    public boolean isHardLinks()
+    {
+        return hardLinks;
+    }
+
     public void resetArchiver()
         throws IOException
     {
@@ -73,8 +160,11 @@ public void execute()
 
         getLogger().info( "Copying files to " + destDirectory.getAbsolutePath() );
 
+        FileCopier copier = null;
         try
         {
+            final String destDir = destDirectory.getCanonicalPath();
+            copier = new FileCopier();
             while ( iter.hasNext() )
             {
                 final ArchiveEntry f = iter.next();
@@ -83,21 +173,24 @@ public void execute()
                 {
                     throw new ArchiverException( "The destination directory cannot include itself." );
                 }
-                String fileName = f.getName();
-                final String destDir = destDirectory.getCanonicalPath();
-                fileName = destDir + File.separator + fileName;
+                final String fileName = destDir + File.separator + f.getName();
                 PlexusIoResource resource = f.getResource();
                 if ( resource instanceof SymlinkDestinationSupplier )
                 {
                     String dest = ( (SymlinkDestinationSupplier) resource ).getSymlinkDestination();
-                    File target = new File( dest );
-                    SymlinkUtils.createSymbolicLink( new File( fileName ), target );
+                    copier.createSymbolicLink( new File( fileName ), new File( dest ) );
                 }
-                else
+                else if ( resource.isDirectory() )
                 {
                     copyFile( f, fileName );
                 }
+                else
+                {
+                    copier.copy( f, fileName );
+                }
             }
+            copier.finish();
+            copier = null;
 
             for ( Runnable directoryChmod : directoryChmods )
             {
@@ -110,6 +203,13 @@ public void execute()
             final String message = "Problem copying files : " + ioe.getMessage();
             throw new ArchiverException( message, ioe );
         }
+        finally
+        {
+            if ( copier != null )
+            {
+                copier.abort();
+            }
+        }
     }
 
     /**
@@ -144,14 +244,33 @@ protected void copyFile( final ArchiveEntry entry, final String vPath )
         {
             if ( !outFile.getParentFile().exists() )
             {
-                // create the parent directory...
-                if ( !outFile.getParentFile().mkdirs() )
+                // create the parent directory, unless another copy thread just did
+                if ( !outFile.getParentFile().mkdirs() && !outFile.getParentFile().isDirectory() )
                 {
                     // Failure, unable to create specified directory for some unknown reason.
                     throw new ArchiverException( "Unable to create directory or parent directory of " + outFile );
                 }
             }
-            ResourceUtils.copyFile( entry.getInputStream(), outFile );
+            final InputStream contents = entry.getInputStream();
+            if ( hardLinks && contents instanceof FileInputStream && in instanceof FileSupplier
+                     && createLink( outFile, ( (FileSupplier) in ).getFile() ) )
+            {
+                // the link shares the permissions and modification time of its source, which must not change
+                contents.close();
+                return;
+            }
+            final FileOutputStream output;
+            try
+            {
+                // an earlier copy may have linked the file to its source, which must keep its contents
+                output = Streams.newFileOutputStream( outFile, "copy" );
+            }
+            catch ( ArchiverException e )
+            {
+                contents.close();
+                throw e;
+            }
+            ResourceUtils.copyFile( contents, output );
 
             setFileModes( entry, outFile, inLastModified );
         }
@@ -167,7 +286,7 @@ protected void copyFile( final ArchiveEntry entry, final String vPath )
                         "Expected directory and found file at copy destination of " + in.getName() + " to " + outFile );
                 }
             }
-            else if ( !outFile.mkdirs() )
+            else if ( !outFile.mkdirs() && !outFile.isDirectory() )
             {
                 // Failure, unable to create specified directory for some unknown reason.
                 throw new ArchiverException( "Unable to create directory or parent directory of " + outFile );
@@ -187,6 +306,31 @@ public void run()
 
     }
 
+    /**
+     * Links a file to its source, or fails if the file system doesn't support it.
+     *
+     * @return true if the file has been linked, false if it has to be copied
+     */
+    private boolean createLink( File outFile, File source )
+    {
+        try
+        {
+            // a hard link may only replace another file, never be written through
+            Files.deleteIfExists( outFile.toPath() );
+            Files.createLink( outFile.toPath(), source.toPath() );
+            return true;
+        }
+        catch ( IOException e )
+        {
+            getLogger().debug( "Unable to link " + outFile + " to " + source + ", copying it: " + e.getMessage() );
+            return false;
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            return false;
+        }
+    }
+
     private void setFileModes( ArchiveEntry entry, File outFile, long inLastModified )
     {
         if ( !isIgnorePermissions() )
@@ -199,6 +343,209 @@ private void setFileModes( ArchiveEntry entry, File outFile, long inLastModified
                                      : inLastModified );
     }
 
+    /**
+     * Copies the files, either on the calling thread or on an executor.
+     * <p>
+     * In parallel mode, symbolic links are created in order after every file has been copied, so no file is ever
+     * written through a link created by the archiver itself. Files sharing a name are never copied concurrently.</p>
+     */
+    private class FileCopier
+    {
+
+        private final ExecutorService executor;
+
+        private final boolean ownsExecutor;
+
+        private final List<Future<Void>> pending = new ArrayList<Future<Void>>();
+
+        private final Set<String> scheduledNames = new HashSet<String>();
+
+        private final List<File> symlinks = new ArrayList<File>();
+
+        private final List<File> symlinkTargets = new ArrayList<File>();
+
+        private int running;
+
+        private boolean aborted;
+
+        FileCopier()
+        {
+            if ( executorService != null )
+            {
+                executor = executorService;
+                ownsExecutor = false;
+            }
+            else if ( copyThreads > 1 )
+            {
+                executor = Executors.newFixedThreadPool( copyThreads );
+                ownsExecutor = true;
+            }
+            else
+            {
+                executor = null;
+                ownsExecutor = false;
+            }
+        }
+
+        void copy( final ArchiveEntry entry, final String fileName )
+            throws IOException
+        {
+            if ( executor == null )
+            {
+                copyFile( entry, fileName );
+                return;
+            }
+            if ( !scheduledNames.add( fileName ) )
+            {
+                // a duplicate entry must overwrite the earlier one, never race with it
+                awaitPending();
+            }
+            pending.add( executor.submit( new Callable<Void>()
+            {
+
+                @Override
+                public Void call()
+                    throws Exception
+                {
+                    synchronized ( FileCopier.this )
+                    {
+                        if ( aborted )
+                        {
+                            return null;
+                        }
+                        running++;
+                    }
+                    try
+                    {
+                        copyFile( entry, fileName );
+                    }
+                    finally
+                    {
+                        synchronized ( FileCopier.this )
+                        {
+                            running--;
+                            FileCopier.this.notifyAll();
+                        }
+                    }
+                    return null;
+                }
+
+            } ) );
+        }
+
+        void createSymbolicLink( File symlink, File target )
+            throws IOException
+        {
+            if ( executor == null )
+            {
+                SymlinkUtils.createSymbolicLink( symlink, target );
+            }
+            else
+            {
+                symlinks.add( symlink );
+                symlinkTargets.add( target );
+            }
+        }
+
+        void finish()
+            throws IOException
+        {
+            try
+            {
+                awaitPending();
+                for ( int i = 0; i < symlinks.size(); i++ )
+                {
+                    SymlinkUtils.createSymbolicLink( symlinks.get( i ), symlinkTargets.get( i ) );
+                }
+            }
+            finally
+            {
+                shutdown();
+            }
+        }
+
+        /**
+         * Cancels the pending copies and waits for those already running, so no file is written once the archiver
+         * failed.
+         */
+        void abort()
+        {
+            synchronized ( this )
+            {
+                aborted = true;
+            }
+            for ( Future<Void> future : pending )
+            {
+                future.cancel( true );
+            }
+            pending.clear();
+            try
+            {
+                synchronized ( this )
+                {
+                    while ( running > 0 )
+                    {
+                        wait();
+                    }
+                }
+                if ( ownsExecutor )
+                {
+                    executor.shutdownNow();
+                    executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void awaitPending()
+            throws IOException
+        {
+            try
+            {
+                for ( Future<Void> future : pending )
+                {
+                    future.get();
+                }
+                pending.clear();
+                scheduledNames.clear();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new ArchiverException( "Interrupted while copying files to " + getDestFile(), e );
+            }
+            catch ( ExecutionException e )
+            {
+                final Throwable cause = e.getCause();
+                if ( cause instanceof IOException )
+                {
+                    throw (IOException) cause;
+                }
+                if ( cause instanceof RuntimeException )
+                {
+                    throw (RuntimeException) cause;
+                }
+                if ( cause instanceof Error )
+                {
+                    throw (Error) cause;
+                }
+                throw new ArchiverException( "Problem copying files : " + cause.getMessage(), cause );
+            }
+        }
+
+        private void shutdown()
+        {
+            if ( ownsExecutor )
+            {
+                executor.shutdownNow();
+            }
+        }
+
+    }
+
     @Override
     protected void cleanUp()
         throws IOException
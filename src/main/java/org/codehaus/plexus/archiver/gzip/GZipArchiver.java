@@ -29,6 +29,26 @@
 
     final GZipCompressor compressor = new GZipCompressor();
 
+    /**
+     * @param threads the number of threads used to compress, see {@link GZipCompressor#setThreads(int)}
+     *
+     * @since 4.1.1
+     */
+    public void setCompressionThreads( int threads )
+    {
+        compressor.setThreads( threads );
+    }
+
+    /**
+     * @param blockSize the size of the blocks compressed in parallel, see {@link GZipCompressor#setBlockSize(int)}
+     *
+     * @since 4.1.1
+     */
+    public void setCompressionBlockSize( int blockSize )
+    {
+        compressor.setBlockSize( blockSize );
+    }
+
     @Override
     protected void execute()
         throws ArchiverException, IOException
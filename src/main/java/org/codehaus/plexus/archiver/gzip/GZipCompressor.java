@@ -30,6 +30,45 @@
 
     private OutputStream zOut;
 
+    private int threads = 1;
+
+    private int blockSize = ParallelGZipOutputStream.DEFAULT_BLOCK_SIZE;
+
+    /**
+     * Sets the number of threads used to compress. With more than one thread, blocks of
+     * {@link #setBlockSize(int) block size} bytes are compressed in parallel, see {@link ParallelGZipOutputStream}.
+     *
+     * @param threads the number of threads, 1 by default
+     *
+     * @since 4.1.1
+     */
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Sets the size of the blocks compressed independently when compressing with more than one thread.
+     *
+     * @param blockSize the block size in bytes
+     *
+     * @since 4.1.1
+     */
+    public void setBlockSize( int blockSize )
+    {
+        this.blockSize = blockSize;
+    }
+
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
     /**
      * perform the GZip compression operation.
      */
@@ -39,7 +78,10 @@ public void compress()
     {
         try
         {
-            zOut = Streams.bufferedOutputStream( new GZIPOutputStream( new FileOutputStream( getDestFile() ) ) );
+            final OutputStream out = new FileOutputStream( getDestFile() );
+            zOut = Streams.bufferedOutputStream( threads > 1
+                                                     ? new ParallelGZipOutputStream( out, blockSize, threads )
+                                                     : new GZIPOutputStream( out ) );
             compress( getSource(), zOut );
         }
         catch ( IOException ioe )
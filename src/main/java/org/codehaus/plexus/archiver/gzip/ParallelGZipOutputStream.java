@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.codehaus.plexus.archiver.util.BufferPool;
+import org.codehaus.plexus.archiver.util.ParallelCompressorOutputStream;
+
+/**
+ * An output stream writing a single gzip member, compressing fixed-size blocks of data in parallel.
+ * <p>
+ * This is the approach taken by pigz: every block is deflated on its own, primed with the last 32 KiB of the
+ * previous block as dictionary, and ends with a sync flush so the compressed blocks can simply be concatenated.
+ * The result is a regular gzip stream, readable by any gzip implementation. The compression ratio is slightly
+ * worse than the one of {@link java.util.zip.GZIPOutputStream}, as matches can't span blocks.</p>
+ *
+ * @since 4.1.1
+ */
+public class ParallelGZipOutputStream
+    extends ParallelCompressorOutputStream
+{
+
+    /**
+     * The default size of the blocks compressed independently.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final byte[] HEADER =
+    {
+        (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private final int level;
+
+    private final CRC32 crc = new CRC32();
+
+    private long size;
+
+    /**
+     * Creates a stream compressing blocks of {@link #DEFAULT_BLOCK_SIZE} bytes with as many threads as there are
+     * processors available.
+     *
+     * @param out the stream to write the compressed data to
+     *
+     * @throws IOException if the gzip header can't be written
+     */
+    public ParallelGZipOutputStream( OutputStream out )
+        throws IOException
+    {
+        this( out, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param out the stream to write the compressed data to
+     * @param blockSize the number of bytes compressed independently from each other
+     * @param threads the number of threads to compress blocks with
+     *
+     * @throws IOException if the gzip header can't be written
+     */
+    public ParallelGZipOutputStream( OutputStream out, int blockSize, int threads )
+        throws IOException
+    {
+        this( out, blockSize, threads, Deflater.DEFAULT_COMPRESSION );
+    }
+
+    /**
+     * @param out the stream to write the compressed data to
+     * @param blockSize the number of bytes compressed independently from each other
+     * @param threads the number of threads to compress blocks with
+     * @param level the compression level, see {@link Deflater#setLevel(int)}
+     *
+     * @throws IOException if the gzip header can't be written
+     */
+    public ParallelGZipOutputStream( OutputStream out, int blockSize, int threads, int level )
+        throws IOException
+    {
+        super( out, blockSize, threads );
+        this.level = level;
+        out.write( HEADER );
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len )
+        throws IOException
+    {
+        super.write( b, off, len );
+        crc.update( b, off, len );
+        size += len;
+    }
+
+    @Override
+    protected Callable<byte[]> newBlockCompressor( byte[] data, int length, byte[] previousData, boolean last )
+    {
+        return new BlockCompressor( data, length, previousData, last );
+    }
+
+    @Override
+    protected void writeTrailer()
+        throws IOException
+    {
+        final byte[] trailer = new byte[ 8 ];
+        putInt( trailer, 0, (int) crc.getValue() );
+        putInt( trailer, 4, (int) size );
+        out.write( trailer );
+    }
+
+    private static void putInt( byte[] b, int off, int value )
+    {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) ( value >> 8 );
+        b[off + 2] = (byte) ( value >> 16 );
+        b[off + 3] = (byte) ( value >> 24 );
+    }
+
+    private class BlockCompressor
+        implements Callable<byte[]>
+    {
+
+        private final byte[] data;
+
+        private final int length;
+
+        private final byte[] dictionary;
+
+        private final boolean last;
+
+        BlockCompressor( byte[] data, int length, byte[] dictionary, boolean last )
+        {
+            this.data = data;
+            this.length = length;
+            this.dictionary = dictionary;
+            this.last = last;
+        }
+
+        @Override
+        public byte[] call()
+        {
+            final Deflater deflater = new Deflater( level, true );
+            final BufferPool pool = BufferPool.getDefault();
+            final byte[] buffer = pool.acquire();
+            try
+            {
+                if ( dictionary != null )
+                {
+                    final int dictionaryLength = Math.min( DICTIONARY_SIZE, dictionary.length );
+                    deflater.setDictionary( dictionary, dictionary.length - dictionaryLength, dictionaryLength );
+                }
+                deflater.setInput( data, 0, length );
+                final ByteArrayOutputStream compressed = new ByteArrayOutputStream( length / 2 + 64 );
+                if ( last )
+                {
+                    deflater.finish();
+                    while ( !deflater.finished() )
+                    {
+                        compressed.write( buffer, 0, deflater.deflate( buffer ) );
+                    }
+                }
+                else
+                {
+                    // a sync flush aligns the output to a byte boundary without ending the deflate stream
+                    int count;
+                    do
+                    {
+                        count = deflater.deflate( buffer, 0, buffer.length, Deflater.SYNC_FLUSH );
+                        compressed.write( buffer, 0, count );
+                    }
+                    while ( count == buffer.length );
+                }
+                return compressed.toByteArray();
+            }
+            finally
+            {
+                pool.release( buffer );
+                deflater.end();
+            }
+        }
+
+    }
+
+}
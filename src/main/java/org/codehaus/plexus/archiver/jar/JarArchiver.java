@@ -45,7 +45,7 @@
 import org.codehaus.plexus.logging.console.ConsoleLogger;
 import org.codehaus.plexus.util.IOUtil;
 import static org.codehaus.plexus.archiver.util.Streams.bufferedOutputStream;
-import static org.codehaus.plexus.archiver.util.Streams.fileOutputStream;
+import static org.codehaus.plexus.archiver.util.Streams.newFileOutputStream;
 
 /**
  * Base class for tasks that build archives in JAR file format.
@@ -426,6 +426,10 @@ private void createIndexList( ConcurrentJarCreator zOut )
         writer.println();
 
         // header newline
+        if ( getDestFile() == null )
+        {
+            throw new ArchiverException( "The destination file must be set to name the jar in its index." );
+        }
         writer.println( getDestFile().getName() );
 
         // filter out META-INF if it doesn't contain anything other than the index and manifest.
@@ -584,7 +588,7 @@ protected boolean createEmptyZip( File zipFile )
         {
             getLogger().debug( "Building MANIFEST-only jar: " + getDestFile().getAbsolutePath() );
             zipArchiveOutputStream =
-                new ZipArchiveOutputStream( bufferedOutputStream( fileOutputStream( getDestFile(), "jar" ) ) );
+                new ZipArchiveOutputStream( bufferedOutputStream( newFileOutputStream( getDestFile(), "jar" ) ) );
 
             zipArchiveOutputStream.setEncoding( getEncoding() );
             if ( isCompress() )
@@ -843,4 +847,13 @@ else if ( !name.contains( "/" ) )
         }
     }
 
+    /**
+     * Jar archives aren't cached, as their manifest and index depend on more than the entries.
+     */
+    @Override
+    protected String getConfigurationFingerprint()
+    {
+        return null;
+    }
+
 }
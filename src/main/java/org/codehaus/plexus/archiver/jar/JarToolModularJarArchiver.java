@@ -18,6 +18,7 @@
 
 import org.apache.commons.compress.parallel.InputStreamSupplier;
 import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.diags.ArchiverEvents;
 import org.codehaus.plexus.archiver.zip.ConcurrentJarCreator;
 
 import java.io.File;
@@ -96,6 +97,13 @@ protected void zipFile( InputStreamSupplier is, ConcurrentJarCreator zOut,
             fromArchive, mode, symlinkDestination, addInParallel );
     }
 
+    @Override
+    public boolean isSupportingStreaming()
+    {
+        // the jar tool updates the archive file
+        return false;
+    }
+
     @Override
     protected void postCreateArchive()
         throws ArchiverException
@@ -111,12 +119,14 @@ protected void postCreateArchive()
             getLogger().debug( "Using the jar tool to " +
                 "update the archive to modular JAR." );
 
+            ArchiverEvents.Recording recording = ArchiverEvents.jarToolInvocation( getDestFile() );
 			Integer result = (Integer) jarTool.getClass()
                 .getMethod( "run",
                     PrintStream.class, PrintStream.class, String[].class )
                 .invoke( jarTool,
                     System.out, System.err,
                     getJarToolArguments() );
+            recording.end( getDestFile().length() );
 
             if ( result != null && result != 0 )
             {
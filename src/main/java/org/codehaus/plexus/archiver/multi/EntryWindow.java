@@ -0,0 +1,833 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.multi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.codehaus.plexus.archiver.ArchiveEntry;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.UnixStat;
+import org.codehaus.plexus.components.io.attributes.PlexusIoResourceAttributes;
+import org.codehaus.plexus.components.io.attributes.SimpleResourceAttributes;
+import org.codehaus.plexus.components.io.functions.PlexusIoResourceConsumer;
+import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
+import org.codehaus.plexus.components.io.resources.AbstractPlexusIoResourceCollection;
+import org.codehaus.plexus.components.io.resources.PlexusIoResource;
+import org.codehaus.plexus.components.io.resources.PlexusIoResourceCollection;
+import org.codehaus.plexus.components.io.resources.Stream;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * The entries of a {@link MultiFormatArchiver}, read once and fed to all its target archivers through a bounded
+ * window.
+ * <p>
+ * A single thread adds the entries while each target archiver iterates over its own {@link #getView(int) view} of
+ * them, at its own pace. The contents of files are read in chunks into the window, and a chunk is released as soon
+ * as every target has read past it. While the window is full, the reading thread waits for the slowest target, as
+ * long as a target is reading the contents it holds, or has yet to get to them. Only when none of them does, the
+ * contents which don't fit are left to the targets to read from the resources themselves, so the reading thread and
+ * the targets never wait for each other forever. A target given an entry it hasn't opened yet, as archivers
+ * compressing entries on other threads do, is waited for a {@link #GRACE_PERIOD} without any reads, as it may skip
+ * the entry.</p>
+ */
+class EntryWindow
+{
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * How long the reading thread waits for a target to open an entry it was given, in milliseconds.
+     */
+    static final long GRACE_PERIOD = 1000;
+
+    private static final int STALLED = 0;
+
+    private static final int OPENING = 1;
+
+    private static final int READING = 2;
+
+    private final int targets;
+
+    private final long memoryBudget;
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    private final Set<Entry> held = new LinkedHashSet<Entry>();
+
+    private final boolean[] done;
+
+    /**
+     * The number of entries each target was given.
+     */
+    private final int[] handed;
+
+    /**
+     * Counts the chunks released and the entries opened, telling the reading thread the targets go on.
+     */
+    private long progress;
+
+    private long memoryUsed;
+
+    private long lastModified = PlexusIoResource.UNKNOWN_MODIFICATION_DATE;
+
+    private boolean complete;
+
+    private boolean aborted;
+
+    /**
+     * @param targets the number of target archivers
+     * @param memoryBudget the number of bytes of file contents the window holds at most
+     */
+    EntryWindow( int targets, long memoryBudget )
+    {
+        this.targets = targets;
+        this.memoryBudget = memoryBudget;
+        this.done = new boolean[ targets ];
+        this.handed = new int[ targets ];
+    }
+
+    /**
+     * Makes an entry available to the targets and reads its contents into the window, as long as they read them.
+     *
+     * @param archiveEntry the entry to add
+     *
+     * @throws IOException if the entry can't be read
+     */
+    void add( ArchiveEntry archiveEntry )
+        throws IOException
+    {
+        final Entry entry;
+        synchronized ( this )
+        {
+            entry = new Entry( archiveEntry, getAttributes( archiveEntry ), entries.size() );
+            entries.add( entry );
+            final long l = entry.getLastModified();
+            if ( l != PlexusIoResource.UNKNOWN_MODIFICATION_DATE && l > lastModified )
+            {
+                lastModified = l;
+            }
+            notifyAll();
+        }
+        if ( entry.type == ArchiveEntry.FILE )
+        {
+            read( entry );
+        }
+    }
+
+    private static PlexusIoResourceAttributes getAttributes( ArchiveEntry entry )
+    {
+        final PlexusIoResourceAttributes attributes = entry.getResourceAttributes();
+        final int mode = entry.getMode() & UnixStat.PERM_MASK;
+        return attributes != null
+                   ? new SimpleResourceAttributes( attributes.getUserId(), attributes.getUserName(),
+                                                   attributes.getGroupId(), attributes.getGroupName(), mode )
+                   : new SimpleResourceAttributes( null, null, null, null, mode );
+
+    }
+
+    private void read( Entry entry )
+        throws IOException
+    {
+        final long size = entry.getSize();
+        InputStream in = null;
+        try
+        {
+            int pending = -1;
+            while ( true )
+            {
+                final int capacity;
+                if ( size >= 0 && entry.length >= size )
+                {
+                    // the size has been read, the contents are most likely complete
+                    if ( in == null )
+                    {
+                        in = entry.source.getInputStream();
+                    }
+                    pending = in.read();
+                    if ( pending == -1 )
+                    {
+                        append( entry, null, 0, true );
+                        return;
+                    }
+                    capacity = CHUNK_SIZE;
+                }
+                else
+                {
+                    capacity = size >= 0 ? (int) Math.min( CHUNK_SIZE, size - entry.length ) : CHUNK_SIZE;
+                }
+                if ( !reserve( entry, capacity ) )
+                {
+                    return;
+                }
+                if ( in == null )
+                {
+                    in = entry.source.getInputStream();
+                }
+                final byte[] chunk = new byte[ capacity ];
+                int n = 0;
+                if ( pending >= 0 )
+                {
+                    chunk[n++] = (byte) pending;
+                }
+                int read;
+                while ( n < capacity && ( read = in.read( chunk, n, capacity - n ) ) != -1 )
+                {
+                    n += read;
+                }
+                final boolean eof = n < capacity;
+                append( entry, chunk, n, eof );
+                if ( eof )
+                {
+                    return;
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * Reserves the memory of the next chunk of an entry, waiting for the targets to release chunks while the window
+     * is full and they go on reading.
+     *
+     * @return true if the chunk fits, false if the targets must read the rest of the entry from its resource
+     */
+    private synchronized boolean reserve( Entry entry, int capacity )
+        throws InterruptedIOException
+    {
+        long deadline = 0;
+        long lastProgress = progress;
+        while ( !aborted && !isDone() && capacity <= memoryBudget && memoryUsed + capacity > memoryBudget )
+        {
+            final int state = getTargetState();
+            if ( state == STALLED )
+            {
+                break;
+            }
+            if ( state == READING || progress != lastProgress )
+            {
+                deadline = 0;
+                lastProgress = progress;
+            }
+            if ( state == READING )
+            {
+                await( 0 );
+            }
+            else
+            {
+                final long now = System.currentTimeMillis();
+                if ( deadline == 0 )
+                {
+                    deadline = now + GRACE_PERIOD;
+                }
+                else if ( now >= deadline )
+                {
+                    break;
+                }
+                await( deadline - now );
+            }
+        }
+        if ( aborted || isDone() || memoryUsed + capacity > memoryBudget )
+        {
+            entry.truncated = true;
+            notifyAll();
+            return false;
+        }
+        memoryUsed += capacity;
+        return true;
+    }
+
+    private synchronized void append( Entry entry, byte[] chunk, int length, boolean eof )
+    {
+        if ( chunk != null )
+        {
+            memoryUsed -= chunk.length - length;
+            if ( length > 0 )
+            {
+                entry.chunks.add( new Chunk( entry.length, length < chunk.length ? Arrays.copyOf( chunk, length )
+                                                                                   : chunk ) );
+                entry.length += length;
+                held.add( entry );
+            }
+        }
+        entry.complete = eof;
+        release( entry );
+        notifyAll();
+    }
+
+    /**
+     * Releases the chunks of an entry every target has read.
+     */
+    private void release( Entry entry )
+    {
+        long min = Long.MAX_VALUE;
+        for ( long position : entry.positions )
+        {
+            min = Math.min( min, position );
+        }
+        boolean released = false;
+        while ( entry.firstHeld < entry.chunks.size() )
+        {
+            final Chunk chunk = entry.chunks.get( entry.firstHeld );
+            if ( chunk.end() > min )
+            {
+                break;
+            }
+            entry.chunks.set( entry.firstHeld++, null );
+            memoryUsed -= chunk.data.length;
+            released = true;
+        }
+        if ( entry.firstHeld == entry.chunks.size() )
+        {
+            held.remove( entry );
+        }
+        if ( released )
+        {
+            progress++;
+            notifyAll();
+        }
+    }
+
+    private boolean isDone()
+    {
+        for ( boolean d : done )
+        {
+            if ( !d )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells how the targets holding chunks back go on: {@link #READING} if one of them reads the chunks or has yet to
+     * get to them, {@link #OPENING} if one of them was given an entry it hasn't opened, or {@link #STALLED} if none
+     * of them reads the chunks any more, as they all wait for the contents the window can't hold.
+     */
+    private int getTargetState()
+    {
+        int state = STALLED;
+        for ( Entry entry : held )
+        {
+            for ( int target = 0; target < targets; target++ )
+            {
+                if ( entry.positions[target] >= entry.length )
+                {
+                    continue;
+                }
+                if ( entry.reading[target] || entry.index >= handed[target] )
+                {
+                    return READING;
+                }
+                state = OPENING;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @param timeout the number of milliseconds to wait at most, or 0 to wait until notified
+     */
+    private void await( long timeout )
+        throws InterruptedIOException
+    {
+        try
+        {
+            wait( timeout );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException ex = new InterruptedIOException();
+            ex.initCause( e );
+            throw ex;
+        }
+    }
+
+    /**
+     * Tells the targets there are no more entries.
+     */
+    synchronized void complete()
+    {
+        complete = true;
+        notifyAll();
+    }
+
+    /**
+     * Tells the targets the entries couldn't all be read, so the archives can't be created.
+     */
+    synchronized void abort()
+    {
+        aborted = true;
+        notifyAll();
+    }
+
+    /**
+     * Releases everything a target holds, once it is done with the entries.
+     *
+     * @param target the index of the target
+     */
+    synchronized void finished( int target )
+    {
+        done[target] = true;
+        for ( Entry entry : new ArrayList<Entry>( held ) )
+        {
+            entry.positions[target] = Long.MAX_VALUE;
+            release( entry );
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return the entry at an index, waiting for it to be added, or null if there are fewer entries
+     */
+    private synchronized Entry get( int index )
+        throws InterruptedIOException
+    {
+        while ( index >= entries.size() && !complete && !aborted )
+        {
+            await( 0 );
+        }
+        if ( aborted )
+        {
+            throw new ArchiverException( "Reading the entries of the archive failed." );
+        }
+        return index < entries.size() ? entries.get( index ) : null;
+    }
+
+    /**
+     * @param target the index of the target
+     *
+     * @return the entries as the target sees them
+     */
+    PlexusIoResourceCollection getView( int target )
+    {
+        return new View( target );
+    }
+
+    private static final class Chunk
+    {
+
+        private final long start;
+
+        private final byte[] data;
+
+        Chunk( long start, byte[] data )
+        {
+            this.start = start;
+            this.data = data;
+        }
+
+        long end()
+        {
+            return start + data.length;
+        }
+
+    }
+
+    /**
+     * An entry, whose contents the targets read from the window as far as it holds them.
+     */
+    final class Entry
+    {
+
+        private final ArchiveEntry source;
+
+        private final int type;
+
+        private final PlexusIoResourceAttributes attributes;
+
+        private final List<Chunk> chunks = new ArrayList<Chunk>();
+
+        private final long[] positions = new long[ targets ];
+
+        private final boolean[] opened = new boolean[ targets ];
+
+        /**
+         * Whether a target has the contents open and reads them from the window.
+         */
+        private final boolean[] reading = new boolean[ targets ];
+
+        private final int index;
+
+        private int firstHeld;
+
+        private long length;
+
+        private boolean complete;
+
+        private boolean truncated;
+
+        Entry( ArchiveEntry source, PlexusIoResourceAttributes attributes, int index )
+        {
+            this.source = source;
+            this.type = source.getType();
+            this.attributes = attributes;
+            this.index = index;
+            for ( int i = 0; i < targets; i++ )
+            {
+                if ( done[i] )
+                {
+                    positions[i] = Long.MAX_VALUE;
+                }
+            }
+        }
+
+        String getName()
+        {
+            return source.getName();
+        }
+
+        long getLastModified()
+        {
+            return source.getResource().getLastModified();
+        }
+
+        long getSize()
+        {
+            return type == ArchiveEntry.FILE ? source.getResource().getSize() : PlexusIoResource.UNKNOWN_RESOURCE_SIZE;
+        }
+
+        PlexusIoResourceAttributes getAttributes()
+        {
+            return attributes;
+        }
+
+        boolean isDirectory()
+        {
+            return type == ArchiveEntry.DIRECTORY;
+        }
+
+        boolean isSymlink()
+        {
+            return type == ArchiveEntry.SYMLINK;
+        }
+
+        String getSymlinkDestination()
+            throws IOException
+        {
+            final PlexusIoResource resource = source.getResource();
+            return resource instanceof SymlinkDestinationSupplier
+                       ? ( (SymlinkDestinationSupplier) resource ).getSymlinkDestination()
+                       : null;
+        }
+
+        /**
+         * Opens the contents for a target. Once the target read them, it reads them again from the resource.
+         */
+        InputStream open( int target )
+            throws IOException
+        {
+            synchronized ( EntryWindow.this )
+            {
+                if ( !opened[target] )
+                {
+                    opened[target] = true;
+                    reading[target] = true;
+                    progress++;
+                    EntryWindow.this.notifyAll();
+                    return new EntryInputStream( this, target );
+                }
+            }
+            return source.getInputStream();
+        }
+
+    }
+
+    private final class EntryInputStream
+        extends InputStream
+    {
+
+        private final Entry entry;
+
+        private final int target;
+
+        private long position;
+
+        private int chunkIndex;
+
+        private InputStream fallback;
+
+        private boolean closed;
+
+        EntryInputStream( Entry entry, int target )
+        {
+            this.entry = entry;
+            this.target = target;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            final byte[] b = new byte[ 1 ];
+            return read( b, 0, 1 ) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+            throws IOException
+        {
+            if ( fallback != null )
+            {
+                return fallback.read( b, off, len );
+            }
+            if ( closed )
+            {
+                throw new IOException( "Stream closed" );
+            }
+            if ( len == 0 )
+            {
+                return 0;
+            }
+            Chunk chunk = null;
+            synchronized ( EntryWindow.this )
+            {
+                while ( chunk == null )
+                {
+                    if ( aborted )
+                    {
+                        throw new IOException( "Reading the entries of the archive failed." );
+                    }
+                    if ( position < entry.length )
+                    {
+                        chunkIndex = Math.max( chunkIndex, entry.firstHeld );
+                        while ( entry.chunks.get( chunkIndex ).end() <= position )
+                        {
+                            chunkIndex++;
+                        }
+                        chunk = entry.chunks.get( chunkIndex );
+                    }
+                    else if ( entry.complete )
+                    {
+                        return -1;
+                    }
+                    else if ( entry.truncated )
+                    {
+                        break;
+                    }
+                    else
+                    {
+                        await( 0 );
+                    }
+                }
+            }
+            if ( chunk == null )
+            {
+                fallback = openFallback();
+                return fallback.read( b, off, len );
+            }
+
+            final int offset = (int) ( position - chunk.start );
+            final int n = Math.min( len, chunk.data.length - offset );
+            System.arraycopy( chunk.data, offset, b, off, n );
+            position += n;
+            synchronized ( EntryWindow.this )
+            {
+                entry.positions[target] = position;
+                if ( position == chunk.end() )
+                {
+                    release( entry );
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Opens the resource to read the contents the window doesn't hold.
+         */
+        private InputStream openFallback()
+            throws IOException
+        {
+            final InputStream in = entry.source.getInputStream();
+            long skip = position;
+            while ( skip > 0 )
+            {
+                final long skipped = in.skip( skip );
+                if ( skipped > 0 )
+                {
+                    skip -= skipped;
+                }
+                else if ( in.read() != -1 )
+                {
+                    skip--;
+                }
+                else
+                {
+                    break;
+                }
+            }
+            releaseEntry();
+            return in;
+        }
+
+        private void releaseEntry()
+        {
+            synchronized ( EntryWindow.this )
+            {
+                entry.reading[target] = false;
+                entry.positions[target] = Long.MAX_VALUE;
+                release( entry );
+            }
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            if ( !closed )
+            {
+                closed = true;
+                if ( position == 0 && fallback == null )
+                {
+                    // nothing read, like archivers looking at the stream only, so the target may open it again
+                    synchronized ( EntryWindow.this )
+                    {
+                        entry.opened[target] = false;
+                        entry.reading[target] = false;
+                        EntryWindow.this.notifyAll();
+                    }
+                }
+                else
+                {
+                    releaseEntry();
+                }
+            }
+            if ( fallback != null )
+            {
+                fallback.close();
+            }
+        }
+
+    }
+
+    private final class View
+        extends AbstractPlexusIoResourceCollection
+    {
+
+        private final int target;
+
+        View( int target )
+        {
+            this.target = target;
+        }
+
+        @Override
+        public Iterator<PlexusIoResource> getResources()
+            throws IOException
+        {
+            return new Iterator<PlexusIoResource>()
+            {
+
+                private int index;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return peek() != null;
+                }
+
+                @Override
+                public PlexusIoResource next()
+                {
+                    final Entry next = peek();
+                    if ( next == null )
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    index++;
+                    synchronized ( EntryWindow.this )
+                    {
+                        handed[target] = Math.max( handed[target], index );
+                    }
+                    return WindowResource.of( next, target );
+                }
+
+                private Entry peek()
+                {
+                    try
+                    {
+                        return get( index );
+                    }
+                    catch ( InterruptedIOException e )
+                    {
+                        throw new ArchiverException( "Interrupted while waiting for the next entry.", e );
+                    }
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException( "remove" );
+                }
+
+            };
+        }
+
+        @Override
+        public Stream stream()
+        {
+            return new Stream()
+            {
+
+                @Override
+                public void forEach( PlexusIoResourceConsumer resourceConsumer )
+                    throws IOException
+                {
+                    final Iterator<PlexusIoResource> it = getResources();
+                    while ( it.hasNext() )
+                    {
+                        resourceConsumer.accept( it.next() );
+                    }
+                }
+
+            };
+        }
+
+        /**
+         * Unknown until all the entries are added rather than waiting for them, so a target checking whether its
+         * archive is up to date creates it.
+         */
+        @Override
+        public long getLastModified()
+            throws IOException
+        {
+            synchronized ( EntryWindow.this )
+            {
+                return complete ? lastModified : PlexusIoResource.UNKNOWN_MODIFICATION_DATE;
+            }
+        }
+
+        @Override
+        public boolean isConcurrentAccessSupported()
+        {
+            return true;
+        }
+
+    }
+
+}
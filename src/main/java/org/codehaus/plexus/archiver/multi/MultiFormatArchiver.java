@@ -0,0 +1,365 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.multi;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.plexus.archiver.AbstractArchiver;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.ResourceIterator;
+import org.codehaus.plexus.archiver.exceptions.EmptyArchiveException;
+
+/**
+ * An archiver creating several archives, typically of different formats, from a single read of its resources.
+ * <p>
+ * The resources are added to this archiver as usual, while the archives are created by target archivers, each
+ * configured with its destination file and format specific settings. On {@link #createArchive()}, the resources are
+ * walked and read once, and every target archiver creates its archive on a thread of its own, as the entries are
+ * read. The contents of files are shared through a window of {@link #setMemoryBudget(long) bounded size}, released as
+ * soon as all the targets consumed them. While the window is full, the reads wait for the slowest target; only a file
+ * the targets can't get past otherwise is left to them to read the rest of from its resource. The outcome for each
+ * target is available from {@link #getResults()}; if any of them fails, {@link #createArchive()} fails once all of
+ * them are done.</p>
+ * <p>
+ * The target archivers must not be given resources of their own, the entries are added to them as this archiver
+ * resolved them, with their names and modes.</p>
+ *
+ * @since 4.1.1
+ */
+public class MultiFormatArchiver
+    extends AbstractArchiver
+{
+
+    /**
+     * The default number of bytes of file contents the window between the reads and the targets holds, 64 MB.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    private final List<AbstractArchiver> targets = new ArrayList<AbstractArchiver>();
+
+    private final List<Result> results = new ArrayList<Result>();
+
+    private Executor executor;
+
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+    /**
+     * Adds an archiver creating one of the archives.
+     *
+     * @param archiver the target archiver, with its destination file set
+     */
+    public void addTarget( AbstractArchiver archiver )
+    {
+        targets.add( archiver );
+    }
+
+    public List<AbstractArchiver> getTargets()
+    {
+        return Collections.unmodifiableList( targets );
+    }
+
+    /**
+     * Sets the executor the target archivers run on. By default a thread is started for each of them.
+     * <p>
+     * The executor must be able to run all the targets at once, and must not be the one they compress on
+     * themselves, see {@link org.codehaus.plexus.archiver.zip.AbstractZipArchiver#setExecutor(Executor)}.</p>
+     *
+     * @param executor the executor, or null to start threads for each archive creation
+     */
+    public void setExecutor( Executor executor )
+    {
+        this.executor = executor;
+    }
+
+    public Executor getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * Sets how many bytes of file contents are kept on the heap until all the targets consumed them. The reads wait
+     * for the slowest target while it is full, unless another target waits for the contents; the targets then read
+     * the contents which don't fit from their resources.
+     *
+     * @param memoryBudget the number of bytes, defaults to {@link #DEFAULT_MEMORY_BUDGET}
+     */
+    public void setMemoryBudget( long memoryBudget )
+    {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public long getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    /**
+     * @return the outcome for each target archiver of the last {@link #createArchive()}, in the order they were
+     * added
+     */
+    public List<Result> getResults()
+    {
+        return Collections.unmodifiableList( results );
+    }
+
+    @Override
+    protected void validate()
+        throws ArchiverException, IOException
+    {
+        if ( targets.isEmpty() )
+        {
+            throw new ArchiverException( "No target archivers were added." );
+        }
+        for ( AbstractArchiver target : targets )
+        {
+            if ( target.getDestFile() == null )
+            {
+                throw new ArchiverException( "The destination file of " + target.getClass().getName()
+                                                 + " must be set." );
+            }
+        }
+    }
+
+    @Override
+    protected void execute()
+        throws ArchiverException, IOException
+    {
+        results.clear();
+        final ResourceIterator iter = getResources();
+        if ( !iter.hasNext() )
+        {
+            throw new EmptyArchiveException( "archive cannot be empty" );
+        }
+
+        final EntryWindow entries = new EntryWindow( targets.size(), memoryBudget );
+        final ExecutorService ownExecutor = executor == null ? Executors.newFixedThreadPool( targets.size() ) : null;
+        try
+        {
+            final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            boolean complete = false;
+            try
+            {
+                for ( int i = 0; i < targets.size(); i++ )
+                {
+                    final AbstractArchiver target = targets.get( i );
+                    final int index = i;
+                    final FutureTask<Result> task = new FutureTask<Result>( new Callable<Result>()
+                    {
+
+                        @Override
+                        public Result call()
+                        {
+                            return createArchive( target, entries, index );
+                        }
+
+                    } );
+                    ( ownExecutor != null ? ownExecutor : executor ).execute( task );
+                    futures.add( task );
+                }
+
+                while ( iter.hasNext() )
+                {
+                    entries.add( iter.next() );
+                }
+                entries.complete();
+                complete = true;
+            }
+            finally
+            {
+                if ( !complete )
+                {
+                    entries.abort();
+                }
+                // the targets read the entries until they are done
+                awaitResults( futures );
+            }
+        }
+        finally
+        {
+            if ( ownExecutor != null )
+            {
+                ownExecutor.shutdown();
+            }
+        }
+
+        reportResults();
+    }
+
+    private static Result createArchive( AbstractArchiver target, EntryWindow entries, int index )
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            target.addResources( entries.getView( index ) );
+            target.createArchive();
+            return new Result( target, null, System.nanoTime() - start );
+        }
+        catch ( Exception e )
+        {
+            return new Result( target, e, System.nanoTime() - start );
+        }
+        finally
+        {
+            // the window no longer holds contents for this target
+            entries.finished( index );
+        }
+    }
+
+    private void awaitResults( List<Future<Result>> futures )
+    {
+        boolean interrupted = false;
+        for ( int i = 0; i < futures.size(); i++ )
+        {
+            Result result = null;
+            while ( result == null )
+            {
+                try
+                {
+                    result = futures.get( i ).get();
+                }
+                catch ( InterruptedException e )
+                {
+                    // the targets can't be left waiting for entries which will never be added
+                    interrupted = true;
+                }
+                catch ( ExecutionException e )
+                {
+                    result = new Result( targets.get( i ), e.getCause(), 0 );
+                }
+            }
+            results.add( result );
+        }
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reportResults()
+        throws ArchiverException
+    {
+        final StringBuilder failed = new StringBuilder();
+        Throwable cause = null;
+        for ( Result result : results )
+        {
+            if ( result.isSuccessful() )
+            {
+                getLogger().debug( "Created " + result.getDestFile() + " in " + result.getDuration() + " ms" );
+                continue;
+            }
+            failed.append( failed.length() == 0 ? "" : ", " ).append( result.getDestFile() );
+            if ( cause == null )
+            {
+                cause = result.getFailure();
+            }
+        }
+        if ( cause != null )
+        {
+            throw new ArchiverException( "Failed to create " + failed + ": " + cause.getMessage(), cause );
+        }
+    }
+
+    @Override
+    protected String getArchiveType()
+    {
+        return "multi";
+    }
+
+    @Override
+    protected void close()
+        throws IOException
+    {
+    }
+
+    /**
+     * The outcome of the creation of one of the archives.
+     */
+    public static class Result
+    {
+
+        private final AbstractArchiver archiver;
+
+        private final Throwable failure;
+
+        private final long duration;
+
+        Result( AbstractArchiver archiver, Throwable failure, long nanos )
+        {
+            this.archiver = archiver;
+            this.failure = failure;
+            this.duration = TimeUnit.NANOSECONDS.toMillis( nanos );
+        }
+
+        public AbstractArchiver getArchiver()
+        {
+            return archiver;
+        }
+
+        public File getDestFile()
+        {
+            return archiver.getDestFile();
+        }
+
+        public boolean isSuccessful()
+        {
+            return failure == null;
+        }
+
+        /**
+         * @return the reason the archive couldn't be created, or null if it was
+         */
+        public Throwable getFailure()
+        {
+            return failure;
+        }
+
+        /**
+         * @return the milliseconds the target archiver took, including the time spent waiting for the entries
+         */
+        public long getDuration()
+        {
+            return duration;
+        }
+
+        /**
+         * @return the size of the archive created, or 0 if it couldn't be created
+         */
+        public long getSize()
+        {
+            return isSuccessful() ? getDestFile().length() : 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getDestFile() + ( isSuccessful() ? ": " + getSize() + " bytes in " + duration + " ms"
+                                                    : ": failed, " + failure.getMessage() );
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.multi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import javax.annotation.Nonnull;
+import org.codehaus.plexus.components.io.attributes.PlexusIoResourceAttributes;
+import org.codehaus.plexus.components.io.functions.ResourceAttributeSupplier;
+import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
+import org.codehaus.plexus.components.io.resources.AbstractPlexusIoResource;
+
+/**
+ * An entry of a {@link MultiFormatArchiver} as one of its target archivers sees it, whose contents are read from the
+ * {@link EntryWindow} shared by all the targets.
+ */
+class WindowResource
+    extends AbstractPlexusIoResource
+    implements ResourceAttributeSupplier
+{
+
+    private final EntryWindow.Entry entry;
+
+    private final int target;
+
+    private WindowResource( EntryWindow.Entry entry, int target, boolean isFile, boolean isDirectory )
+    {
+        super( entry.getName(), entry.getLastModified(), entry.getSize(), isFile, isDirectory, true );
+        this.entry = entry;
+        this.target = target;
+    }
+
+    static WindowResource of( EntryWindow.Entry entry, int target )
+    {
+        if ( entry.isSymlink() )
+        {
+            return new Symlink( entry, target );
+        }
+        return entry.isDirectory()
+                   ? new WindowResource( entry, target, false, true )
+                   : new WindowResource( entry, target, true, false );
+    }
+
+    EntryWindow.Entry getEntry()
+    {
+        return entry;
+    }
+
+    @Override
+    public PlexusIoResourceAttributes getAttributes()
+    {
+        return entry.getAttributes();
+    }
+
+    @Nonnull
+    @Override
+    public InputStream getContents()
+        throws IOException
+    {
+        if ( !isFile() || isSymbolicLink() )
+        {
+            throw new IOException( getName() + " has no contents." );
+        }
+        return entry.open( target );
+    }
+
+    @Override
+    public URL getURL()
+        throws IOException
+    {
+        return null;
+    }
+
+    /**
+     * A symbolic link, kept apart as archivers tell links by their {@link SymlinkDestinationSupplier} interface.
+     */
+    private static class Symlink
+        extends WindowResource
+        implements SymlinkDestinationSupplier
+    {
+
+        Symlink( EntryWindow.Entry entry, int target )
+        {
+            super( entry, target, true, false );
+        }
+
+        @Override
+        public boolean isSymbolicLink()
+        {
+            return true;
+        }
+
+        @Override
+        public String getSymlinkDestination()
+            throws IOException
+        {
+            return getEntry().getSymlinkDestination();
+        }
+
+    }
+
+}
@@ -0,0 +1,819 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.tar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.codehaus.plexus.archiver.util.BufferPool;
+import org.codehaus.plexus.archiver.util.DaemonThreadFactory;
+import org.codehaus.plexus.archiver.util.Streams;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+/**
+ * Decompresses a file made of independently compressed parts on a thread pool, returning the data in order.
+ * <p>
+ * The parts are the members of a multi-member gzip file, as written by bgzip, the streams of a concatenated bzip2
+ * file, as written by pbzip2 or {@link org.codehaus.plexus.archiver.bzip2.ParallelBZip2OutputStream}, or the blocks
+ * of an xz file, as written by xz --threads or {@link org.codehaus.plexus.archiver.xz.ParallelXZOutputStream}. The
+ * boundaries of xz blocks are read from the index of the file. Those of gzip members and bzip2 streams are found by
+ * looking for their headers, which may also occur by chance within compressed data. As soon as a part fails to
+ * decompress, or is too large to be kept in memory, the rest of the file is decompressed sequentially, starting at the
+ * last boundary known to be right.</p>
+ * <p>
+ * Files made of a single part are decompressed sequentially.</p>
+ *
+ * @since 4.1.1
+ */
+class ParallelDecompressingInputStream
+    extends InputStream
+{
+
+    /**
+     * The largest part kept in memory once decompressed.
+     */
+    private static final int MAX_DECOMPRESSED_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Adjacent gzip members and bzip2 streams are decompressed together up to this compressed size.
+     */
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private final Iterator<Segment> segments;
+
+    private final ExecutorService executorService;
+
+    private final int maxPendingSegments;
+
+    private final Deque<PendingSegment> pendingSegments = new ArrayDeque<PendingSegment>();
+
+    private InputStream current;
+
+    private boolean sequential;
+
+    private ParallelDecompressingInputStream( Iterator<Segment> segments, int threads )
+    {
+        this.segments = segments;
+        this.executorService =
+            DaemonThreadFactory.newFixedThreadPool( threads, "plexus-archiver-" + getClass().getSimpleName() );
+        this.maxPendingSegments = threads + 1;
+    }
+
+    /**
+     * @param file a gzip file
+     * @param threads the number of threads to decompress with
+     *
+     * @return the decompressed contents of the file
+     */
+    static InputStream gzip( File file, int threads )
+    {
+        return new ParallelDecompressingInputStream( new ConcatenatedSegmentIterator( file, GZIP ), threads );
+    }
+
+    /**
+     * @param file a bzip2 file
+     * @param threads the number of threads to decompress with
+     *
+     * @return the decompressed contents of the file
+     */
+    static InputStream bzip2( File file, int threads )
+    {
+        return new ParallelDecompressingInputStream( new ConcatenatedSegmentIterator( file, BZIP2 ), threads );
+    }
+
+    /**
+     * @param file an xz file
+     * @param threads the number of threads to decompress with
+     *
+     * @return the decompressed contents of the file
+     *
+     * @throws IOException if the index of the file can't be read
+     */
+    static InputStream xz( File file, int threads )
+        throws IOException
+    {
+        final SeekableXZInputStream xzIn = new SeekableXZInputStream( new SeekableFileInputStream( file ) );
+        final int blockCount;
+        try
+        {
+            blockCount = xzIn.getBlockCount();
+        }
+        finally
+        {
+            xzIn.close();
+        }
+        return new ParallelDecompressingInputStream( new XZSegmentIterator( file, blockCount ), threads );
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        final byte[] b = new byte[ 1 ];
+        return read( b, 0, 1 ) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len )
+        throws IOException
+    {
+        if ( len == 0 )
+        {
+            return 0;
+        }
+        while ( current != null || nextSegment() )
+        {
+            final int count = current.read( b, off, len );
+            if ( count > 0 )
+            {
+                return count;
+            }
+            if ( count == -1 )
+            {
+                current.close();
+                current = null;
+                if ( sequential )
+                {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        stopDecompressing();
+        if ( segments instanceof Closeable )
+        {
+            ( (Closeable) segments ).close();
+        }
+        if ( current != null )
+        {
+            current.close();
+            current = null;
+        }
+    }
+
+    private boolean nextSegment()
+        throws IOException
+    {
+        if ( sequential )
+        {
+            return false;
+        }
+        while ( pendingSegments.size() < maxPendingSegments && segments.hasNext() )
+        {
+            final Segment segment = segments.next();
+            pendingSegments.add( new PendingSegment( segment, executorService.submit( new Callable<byte[]>()
+            {
+
+                @Override
+                public byte[] call()
+                    throws IOException
+                {
+                    return segment.decompress( MAX_DECOMPRESSED_SIZE );
+                }
+
+            } ) ) );
+        }
+        if ( pendingSegments.isEmpty() )
+        {
+            return false;
+        }
+
+        final PendingSegment pending = pendingSegments.remove();
+        byte[] data;
+        try
+        {
+            data = pending.data.get();
+        }
+        catch ( InterruptedException e )
+        {
+            stopDecompressing();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while decompressing" );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( !pending.segment.isGuessed() )
+            {
+                stopDecompressing();
+                final Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException( cause.getMessage(), cause );
+            }
+            // the start of this segment is right, as the previous one decompressed fine
+            data = null;
+        }
+        if ( data == null )
+        {
+            sequential = true;
+            stopDecompressing();
+            current = pending.segment.decompressRemaining();
+        }
+        else
+        {
+            current = new ByteArrayInputStream( data );
+        }
+        return true;
+    }
+
+    /**
+     * Ends the threads decompressing ahead, as no more of their segments will be read.
+     */
+    private void stopDecompressing()
+    {
+        executorService.shutdownNow();
+        pendingSegments.clear();
+    }
+
+    private static FileInputStream openAt( File file, long offset )
+        throws IOException
+    {
+        final FileInputStream in = new FileInputStream( file );
+        try
+        {
+            in.getChannel().position( offset );
+            return in;
+        }
+        catch ( IOException e )
+        {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static byte[] readAtMost( InputStream in, int limit )
+        throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BufferPool pool = BufferPool.getDefault();
+        final byte[] buffer = pool.acquire();
+        try
+        {
+            int count;
+            while ( ( count = in.read( buffer ) ) != -1 )
+            {
+                if ( out.size() + count > limit )
+                {
+                    return null;
+                }
+                out.write( buffer, 0, count );
+            }
+        }
+        finally
+        {
+            pool.release( buffer );
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads up to a given number of bytes. Unlike commons-compress' BoundedInputStream, this reports the bytes
+     * available within them.
+     */
+    private static class BoundedSegmentInputStream
+        extends FilterInputStream
+    {
+
+        private long remaining;
+
+        BoundedSegmentInputStream( InputStream in, long length )
+        {
+            super( in );
+            this.remaining = length;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            if ( remaining <= 0 )
+            {
+                return -1;
+            }
+            final int b = in.read();
+            if ( b != -1 )
+            {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+            throws IOException
+        {
+            if ( remaining <= 0 )
+            {
+                return -1;
+            }
+            final int count = in.read( b, off, (int) Math.min( len, remaining ) );
+            if ( count > 0 )
+            {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip( long n )
+            throws IOException
+        {
+            final long skipped = in.skip( Math.min( n, remaining ) );
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available()
+            throws IOException
+        {
+            return (int) Math.min( in.available(), remaining );
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+    }
+
+    private static class PendingSegment
+    {
+
+        private final Segment segment;
+
+        private final Future<byte[]> data;
+
+        PendingSegment( Segment segment, Future<byte[]> data )
+        {
+            this.segment = segment;
+            this.data = data;
+        }
+
+    }
+
+    /**
+     * A part of the compressed file that can be decompressed on its own.
+     */
+    private abstract static class Segment
+    {
+
+        /**
+         * @return whether the boundaries of this segment are guessed, rather than known to be right
+         */
+        abstract boolean isGuessed();
+
+        /**
+         * @param limit the maximum number of bytes to return
+         *
+         * @return the decompressed segment, or null if larger than the limit
+         */
+        abstract byte[] decompress( int limit )
+            throws IOException;
+
+        /**
+         * @return the decompressed data from the start of this segment up to the end of the file
+         */
+        abstract InputStream decompressRemaining()
+            throws IOException;
+
+    }
+
+    /**
+     * A format whose compressed files may be concatenated.
+     */
+    private abstract static class ConcatenatedFormat
+    {
+
+        /**
+         * @return the number of bytes needed to recognize the start of a compressed file
+         */
+        abstract int getHeaderLength();
+
+        abstract boolean isHeader( byte[] b, int off );
+
+        /**
+         * @param in one or more concatenated compressed files
+         */
+        abstract InputStream decompress( InputStream in )
+            throws IOException;
+
+    }
+
+    private static final ConcatenatedFormat GZIP = new ConcatenatedFormat()
+    {
+
+        @Override
+        int getHeaderLength()
+        {
+            return 4;
+        }
+
+        @Override
+        boolean isHeader( byte[] b, int off )
+        {
+            // magic, deflate method, no reserved flags
+            return b[off] == (byte) 0x1f && b[off + 1] == (byte) 0x8b && b[off + 2] == 8 && ( b[off + 3] & 0xe0 ) == 0;
+        }
+
+        @Override
+        InputStream decompress( InputStream in )
+            throws IOException
+        {
+            // unlike GZIPInputStream, this reports a truncated member rather than ignoring it
+            return new GzipCompressorInputStream( in, true );
+        }
+
+    };
+
+    private static final ConcatenatedFormat BZIP2 = new ConcatenatedFormat()
+    {
+
+        @Override
+        int getHeaderLength()
+        {
+            return 10;
+        }
+
+        @Override
+        boolean isHeader( byte[] b, int off )
+        {
+            // magic and block size, followed by the magic of either the first block or the end of the stream
+            if ( b[off] != 'B' || b[off + 1] != 'Z' || b[off + 2] != 'h' || b[off + 3] < '1' || b[off + 3] > '9' )
+            {
+                return false;
+            }
+            return ( b[off + 4] == 0x31 && b[off + 5] == 0x41 && b[off + 6] == 0x59 && b[off + 7] == 0x26
+                && b[off + 8] == 0x53 && b[off + 9] == 0x59 )
+                || ( b[off + 4] == 0x17 && b[off + 5] == 0x72 && b[off + 6] == 0x45 && b[off + 7] == 0x38
+                && b[off + 8] == 0x50 && b[off + 9] == (byte) 0x90 );
+        }
+
+        @Override
+        InputStream decompress( InputStream in )
+            throws IOException
+        {
+            return new BZip2CompressorInputStream( in, true );
+        }
+
+    };
+
+    /**
+     * Splits a file of concatenated gzip or bzip2 files at the headers found while scanning it.
+     */
+    private static class ConcatenatedSegmentIterator
+        implements Iterator<Segment>, Closeable
+    {
+
+        private final File file;
+
+        private final ConcatenatedFormat format;
+
+        private final byte[] buffer = new byte[ 64 * 1024 ];
+
+        private InputStream in;
+
+        /**
+         * Offset in the file of the first byte of the buffer.
+         */
+        private long bufferOffset;
+
+        private int bufferLength;
+
+        private int scanPosition;
+
+        private long segmentStart;
+
+        private boolean exhausted;
+
+        ConcatenatedSegmentIterator( File file, ConcatenatedFormat format )
+        {
+            this.file = file;
+            this.format = format;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return !exhausted;
+        }
+
+        @Override
+        public Segment next()
+        {
+            if ( exhausted )
+            {
+                throw new NoSuchElementException();
+            }
+            final long start = segmentStart;
+            final long end;
+            try
+            {
+                end = nextHeader( start + MIN_SEGMENT_SIZE );
+            }
+            catch ( IOException e )
+            {
+                // let the sequential decompression report the problem
+                exhausted = true;
+                closeQuietly();
+                return new ConcatenatedSegment( file, format, start, -1 );
+            }
+            segmentStart = end;
+            return new ConcatenatedSegment( file, format, start, exhausted ? -1 : end - start );
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            if ( in != null )
+            {
+                in.close();
+                in = null;
+            }
+        }
+
+        private void closeQuietly()
+        {
+            try
+            {
+                close();
+            }
+            catch ( IOException ignore )
+            {
+                // ignore
+            }
+        }
+
+        /**
+         * @return the offset of the next header at or after the given offset, or the length of the file
+         */
+        private long nextHeader( long from )
+            throws IOException
+        {
+            if ( in == null )
+            {
+                in = new FileInputStream( file );
+            }
+            final int headerLength = format.getHeaderLength();
+            while ( true )
+            {
+                final int first = (int) Math.max( scanPosition, Math.min( from - bufferOffset, bufferLength ) );
+                for ( int i = first; i + headerLength <= bufferLength; i++ )
+                {
+                    if ( bufferOffset + i >= from && format.isHeader( buffer, i ) )
+                    {
+                        scanPosition = i + 1;
+                        return bufferOffset + i;
+                    }
+                }
+                // keep the bytes that may start a header
+                final int kept = Math.min( bufferLength, headerLength - 1 );
+                System.arraycopy( buffer, bufferLength - kept, buffer, 0, kept );
+                bufferOffset += bufferLength - kept;
+                bufferLength = kept;
+                scanPosition = 0;
+                final int count = in.read( buffer, kept, buffer.length - kept );
+                if ( count == -1 )
+                {
+                    exhausted = true;
+                    close();
+                    return bufferOffset + bufferLength;
+                }
+                bufferLength += count;
+            }
+        }
+
+    }
+
+    private static class ConcatenatedSegment
+        extends Segment
+    {
+
+        private final File file;
+
+        private final ConcatenatedFormat format;
+
+        private final long offset;
+
+        private final long length;
+
+        /**
+         * @param length the compressed length, or -1 if the segment extends to the end of the file
+         */
+        ConcatenatedSegment( File file, ConcatenatedFormat format, long offset, long length )
+        {
+            this.file = file;
+            this.format = format;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        boolean isGuessed()
+        {
+            return true;
+        }
+
+        @Override
+        byte[] decompress( int limit )
+            throws IOException
+        {
+            if ( length == -1 )
+            {
+                // the last segment is decompressed by decompressRemaining
+                return offset == 0 ? null : decompressLast( limit );
+            }
+            final FileInputStream in = openAt( file, offset );
+            try
+            {
+                final InputStream compressed =
+                    Streams.bufferedInputStream( new BoundedSegmentInputStream( in, length ) );
+                final byte[] data = readAtMost( format.decompress( compressed ), limit );
+                // a decoder ending early, as on a truncated header, means the next boundary is wrong
+                if ( data != null && compressed.read() != -1 )
+                {
+                    throw new IOException( "Compressed data at " + offset + " ends before " + ( offset + length ) );
+                }
+                return data;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+
+        private byte[] decompressLast( int limit )
+            throws IOException
+        {
+            final InputStream in = decompressRemaining();
+            try
+            {
+                return readAtMost( in, limit );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+
+        @Override
+        InputStream decompressRemaining()
+            throws IOException
+        {
+            return format.decompress( Streams.bufferedInputStream( openAt( file, offset ) ) );
+        }
+
+    }
+
+    /**
+     * Iterates over the blocks of an xz file.
+     */
+    private static class XZSegmentIterator
+        implements Iterator<Segment>
+    {
+
+        private final File file;
+
+        private final int blockCount;
+
+        private int block;
+
+        XZSegmentIterator( File file, int blockCount )
+        {
+            this.file = file;
+            this.blockCount = blockCount;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return block < blockCount;
+        }
+
+        @Override
+        public Segment next()
+        {
+            if ( block >= blockCount )
+            {
+                throw new NoSuchElementException();
+            }
+            return new XZSegment( file, block++ );
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private static class XZSegment
+        extends Segment
+    {
+
+        private final File file;
+
+        private final int block;
+
+        XZSegment( File file, int block )
+        {
+            this.file = file;
+            this.block = block;
+        }
+
+        @Override
+        boolean isGuessed()
+        {
+            return false;
+        }
+
+        @Override
+        byte[] decompress( int limit )
+            throws IOException
+        {
+            final SeekableXZInputStream in = new SeekableXZInputStream( new SeekableFileInputStream( file ) );
+            try
+            {
+                final long size = in.getBlockSize( block );
+                if ( size > limit )
+                {
+                    return null;
+                }
+                in.seekToBlock( block );
+                final byte[] data = new byte[ (int) size ];
+                if ( IOUtils.readFully( in, data ) != data.length )
+                {
+                    throw new IOException( "Unexpected end of xz block " + block );
+                }
+                return data;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+
+        @Override
+        InputStream decompressRemaining()
+            throws IOException
+        {
+            final SeekableXZInputStream in = new SeekableXZInputStream( new SeekableFileInputStream( file ) );
+            try
+            {
+                in.seekToBlock( block );
+                return in;
+            }
+            catch ( IOException e )
+            {
+                in.close();
+                throw e;
+            }
+        }
+
+    }
+
+}
@@ -17,7 +17,6 @@
 package org.codehaus.plexus.archiver.tar;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -29,9 +28,13 @@
 import org.codehaus.plexus.archiver.AbstractArchiver;
 import org.codehaus.plexus.archiver.ArchiveEntry;
 import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.ArchiverMetrics;
 import org.codehaus.plexus.archiver.ResourceIterator;
+import org.codehaus.plexus.archiver.bzip2.ParallelBZip2OutputStream;
 import org.codehaus.plexus.archiver.exceptions.EmptyArchiveException;
+import org.codehaus.plexus.archiver.gzip.ParallelGZipOutputStream;
 import org.codehaus.plexus.archiver.util.ResourceUtils;
+import org.codehaus.plexus.archiver.xz.ParallelXZOutputStream;
 import org.codehaus.plexus.archiver.util.Streams;
 import org.codehaus.plexus.components.io.attributes.PlexusIoResourceAttributes;
 import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
@@ -39,7 +42,10 @@
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
 import org.iq80.snappy.SnappyOutputStream;
+import org.tukaani.xz.LZMA2Options;
 import static org.codehaus.plexus.archiver.util.Streams.bufferedOutputStream;
+import static org.codehaus.plexus.archiver.util.Streams.newFileOutputStream;
+import static org.codehaus.plexus.archiver.util.Streams.nonClosingOutputStream;
 
 /**
  * @author <a href="mailto:evenisse@codehaus.org">Emmanuel Venisse</a>
@@ -57,6 +63,12 @@
 
     private TarCompressionMethod compression = TarCompressionMethod.none;
 
+    private int compressionThreads = 1;
+
+    private int compressionBlockSize;
+
+    private int compressionPreset = LZMA2Options.PRESET_DEFAULT;
+
     private TarOptions options = new TarOptions();
 
     private TarArchiveOutputStream tOut;
@@ -99,6 +111,46 @@ public void setCompression( TarCompressionMethod mode )
         this.compression = mode;
     }
 
+    /**
+     * Set the number of threads used to compress the archive.
+     * With gzip, bzip2 or xz compression and more than one thread, blocks of the archive are compressed in
+     * parallel, see {@link ParallelGZipOutputStream}, {@link ParallelBZip2OutputStream} and
+     * {@link ParallelXZOutputStream}. Snappy compression ignores this setting.
+     *
+     * @param threads the number of threads, 1 by default.
+     *
+     * @since 4.1.1
+     */
+    public void setCompressionThreads( int threads )
+    {
+        this.compressionThreads = threads;
+    }
+
+    /**
+     * Set the size of the blocks compressed independently when compressing with more than one thread.
+     * bzip2 compression always uses blocks of 900k.
+     *
+     * @param blockSize the block size in bytes, or 0 for the default of the compression method.
+     *
+     * @since 4.1.1
+     */
+    public void setCompressionBlockSize( int blockSize )
+    {
+        this.compressionBlockSize = blockSize;
+    }
+
+    /**
+     * Set the xz compression preset, from 0 to 9. Other compression methods ignore this setting.
+     *
+     * @param preset the preset, 6 by default.
+     *
+     * @since 4.1.1
+     */
+    public void setCompressionPreset( int preset )
+    {
+        this.compressionPreset = preset;
+    }
+
     @Override
     protected void execute()
         throws ArchiverException, IOException
@@ -115,25 +167,31 @@ protected void execute()
         }
 
         File tarFile = getDestFile();
+        final OutputStream destStream = getDestStream();
 
-        if ( tarFile == null )
-        {
-            throw new ArchiverException( "You must set the destination tar file." );
-        }
-        if ( tarFile.exists() && !tarFile.isFile() )
+        if ( destStream == null )
         {
-            throw new ArchiverException( tarFile + " isn't a file." );
-        }
-        if ( tarFile.exists() && !tarFile.canWrite() )
-        {
-            throw new ArchiverException( tarFile + " is read-only." );
+            if ( tarFile == null )
+            {
+                throw new ArchiverException( "You must set the destination tar file." );
+            }
+            if ( tarFile.exists() && !tarFile.isFile() )
+            {
+                throw new ArchiverException( tarFile + " isn't a file." );
+            }
+            if ( tarFile.exists() && !tarFile.canWrite() )
+            {
+                throw new ArchiverException( tarFile + " is read-only." );
+            }
         }
 
-        getLogger().info( "Building tar: " + tarFile.getAbsolutePath() );
+        getLogger().info( "Building tar: " + ( destStream != null ? "stream" : tarFile.getAbsolutePath() ) );
 
         try
         {
-            tOut = new TarArchiveOutputStream( compress( compression, new FileOutputStream( tarFile ) ), "UTF8" );
+            final OutputStream out =
+                destStream != null ? nonClosingOutputStream( destStream ) : newFileOutputStream( tarFile, "tar" );
+            tOut = new TarArchiveOutputStream( compress( compression, out ), "UTF8" );
             if ( longFileMode.isTruncateMode() )
             {
                 tOut.setLongFileMode( TarArchiveOutputStream.LONGFILE_TRUNCATE );
@@ -155,6 +213,8 @@ else if ( longFileMode.isFailMode() || longFileMode.isOmitMode() )
             }
 
             longWarningGiven = false;
+            final ArchiverMetrics metrics = getMetrics();
+            final long addStart = System.nanoTime();
             while ( iter.hasNext() )
             {
                 ArchiveEntry entry = iter.next();
@@ -166,10 +226,19 @@ else if ( longFileMode.isFailMode() || longFileMode.isOmitMode() )
                 String fileName = entry.getName();
                 String name = StringUtils.replace( fileName, File.separatorChar, '/' );
 
+                final long entryStart = System.nanoTime();
                 tarFile( entry, tOut, name );
+                if ( entry.getType() == ArchiveEntry.FILE )
+                {
+                    metrics.entryProcessed( name, Math.max( 0, entry.getResource().getSize() ),
+                                            System.nanoTime() - entryStart );
+                }
             }
 
+            final long closeStart = System.nanoTime();
+            metrics.phaseCompleted( ArchiverMetrics.Phase.ADD_RESOURCES, closeStart - addStart );
             tOut.close();
+            metrics.phaseCompleted( ArchiverMetrics.Phase.CLOSE, System.nanoTime() - closeStart );
         }
         finally
         {
@@ -481,10 +550,22 @@ private OutputStream compress( TarCompressionMethod tarCompressionMethod, final
     {
         if ( TarCompressionMethod.gzip.equals( tarCompressionMethod ) )
         {
+            if ( compressionThreads > 1 )
+            {
+                return Streams.bufferedOutputStream(
+                    new ParallelGZipOutputStream( ostream, compressionBlockSize > 0
+                                                               ? compressionBlockSize
+                                                               : ParallelGZipOutputStream.DEFAULT_BLOCK_SIZE,
+                                                  compressionThreads ) );
+            }
             return Streams.bufferedOutputStream( new GZIPOutputStream( ostream ) );
         }
         else if ( TarCompressionMethod.bzip2.equals( tarCompressionMethod ) )
         {
+            if ( compressionThreads > 1 )
+            {
+                return Streams.bufferedOutputStream( new ParallelBZip2OutputStream( ostream, compressionThreads ) );
+            }
             return new BZip2CompressorOutputStream( bufferedOutputStream( ostream ) );
         }
         else if ( TarCompressionMethod.snappy.equals( tarCompressionMethod ) )
@@ -493,7 +574,15 @@ else if ( TarCompressionMethod.snappy.equals( tarCompressionMethod ) )
         }
         else if ( TarCompressionMethod.xz.equals( tarCompressionMethod ) )
         {
-            return new XZCompressorOutputStream( bufferedOutputStream( ostream ) );
+            if ( compressionThreads > 1 )
+            {
+                final int blockSize = compressionBlockSize > 0
+                                          ? compressionBlockSize
+                                          : ParallelXZOutputStream.getDefaultBlockSize( compressionPreset );
+                return Streams.bufferedOutputStream(
+                    new ParallelXZOutputStream( ostream, compressionPreset, blockSize, compressionThreads ) );
+            }
+            return new XZCompressorOutputStream( bufferedOutputStream( ostream ), compressionPreset );
         }
 
         return ostream;
@@ -505,6 +594,12 @@ public boolean isSupportingForced()
         return true;
     }
 
+    @Override
+    public boolean isSupportingStreaming()
+    {
+        return true;
+    }
+
     @Override
     protected void cleanUp()
         throws IOException
@@ -532,4 +627,12 @@ protected String getArchiveType()
         return "TAR";
     }
 
+    @Override
+    protected String getConfigurationFingerprint()
+    {
+        return longFileMode + "\n" + compression + '\n' + compressionThreads + '\n' + compressionBlockSize + '\n'
+                   + compressionPreset + '\n' + options.getUserName() + '\n' + options.getUid() + '\n'
+                   + options.getGroup() + '\n' + options.getGid() + '\n' + options.getPreserveLeadingSlashes();
+    }
+
 }
@@ -1,17 +1,28 @@
 package org.codehaus.plexus.archiver.tar;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CountingInputStream;
 import org.codehaus.plexus.archiver.ArchiveFile;
+import org.codehaus.plexus.archiver.util.ArchiveDirectoryCache;
 import static org.codehaus.plexus.archiver.util.Streams.bufferedInputStream;
+import static org.codehaus.plexus.archiver.util.Streams.bufferedOutputStream;
 
 /**
  * <p>
@@ -23,8 +34,13 @@
  * file does not. In other words, the only way to read a tar file in
  * a performant manner is by iterating over it from the beginning to
  * the end. If you try to open another entry than the "next" entry,
- * then you force to skip entries, until the requested entry is found.
- * This may require to reread the entire file!</p>
+ * then an index of the offsets of the entries is built, by reading all the
+ * headers once, and the entry is read from its offset. An entry ahead of the
+ * one read last is reached by reading on, so entries are best opened in the
+ * order of the file. Going back, uncompressed files and xz compressed files
+ * made of several blocks are read from the offset directly, other compressed
+ * files have to be decompressed up to the entry again. The index may be kept
+ * in a sidecar file, see {@link #setIndexFile(File)}.</p>
  * <p>
  * In other words, the recommended use of this class is to use
  * {@link #getEntries()} and invoke {@link #getInputStream(TarArchiveEntry)}
@@ -38,12 +54,34 @@
     implements ArchiveFile
 {
 
+    private static final int INDEX_MAGIC = 0x50545849;
+
     private final java.io.File file;
 
     private TarArchiveInputStream inputStream;
 
     private TarArchiveEntry currentEntry;
 
+    private long currentOffset;
+
+    private final Map<String, IndexEntry> index = new HashMap<String, IndexEntry>();
+
+    private boolean indexComplete;
+
+    private File indexFile;
+
+    /**
+     * The uncompressed tar file, read on from entry to entry as long as they are opened in the order of the file.
+     */
+    private CountingInputStream cursor;
+
+    private long cursorStart;
+
+    /**
+     * The contents of an entry read from the cursor, until they are closed.
+     */
+    private InputStream cursorEntry;
+
     /**
      * Creates a new instance with the given file.
      */
@@ -52,6 +90,26 @@ public TarFile( File file )
         this.file = file;
     }
 
+    /**
+     * Sets the file the index of the entries is kept in.
+     * <p>
+     * The index is read from this file if it was written for the current size and modification time of the
+     * archive, and it is written to this file once it has been built.</p>
+     *
+     * @param indexFile the index file, or null to keep the index in memory only
+     *
+     * @since 4.1.1
+     */
+    public void setIndexFile( File indexFile )
+    {
+        this.indexFile = indexFile;
+    }
+
+    public File getIndexFile()
+    {
+        return indexFile;
+    }
+
     /**
      * Implementation of {@link ArchiveFile#getEntries()}. Note, that there is
      * an interaction between this method and {@link #getInputStream(TarArchiveEntry)},
@@ -80,7 +138,7 @@ public boolean hasMoreElements()
                 {
                     try
                     {
-                        currentEntry = inputStream.getNextTarEntry();
+                        nextEntry();
                     }
                     catch ( IOException e )
                     {
@@ -112,6 +170,18 @@ public void close()
             inputStream.close();
             inputStream = null;
         }
+        closeCursor();
+    }
+
+    private void closeCursor()
+        throws IOException
+    {
+        cursorEntry = null;
+        if ( cursor != null )
+        {
+            cursor.close();
+            cursor = null;
+        }
     }
 
     @Override
@@ -143,7 +213,60 @@ public void close()
 
             };
         }
-        return getInputStream( entry, currentEntry );
+        IndexEntry indexEntry = index.get( entry.getName() );
+        if ( indexEntry == null && !indexComplete )
+        {
+            buildIndex();
+            indexEntry = index.get( entry.getName() );
+        }
+        if ( indexEntry == null )
+        {
+            throw new IOException( "Unknown entry: " + entry.getName() );
+        }
+        final boolean ahead = inputStream != null && currentEntry != null && indexEntry.offset > currentOffset;
+        if ( ahead || indexEntry.sparse )
+        {
+            // reached by reading on, or stored in pieces
+            return getInputStream( entry, currentEntry );
+        }
+        return getInputStream( indexEntry );
+    }
+
+    private InputStream getInputStream( IndexEntry indexEntry )
+        throws IOException
+    {
+        if ( cursorEntry != null )
+        {
+            // the contents of another entry are still read from the cursor
+            return new BoundedInputStream( getInputStream( file, indexEntry.offset ), indexEntry.size );
+        }
+        final long position = cursor != null ? cursorStart + cursor.getByteCount() : -1;
+        if ( indexEntry.offset < position || cursor == null )
+        {
+            closeCursor();
+            cursor = new CountingInputStream( getInputStream( file, indexEntry.offset ) );
+            cursorStart = indexEntry.offset;
+        }
+        else if ( IOUtils.skip( cursor, indexEntry.offset - position ) != indexEntry.offset - position )
+        {
+            throw new EOFException( "Truncated tar file " + file );
+        }
+        final BoundedInputStream in = new BoundedInputStream( cursor, indexEntry.size )
+        {
+
+            @Override
+            public void close()
+            {
+                // the cursor is left open for the next entry
+                if ( cursorEntry == this )
+                {
+                    cursorEntry = null;
+                }
+            }
+
+        };
+        cursorEntry = in;
+        return in;
     }
 
     protected InputStream getInputStream( File file )
@@ -152,6 +275,40 @@ protected InputStream getInputStream( File file )
         return new FileInputStream( file );
     }
 
+    /**
+     * Returns the contents of the uncompressed tar file, starting at the given offset.
+     * <p>
+     * By default, the contents returned by {@link #getInputStream(File)} are skipped up to the offset, which is
+     * a seek for uncompressed files. Subclasses reading compressed files may seek on their own.</p>
+     *
+     * @param file the tar file
+     * @param offset the offset in the uncompressed tar file
+     *
+     * @return the contents of the tar file from the offset on
+     *
+     * @throws IOException if the file can't be read
+     *
+     * @since 4.1.1
+     */
+    protected InputStream getInputStream( File file, long offset )
+        throws IOException
+    {
+        final InputStream in = getInputStream( file );
+        try
+        {
+            if ( IOUtils.skip( in, offset ) != offset )
+            {
+                throw new EOFException( "Truncated tar file " + file );
+            }
+            return in;
+        }
+        catch ( IOException e )
+        {
+            in.close();
+            throw e;
+        }
+    }
+
     private InputStream getInputStream( TarArchiveEntry entry, TarArchiveEntry currentEntry )
         throws IOException
     {
@@ -191,12 +348,157 @@ private void open()
         inputStream = new TarArchiveInputStream( bufferedInputStream( getInputStream( file ) ), "UTF8" );
     }
 
+    private void nextEntry()
+        throws IOException
+    {
+        currentEntry = inputStream.getNextTarEntry();
+        if ( currentEntry != null )
+        {
+            currentOffset = inputStream.getBytesRead();
+            addToIndex( currentEntry, currentOffset );
+        }
+    }
+
+    private void addToIndex( TarArchiveEntry entry, long offset )
+    {
+        // like a scan from the start, the first of several entries of the same name wins
+        if ( !index.containsKey( entry.getName() ) )
+        {
+            index.put( entry.getName(), new IndexEntry( offset, entry.getSize(), entry.isSparse() ) );
+        }
+    }
+
+    private void buildIndex()
+        throws IOException
+    {
+        final ArchiveDirectoryCache cache = ArchiveDirectoryCache.getDefault();
+        if ( cache != null )
+        {
+            // the offsets are those of the decompressed archive, which each subclass reads its own way
+            @SuppressWarnings( "unchecked" )
+            final Map<String, IndexEntry> cached =
+                (Map<String, IndexEntry>) cache.getIndex( file, getClass().getName() );
+            if ( cached != null )
+            {
+                index.putAll( cached );
+                indexComplete = true;
+                return;
+            }
+        }
+        if ( readIndex() )
+        {
+            cacheIndex( cache );
+            return;
+        }
+        final TarArchiveInputStream in =
+            new TarArchiveInputStream( bufferedInputStream( getInputStream( file ) ), "UTF8" );
+        try
+        {
+            for ( TarArchiveEntry entry = in.getNextTarEntry(); entry != null; entry = in.getNextTarEntry() )
+            {
+                addToIndex( entry, in.getBytesRead() );
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        indexComplete = true;
+        writeIndex();
+        cacheIndex( cache );
+    }
+
+    private void cacheIndex( ArchiveDirectoryCache cache )
+    {
+        if ( cache != null )
+        {
+            cache.putIndex( file, getClass().getName(), new HashMap<String, IndexEntry>( index ) );
+        }
+    }
+
+    private boolean readIndex()
+        throws IOException
+    {
+        if ( indexFile == null || !indexFile.isFile() )
+        {
+            return false;
+        }
+        final DataInputStream in = new DataInputStream( bufferedInputStream( new FileInputStream( indexFile ) ) );
+        try
+        {
+            if ( in.readInt() != INDEX_MAGIC || in.readLong() != file.length()
+                || in.readLong() != file.lastModified() )
+            {
+                return false;
+            }
+            final Map<String, IndexEntry> entries = new HashMap<String, IndexEntry>();
+            for ( int i = in.readInt(); i > 0; i-- )
+            {
+                final String name = in.readUTF();
+                entries.put( name, new IndexEntry( in.readLong(), in.readLong(), in.readBoolean() ) );
+            }
+            index.putAll( entries );
+            indexComplete = true;
+            return true;
+        }
+        catch ( IOException e )
+        {
+            // a damaged index is built again
+            return false;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private void writeIndex()
+    {
+        if ( indexFile == null )
+        {
+            return;
+        }
+        try
+        {
+            final File tmpFile = new File( indexFile.getPath() + ".tmp" );
+            final DataOutputStream out =
+                new DataOutputStream( bufferedOutputStream( new FileOutputStream( tmpFile ) ) );
+            try
+            {
+                out.writeInt( INDEX_MAGIC );
+                out.writeLong( file.length() );
+                out.writeLong( file.lastModified() );
+                out.writeInt( index.size() );
+                for ( Map.Entry<String, IndexEntry> entry : index.entrySet() )
+                {
+                    out.writeUTF( entry.getKey() );
+                    out.writeLong( entry.getValue().offset );
+                    out.writeLong( entry.getValue().size );
+                    out.writeBoolean( entry.getValue().sparse );
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+            if ( !tmpFile.renameTo( indexFile ) )
+            {
+                indexFile.delete();
+                tmpFile.renameTo( indexFile );
+            }
+        }
+        catch ( IOException e )
+        {
+            // the index is only kept to save time, it is built again next time
+        }
+    }
+
     private boolean findEntry( TarArchiveEntry entry, TarArchiveEntry currentEntry )
         throws IOException
     {
         for ( ;; )
         {
-            this.currentEntry = inputStream.getNextTarEntry();
+            nextEntry();
             if ( this.currentEntry == null
                      || ( currentEntry != null && this.currentEntry.equals( currentEntry ) ) )
             {
@@ -209,4 +511,25 @@ private boolean findEntry( TarArchiveEntry entry, TarArchiveEntry currentEntry )
         }
     }
 
+    /**
+     * The location of an entry in the uncompressed tar file.
+     */
+    private static class IndexEntry
+    {
+
+        private final long offset;
+
+        private final long size;
+
+        private final boolean sparse;
+
+        IndexEntry( long offset, long size, boolean sparse )
+        {
+            this.offset = offset;
+            this.size = size;
+            this.sparse = sparse;
+        }
+
+    }
+
 }
@@ -21,13 +21,18 @@
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.zip.GZIPInputStream;
+import javax.annotation.Nonnull;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.compress.utils.CloseShieldFilterInputStream;
 import org.codehaus.plexus.archiver.AbstractUnArchiver;
 import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.util.FileRegionInputStream;
 import org.codehaus.plexus.archiver.util.Streams;
 import org.codehaus.plexus.components.io.filemappers.FileMapper;
 import org.codehaus.plexus.util.IOUtil;
@@ -54,6 +59,8 @@ public TarUnArchiver( File sourceFile )
      */
     private UntarCompressionMethod compression = UntarCompressionMethod.NONE;
 
+    private int decompressionThreads = 1;
+
     /**
      * Set decompression algorithm to use; default=none.
      * <p>
@@ -73,6 +80,28 @@ public void setCompression( UntarCompressionMethod method )
         compression = method;
     }
 
+    /**
+     * Set the number of threads used to decompress the archive.
+     * <p>
+     * With more than one thread, the independently compressed parts of gzip, bzip2 and xz files are decompressed
+     * in parallel, ahead of extraction. Such files are written by bgzip, pbzip2 and xz --threads, or by
+     * {@link TarArchiver} when compressing with several threads, except for gzip. Other files are decompressed
+     * sequentially.</p>
+     *
+     * @param threads the number of threads, 1 by default
+     *
+     * @since 4.1.1
+     */
+    public void setDecompressionThreads( int threads )
+    {
+        this.decompressionThreads = threads;
+    }
+
+    public int getDecompressionThreads()
+    {
+        return decompressionThreads;
+    }
+
     /**
      * No encoding support in Untar.
      */
@@ -81,11 +110,24 @@ public void setEncoding( String encoding )
         getLogger().warn( "The TarUnArchiver doesn't support the encoding attribute" );
     }
 
+    @Override
+    public boolean isSupportingStreaming()
+    {
+        return true;
+    }
+
     @Override
     protected void execute()
         throws ArchiverException
     {
-        execute( getSourceFile(), getDestDirectory(), getFileMappers() );
+        if ( getSourceStream() != null )
+        {
+            execute( getSourceStream(), getDestDirectory(), getFileMappers() );
+        }
+        else
+        {
+            execute( getSourceFile(), getDestDirectory(), getFileMappers() );
+        }
     }
 
     @Override
@@ -98,24 +140,18 @@ protected void execute( File sourceFile, File destDirectory, FileMapper[] fileMa
         throws ArchiverException
     {
         TarArchiveInputStream tis = null;
+        FileChannel sourceChannel = null;
         try
         {
             getLogger().info( "Expanding: " + sourceFile + " into " + destDirectory );
             TarFile tarFile = new TarFile( sourceFile );
-            tis = new TarArchiveInputStream(
-                decompress( compression, sourceFile, new BufferedInputStream( new FileInputStream( sourceFile ) ) ) );
-            TarArchiveEntry te;
-            while ( ( te = tis.getNextTarEntry() ) != null )
+            if ( compression == UntarCompressionMethod.NONE )
             {
-                TarResource fileInfo = new TarResource( tarFile, te );
-                if ( isSelected( te.getName(), fileInfo ) )
-                {
-                    final String symlinkDestination = te.isSymbolicLink() ? te.getLinkName() : null;
-                    extractFile( sourceFile, destDirectory, tis, te.getName(), te.getModTime(), te.isDirectory(),
-                                 te.getMode() != 0 ? te.getMode() : null, symlinkDestination, fileMappers );
-
-                }
+                // the members of a plain tar file are copied from the file as is
+                sourceChannel = FileChannel.open( sourceFile.toPath(), StandardOpenOption.READ );
             }
+            tis = new TarArchiveInputStream( decompress( compression, sourceFile ) );
+            extract( tis, tarFile, sourceChannel, sourceFile, destDirectory, fileMappers );
             getLogger().debug( "expand complete" );
             tis.close();
             tis = null;
@@ -127,7 +163,100 @@ protected void execute( File sourceFile, File destDirectory, FileMapper[] fileMa
         finally
         {
             IOUtil.close( tis );
+            IOUtil.close( sourceChannel );
+        }
+    }
+
+    private void execute( InputStream in, File destDirectory, FileMapper[] fileMappers )
+        throws ArchiverException
+    {
+        TarArchiveInputStream tis = null;
+        try
+        {
+            getLogger().info( "Expanding: stream into " + destDirectory );
+            // the stream belongs to the caller, and is read sequentially, never in parallel
+            tis = new TarArchiveInputStream(
+                decompress( compression, null, new CloseShieldFilterInputStream( Streams.bufferedInputStream( in ) ) ) );
+            extract( tis, null, null, null, destDirectory, fileMappers );
+            getLogger().debug( "expand complete" );
+            tis.close();
+            tis = null;
+        }
+        catch ( IOException ioe )
+        {
+            throw new ArchiverException( "Error while expanding stream", ioe );
+        }
+        finally
+        {
+            IOUtil.close( tis );
+        }
+    }
+
+    private void extract( TarArchiveInputStream tis, TarFile tarFile, FileChannel sourceChannel, File sourceFile,
+                          File destDirectory, FileMapper[] fileMappers )
+        throws IOException, ArchiverException
+    {
+        TarArchiveEntry te;
+        while ( ( te = tis.getNextTarEntry() ) != null )
+        {
+            TarResource fileInfo = tarFile != null ? new TarResource( tarFile, te ) : new StreamedTarResource( te );
+            if ( isSelected( te.getName(), fileInfo ) )
+            {
+                final String symlinkDestination = te.isSymbolicLink() ? te.getLinkName() : null;
+                InputStream contents = tis;
+                if ( sourceChannel != null && te.isFile() && !te.isSparse() )
+                {
+                    // the data of the entry starts right after its headers, the rest is skipped by the next entry
+                    contents = new FileRegionInputStream( tis, sourceChannel, tis.getBytesRead(), te.getSize() );
+                }
+                extractFile( sourceFile, destDirectory, contents, te.getName(), te.getModTime(), te.isDirectory(),
+                             te.getMode() != 0 ? te.getMode() : null, symlinkDestination, fileMappers );
+
+            }
+        }
+    }
+
+    /**
+     * An entry of an archive read from a stream, whose contents can only be extracted, not read by selectors.
+     */
+    private static class StreamedTarResource
+        extends TarResource
+    {
+
+        StreamedTarResource( TarArchiveEntry entry )
+        {
+            super( null, entry );
+        }
+
+        @Nonnull
+        @Override
+        public InputStream getContents()
+            throws IOException
+        {
+            throw new IOException( "The contents of " + getName() + " can't be read ahead of a stream." );
+        }
+
+    }
+
+    private InputStream decompress( UntarCompressionMethod compression, final File file )
+        throws IOException
+    {
+        if ( decompressionThreads > 1 )
+        {
+            if ( compression == UntarCompressionMethod.GZIP )
+            {
+                return ParallelDecompressingInputStream.gzip( file, decompressionThreads );
+            }
+            else if ( compression == UntarCompressionMethod.BZIP2 )
+            {
+                return ParallelDecompressingInputStream.bzip2( file, decompressionThreads );
+            }
+            else if ( compression == UntarCompressionMethod.XZ )
+            {
+                return ParallelDecompressingInputStream.xz( file, decompressionThreads );
+            }
         }
+        return decompress( compression, file, new BufferedInputStream( new FileInputStream( file ) ) );
     }
 
     /**
@@ -150,7 +279,7 @@ private InputStream decompress( UntarCompressionMethod compression, final File f
         }
         else if ( compression == UntarCompressionMethod.BZIP2 )
         {
-            return new BZip2CompressorInputStream( istream );
+            return new BZip2CompressorInputStream( istream, true );
         }
         else if ( compression == UntarCompressionMethod.SNAPPY )
         {
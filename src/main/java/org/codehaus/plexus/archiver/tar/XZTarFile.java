@@ -18,7 +18,10 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import org.codehaus.plexus.archiver.util.Streams;
 import org.codehaus.plexus.archiver.xz.XZUnArchiver;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
 
 /**
  *
@@ -39,4 +42,24 @@ protected InputStream getInputStream( File file ) throws IOException
         return XZUnArchiver.getXZInputStream( super.getInputStream( file ) );
     }
 
+    /**
+     * Seeks to the offset, decompressing only the xz block it lies in. Files written by a single-threaded xz
+     * consist of a single block, which is decompressed from its start.
+     */
+    @Override
+    protected InputStream getInputStream( File file, long offset ) throws IOException
+    {
+        final SeekableXZInputStream in = new SeekableXZInputStream( new SeekableFileInputStream( file ) );
+        try
+        {
+            in.seek( offset );
+            return Streams.bufferedInputStream( in );
+        }
+        catch ( IOException e )
+        {
+            in.close();
+            throw e;
+        }
+    }
+
 }
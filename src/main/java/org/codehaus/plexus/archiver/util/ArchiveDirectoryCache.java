@@ -0,0 +1,418 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.IOUtils;
+
+/**
+ * A process-wide cache of the parsed directories of source archives, which are opened again and again by the
+ * archivers of a multi-module build.
+ * <p>
+ * Zip files are kept open along with their parsed central directory and shared by all the users of the cache, see
+ * {@link #openZipFile(File, String)}; {@link org.codehaus.plexus.archiver.tar.TarFile} keeps the index of its
+ * entries. Archives are keyed by their path, and an archive whose size or modification time changed is parsed
+ * again. The least recently used archives are evicted once the cache holds more than its maximum number of
+ * archives or entries, open zip files being closed when their last user is done.</p>
+ * <p>
+ * The cache is off by default, as cached zip files stay open, see {@link #setDefault(ArchiveDirectoryCache)}.</p>
+ *
+ * @since 4.1.1
+ */
+public class ArchiveDirectoryCache
+{
+
+    /**
+     * The maximum number of archives cached by default.
+     */
+    public static final int DEFAULT_MAX_ARCHIVES = 256;
+
+    /**
+     * The maximum number of entries of all the archives cached by default.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1000000;
+
+    private static volatile ArchiveDirectoryCache defaultCache;
+
+    private final int maxArchives;
+
+    private final int maxEntries;
+
+    private final Map<String, Holder> holders = new LinkedHashMap<String, Holder>( 16, 0.75f, true );
+
+    private int entries;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public ArchiveDirectoryCache()
+    {
+        this( DEFAULT_MAX_ARCHIVES, DEFAULT_MAX_ENTRIES );
+    }
+
+    /**
+     * @param maxArchives the maximum number of archives cached
+     * @param maxEntries the maximum number of entries of all the archives cached
+     */
+    public ArchiveDirectoryCache( int maxArchives, int maxEntries )
+    {
+        this.maxArchives = maxArchives;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the cache used by the archivers, unarchivers and resource collections, or null if there is none
+     */
+    public static ArchiveDirectoryCache getDefault()
+    {
+        return defaultCache;
+    }
+
+    /**
+     * Sets the cache used by the archivers, unarchivers and resource collections of this class loader. The previous
+     * cache, if any, is cleared.
+     *
+     * @param cache the cache, or null to parse archives every time they are opened
+     */
+    public static void setDefault( ArchiveDirectoryCache cache )
+    {
+        final ArchiveDirectoryCache previous = defaultCache;
+        defaultCache = cache;
+        if ( previous != null && previous != cache )
+        {
+            previous.clear();
+        }
+    }
+
+    /**
+     * Opens a zip file through the default cache, if there is one.
+     *
+     * @param file the zip file
+     * @param encoding the encoding of the entry names, or null for the platform encoding
+     *
+     * @return the open zip file, to be closed by the caller
+     *
+     * @throws IOException if the zip file can't be read
+     */
+    public static SharedZipFile open( File file, String encoding )
+        throws IOException
+    {
+        final ArchiveDirectoryCache cache = defaultCache;
+        return cache != null ? cache.openZipFile( file, encoding )
+                   : new SharedZipFile( new ZipFile( file, encoding, true ), null );
+    }
+
+    /**
+     * Opens a zip file, or shares the zip file opened before if it didn't change since.
+     *
+     * @param file the zip file
+     * @param encoding the encoding of the entry names, or null for the platform encoding
+     *
+     * @return the open zip file, to be closed by the caller once done with it, which closes the underlying zip file
+     * only after it has been evicted
+     *
+     * @throws IOException if the zip file can't be read
+     */
+    public SharedZipFile openZipFile( File file, String encoding )
+        throws IOException
+    {
+        final String key = getKey( file, "zip:" + encoding );
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        synchronized ( this )
+        {
+            final Holder holder = get( key, length, lastModified );
+            if ( holder != null )
+            {
+                holder.users++;
+                return new SharedZipFile( (ZipFile) holder.value, holder );
+            }
+        }
+
+        // parsed outside the lock, several threads opening the same file at once each parse it
+        final ZipFile zipFile = new ZipFile( file, encoding, true );
+        final int count = Collections.list( zipFile.getEntries() ).size();
+        final Holder holder = new Holder( length, lastModified, zipFile, count );
+        holder.users++;
+        synchronized ( this )
+        {
+            put( key, holder );
+        }
+        return new SharedZipFile( zipFile, holder );
+    }
+
+    /**
+     * Looks up the index of the entries of an archive.
+     *
+     * @param file the archive
+     * @param format the format of the index, telling apart indexes of the same archive
+     *
+     * @return the index, or null if it isn't cached or the archive changed since
+     */
+    @SuppressWarnings( "unchecked" )
+    public Map<String, ?> getIndex( File file, String format )
+    {
+        final String key = getKey( file, format );
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        synchronized ( this )
+        {
+            final Holder holder = get( key, length, lastModified );
+            return holder != null ? (Map<String, ?>) holder.value : null;
+        }
+    }
+
+    /**
+     * Caches the index of the entries of an archive.
+     *
+     * @param file the archive
+     * @param format the format of the index, telling apart indexes of the same archive
+     * @param index the index, not modified afterwards
+     */
+    public void putIndex( File file, String format, Map<String, ?> index )
+    {
+        final String key = getKey( file, format );
+        final Holder holder = new Holder( file.length(), file.lastModified(), index, index.size() );
+        synchronized ( this )
+        {
+            put( key, holder );
+        }
+    }
+
+    private static String getKey( File file, String format )
+    {
+        return file.getAbsolutePath() + '\n' + format;
+    }
+
+    private Holder get( String key, long length, long lastModified )
+    {
+        final Holder holder = holders.get( key );
+        if ( holder != null && holder.length == length && holder.lastModified == lastModified )
+        {
+            hits++;
+            return holder;
+        }
+        if ( holder != null )
+        {
+            remove( key, holder );
+        }
+        misses++;
+        return null;
+    }
+
+    private void put( String key, Holder holder )
+    {
+        final Holder previous = holders.get( key );
+        if ( previous != null )
+        {
+            remove( key, previous );
+        }
+        holders.put( key, holder );
+        entries += holder.entries;
+
+        final List<Holder> evicted = new ArrayList<Holder>();
+        for ( Iterator<Holder> it = holders.values().iterator();
+              it.hasNext() && ( holders.size() > maxArchives || entries > maxEntries ); )
+        {
+            final Holder eldest = it.next();
+            if ( eldest == holder )
+            {
+                break;
+            }
+            it.remove();
+            entries -= eldest.entries;
+            evictions++;
+            evicted.add( eldest );
+        }
+        for ( Holder eldest : evicted )
+        {
+            eldest.evict();
+        }
+    }
+
+    private void remove( String key, Holder holder )
+    {
+        holders.remove( key );
+        entries -= holder.entries;
+        holder.evict();
+    }
+
+    /**
+     * Evicts all archives.
+     */
+    public synchronized void clear()
+    {
+        for ( Holder holder : holders.values() )
+        {
+            holder.evict();
+        }
+        holders.clear();
+        entries = 0;
+    }
+
+    public synchronized int getArchiveCount()
+    {
+        return holders.size();
+    }
+
+    public synchronized int getEntryCount()
+    {
+        return entries;
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * @return the share of lookups served from the cache, between 0 and 1
+     */
+    public synchronized double getHitRate()
+    {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public synchronized String getStatisticsMessage()
+    {
+        return "Archive directory cache: " + holders.size() + " archives, " + entries + " entries, " + hits
+                   + " hits, " + misses + " misses, " + evictions + " evicted";
+    }
+
+    /**
+     * A cached archive directory, along with the number of users of its zip file, which is closed once it has been
+     * evicted and its last user is done.
+     */
+    private final class Holder
+    {
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final Object value;
+
+        private final int entries;
+
+        private int users;
+
+        private boolean evicted;
+
+        Holder( long length, long lastModified, Object value, int entries )
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.value = value;
+            this.entries = entries;
+        }
+
+        void evict()
+        {
+            evicted = true;
+            closeIfUnused();
+        }
+
+        void release()
+        {
+            synchronized ( ArchiveDirectoryCache.this )
+            {
+                users--;
+                closeIfUnused();
+            }
+        }
+
+        private void closeIfUnused()
+        {
+            if ( evicted && users == 0 && value instanceof Closeable )
+            {
+                IOUtils.closeQuietly( (Closeable) value );
+            }
+        }
+
+    }
+
+    /**
+     * A zip file opened through the cache. Closing it releases the zip file, which stays open while it is cached.
+     */
+    public static final class SharedZipFile
+        implements Closeable
+    {
+
+        private final ZipFile zipFile;
+
+        private final Holder holder;
+
+        private boolean closed;
+
+        SharedZipFile( ZipFile zipFile, Holder holder )
+        {
+            this.zipFile = zipFile;
+            this.holder = holder;
+        }
+
+        public ZipFile getZipFile()
+        {
+            return zipFile;
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            synchronized ( this )
+            {
+                if ( closed )
+                {
+                    return;
+                }
+                closed = true;
+            }
+            if ( holder != null )
+            {
+                holder.release();
+            }
+            else
+            {
+                zipFile.close();
+            }
+        }
+
+    }
+
+}
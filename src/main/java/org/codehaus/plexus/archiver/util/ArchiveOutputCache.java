@@ -0,0 +1,440 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codehaus.plexus.archiver.ArchiveEntry;
+import org.codehaus.plexus.components.io.attributes.PlexusIoResourceAttributes;
+import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * A local cache of archives, keyed by a fingerprint of their entries and the configuration of the archiver.
+ * <p>
+ * The fingerprint covers the names, types, modes and owners of the entries, the destinations of symbolic links and
+ * the SHA-256 digests of the contents of files, which are computed in parallel. Modification times are left out, so
+ * touching the inputs or checking them out again doesn't invalidate the cache; an archive restored from the cache
+ * carries the modification times of the build that created it.</p>
+ * <p>
+ * Archives are copied into the cache through temporary files moved into place atomically, so several JVMs may
+ * share the cache directory. Restoring an archive refreshes its modification time, and the least recently used
+ * archives are evicted once the cache exceeds its maximum size. Archives used within the last hour are never
+ * evicted, as another build may be about to copy them.</p>
+ *
+ * @since 4.1.1
+ */
+public class ArchiveOutputCache
+{
+
+    /**
+     * The maximum size of the cache used by default, 1 GB.
+     */
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+    private static final String SUFFIX = ".archive";
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private boolean hardLinks;
+
+    private int hashingThreads = Runtime.getRuntime().availableProcessors();
+
+    private ExecutorService executor;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong stores = new AtomicLong();
+
+    /**
+     * @param directory the directory holding the cache, created as needed
+     */
+    public ArchiveOutputCache( File directory )
+    {
+        this( directory, DEFAULT_MAX_SIZE );
+    }
+
+    /**
+     * @param directory the directory holding the cache, created as needed
+     * @param maxSize the number of bytes the cache is reduced to after storing an archive
+     */
+    public ArchiveOutputCache( File directory, long maxSize )
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Sets whether archives are restored as hard links to the cached file rather than copies, where the file system
+     * supports it. The restored archive must then never be modified in place.
+     *
+     * @param hardLinks true to restore archives as hard links, false by default
+     */
+    public void setHardLinks( boolean hardLinks )
+    {
+        this.hardLinks = hardLinks;
+    }
+
+    public boolean isHardLinks()
+    {
+        return hardLinks;
+    }
+
+    /**
+     * @param hashingThreads the number of files hashed at the same time, defaults to the number of processors
+     */
+    public void setHashingThreads( int hashingThreads )
+    {
+        if ( hashingThreads < 1 )
+        {
+            throw new IllegalArgumentException( "Number of threads must be positive: " + hashingThreads );
+        }
+        synchronized ( this )
+        {
+            this.hashingThreads = hashingThreads;
+            if ( executor != null )
+            {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+    }
+
+    public int getHashingThreads()
+    {
+        return hashingThreads;
+    }
+
+    /**
+     * Computes the fingerprint of an archive.
+     *
+     * @param configuration a description of everything else the archive depends on
+     * @param entries the entries of the archive, in the order they are added
+     *
+     * @return the hexadecimal fingerprint
+     *
+     * @throws IOException if the contents of an entry can't be read
+     */
+    public String fingerprint( String configuration, Iterator<ArchiveEntry> entries )
+        throws IOException
+    {
+        final List<String> descriptions = new ArrayList<String>();
+        final List<Future<byte[]>> digests = new ArrayList<Future<byte[]>>();
+        try
+        {
+            while ( entries.hasNext() )
+            {
+                final ArchiveEntry entry = entries.next();
+                descriptions.add( describe( entry ) );
+                final Callable<byte[]> digest = new Callable<byte[]>()
+                {
+
+                    @Override
+                    public byte[] call()
+                        throws IOException
+                    {
+                        return digest( entry );
+                    }
+
+                };
+                if ( entry.getType() != ArchiveEntry.FILE )
+                {
+                    digests.add( null );
+                }
+                else if ( entry.shouldAddSynchronously() )
+                {
+                    final FutureTask<byte[]> task = new FutureTask<byte[]>( digest );
+                    task.run();
+                    digests.add( task );
+                }
+                else
+                {
+                    digests.add( getExecutor().submit( digest ) );
+                }
+            }
+
+            final MessageDigest fingerprint = CacheFiles.newDigest();
+            fingerprint.update( configuration.getBytes( UTF_8 ) );
+            for ( int i = 0; i < descriptions.size(); i++ )
+            {
+                fingerprint.update( descriptions.get( i ).getBytes( UTF_8 ) );
+                if ( digests.get( i ) != null )
+                {
+                    fingerprint.update( digests.get( i ).get() );
+                }
+            }
+            return CacheFiles.toHex( fingerprint.digest() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while hashing the entries", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException( e.getCause().getMessage(), e.getCause() );
+        }
+        finally
+        {
+            for ( Future<byte[]> digest : digests )
+            {
+                if ( digest != null )
+                {
+                    digest.cancel( true );
+                }
+            }
+        }
+    }
+
+    private synchronized ExecutorService getExecutor()
+    {
+        if ( executor == null )
+        {
+            // idle threads time out, so the pool needs no shutdown
+            executor = DaemonThreadFactory.newFixedThreadPool( hashingThreads, "plexus-archiver-ArchiveOutputCache" );
+        }
+        return executor;
+    }
+
+    private static String describe( ArchiveEntry entry )
+        throws IOException
+    {
+        final StringBuilder description = new StringBuilder();
+        description.append( '\n' ).append( entry.getName() ).append( '\n' ).append( entry.getType() )
+            .append( ' ' ).append( Integer.toOctalString( entry.getMode() ) ).append( ' ' )
+            .append( Integer.toOctalString( entry.getDefaultDirMode() ) );
+        final PlexusIoResourceAttributes attributes = entry.getResourceAttributes();
+        if ( attributes != null )
+        {
+            description.append( ' ' ).append( attributes.getUserId() ).append( ' ' )
+                .append( attributes.getUserName() ).append( ' ' ).append( attributes.getGroupId() ).append( ' ' )
+                .append( attributes.getGroupName() );
+        }
+        if ( entry.getResource() instanceof SymlinkDestinationSupplier )
+        {
+            description.append( " -> " )
+                .append( ( (SymlinkDestinationSupplier) entry.getResource() ).getSymlinkDestination() );
+        }
+        return description.append( '\n' ).toString();
+    }
+
+    private static byte[] digest( ArchiveEntry entry )
+        throws IOException
+    {
+        final MessageDigest digest = CacheFiles.newDigest();
+        final BufferPool pool = BufferPool.getDefault();
+        final byte[] buffer = pool.acquire();
+        final InputStream in = entry.getInputStream();
+        try
+        {
+            int count;
+            while ( ( count = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, count );
+            }
+        }
+        finally
+        {
+            pool.release( buffer );
+            IOUtil.close( in );
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Restores an archive, if the cache holds one with the given fingerprint.
+     *
+     * @param fingerprint the fingerprint of the archive, see {@link #fingerprint(String, Iterator)}
+     * @param destFile the file to restore the archive to
+     *
+     * @return true if the archive was restored, false if it needs to be created
+     *
+     * @throws IOException if the cached archive can't be copied
+     */
+    public boolean restore( String fingerprint, File destFile )
+        throws IOException
+    {
+        final File cached = getFile( fingerprint );
+        if ( !cached.isFile() || !cached.setLastModified( System.currentTimeMillis() ) )
+        {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        final File parent = destFile.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        // the archive replaces the destination only once restored, so an eviction meanwhile leaves it in place
+        final File temp = File.createTempFile( destFile.getName(), ".tmp", parent );
+        try
+        {
+            if ( !hardLinks || !link( cached, temp ) )
+            {
+                Files.copy( cached.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+            Files.move( temp.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+        catch ( NoSuchFileException e )
+        {
+            // evicted by another build
+            misses.incrementAndGet();
+            return false;
+        }
+        finally
+        {
+            temp.delete();
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    private static boolean link( File cached, File temp )
+        throws IOException
+    {
+        try
+        {
+            Files.delete( temp.toPath() );
+            Files.createLink( temp.toPath(), cached.toPath() );
+            return true;
+        }
+        catch ( NoSuchFileException e )
+        {
+            throw e;
+        }
+        catch ( IOException e )
+        {
+            // not supported, or on another file system
+            return false;
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            // not supported
+            return false;
+        }
+    }
+
+    /**
+     * Stores an archive, unless the cache holds one with the same fingerprint already, and evicts the least
+     * recently used archives beyond the maximum size.
+     *
+     * @param fingerprint the fingerprint of the archive, see {@link #fingerprint(String, Iterator)}
+     * @param archive the archive just created
+     *
+     * @throws IOException if the archive can't be copied
+     */
+    public void store( String fingerprint, File archive )
+        throws IOException
+    {
+        final File cached = getFile( fingerprint );
+        if ( !cached.exists() )
+        {
+            directory.mkdirs();
+            final File temp = File.createTempFile( fingerprint, ".tmp", directory );
+            try
+            {
+                Files.copy( archive.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                try
+                {
+                    Files.move( temp.toPath(), cached.toPath(), StandardCopyOption.ATOMIC_MOVE );
+                }
+                catch ( AtomicMoveNotSupportedException e )
+                {
+                    Files.move( temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                }
+                stores.incrementAndGet();
+            }
+            finally
+            {
+                temp.delete();
+            }
+        }
+        trim();
+    }
+
+    private void trim()
+    {
+        final File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        final List<File> archives = new ArrayList<File>();
+        for ( File file : files )
+        {
+            if ( file.getName().endsWith( SUFFIX ) )
+            {
+                archives.add( file );
+            }
+        }
+        CacheFiles.evictLeastRecentlyUsed( archives, maxSize );
+    }
+
+    private File getFile( String fingerprint )
+    {
+        return new File( directory, fingerprint + SUFFIX );
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getStores()
+    {
+        return stores.get();
+    }
+
+}
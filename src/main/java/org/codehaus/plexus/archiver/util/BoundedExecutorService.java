@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An executor service running its tasks on another, possibly shared, executor, with at most a given number of them
+ * running at the same time.
+ * <p>
+ * Tasks beyond the limit wait in a queue of their own. Every time one of the tasks completes, the next one is
+ * handed to the underlying executor, behind the tasks other clients submitted in the meantime, so clients sharing an
+ * executor take turns rather than one of them occupying all its threads. A queued task the underlying executor
+ * rejects is dropped, and cancelled if it was {@link #submit(Runnable) submitted}, so its future doesn't wait
+ * forever.</p>
+ * <p>
+ * Shutting this service down stops it from accepting tasks and lets {@link #awaitTermination(long, TimeUnit)}
+ * wait for the tasks already submitted, but leaves the underlying executor alone. {@link #shutdownNow()} drops and
+ * cancels the queued tasks without interrupting the running ones.</p>
+ *
+ * @since 4.1.1
+ */
+public class BoundedExecutorService
+    extends AbstractExecutorService
+{
+
+    private final Executor executor;
+
+    private final int maxConcurrency;
+
+    private final Queue<Runnable> queue = new ArrayDeque<Runnable>();
+
+    private int running;
+
+    private boolean shutdown;
+
+    /**
+     * @param executor the executor running the tasks
+     * @param maxConcurrency the maximum number of tasks running at the same time
+     */
+    public BoundedExecutorService( Executor executor, int maxConcurrency )
+    {
+        if ( maxConcurrency < 1 )
+        {
+            throw new IllegalArgumentException( "Maximum concurrency must be positive: " + maxConcurrency );
+        }
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public void execute( Runnable command )
+    {
+        synchronized ( this )
+        {
+            if ( shutdown )
+            {
+                throw new RejectedExecutionException( "Executor has been shut down" );
+            }
+            if ( running >= maxConcurrency )
+            {
+                queue.add( command );
+                return;
+            }
+            running++;
+        }
+        dispatch( command );
+    }
+
+    private void dispatch( Runnable command )
+    {
+        try
+        {
+            executor.execute( wrap( command ) );
+        }
+        catch ( RuntimeException e )
+        {
+            synchronized ( this )
+            {
+                running--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private Runnable wrap( final Runnable command )
+    {
+        return new Runnable()
+        {
+
+            @Override
+            public void run()
+            {
+                try
+                {
+                    command.run();
+                }
+                finally
+                {
+                    next();
+                }
+            }
+
+        };
+    }
+
+    /**
+     * Hands the next queued task to the underlying executor, dropping those it rejects.
+     */
+    private void next()
+    {
+        while ( true )
+        {
+            final Runnable command;
+            synchronized ( this )
+            {
+                command = queue.poll();
+                if ( command == null )
+                {
+                    running--;
+                    notifyAll();
+                    return;
+                }
+            }
+            try
+            {
+                executor.execute( wrap( command ) );
+                return;
+            }
+            catch ( RuntimeException e )
+            {
+                cancel( command );
+            }
+        }
+    }
+
+    private static void cancel( Runnable command )
+    {
+        if ( command instanceof Future )
+        {
+            ( (Future<?>) command ).cancel( false );
+        }
+    }
+
+    @Override
+    public synchronized void shutdown()
+    {
+        shutdown = true;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow()
+    {
+        shutdown = true;
+        final List<Runnable> dropped = new ArrayList<Runnable>( queue );
+        queue.clear();
+        for ( Runnable command : dropped )
+        {
+            cancel( command );
+        }
+        notifyAll();
+        return dropped;
+    }
+
+    @Override
+    public synchronized boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated()
+    {
+        return shutdown && running == 0 && queue.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean awaitTermination( long timeout, TimeUnit unit )
+        throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + unit.toNanos( timeout );
+        while ( !isTerminated() )
+        {
+            final long remaining = deadline - System.nanoTime();
+            if ( remaining <= 0 )
+            {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait( this, remaining );
+        }
+        return true;
+    }
+
+}
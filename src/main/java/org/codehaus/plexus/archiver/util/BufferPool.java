@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of the I/O buffers used to copy contents and to buffer streams, see {@link Streams}.
+ * <p>
+ * Each thread keeps the buffers it released, up to a maximum, and reuses them the next time it acquires a buffer,
+ * so copying entry after entry doesn't allocate. A buffer may be released by another thread than the one which
+ * acquired it, it is then kept by the releasing thread. Buffers which aren't released are simply garbage
+ * collected.</p>
+ *
+ * @since 4.1.1
+ */
+public class BufferPool
+{
+
+    /**
+     * The size of the buffers of the default pool.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of buffers each thread keeps by default.
+     */
+    public static final int DEFAULT_MAX_BUFFERS_PER_THREAD = 4;
+
+    private static volatile BufferPool defaultPool = new BufferPool();
+
+    private final int bufferSize;
+
+    private final int maxBuffersPerThread;
+
+    private final ThreadLocal<ArrayDeque<byte[]>> buffers = new ThreadLocal<ArrayDeque<byte[]>>()
+    {
+
+        @Override
+        protected ArrayDeque<byte[]> initialValue()
+        {
+            return new ArrayDeque<byte[]>( maxBuffersPerThread );
+        }
+
+    };
+
+    private final AtomicLong acquisitions = new AtomicLong();
+
+    private final AtomicLong allocations = new AtomicLong();
+
+    public BufferPool()
+    {
+        this( DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BUFFERS_PER_THREAD );
+    }
+
+    /**
+     * @param bufferSize the size of the buffers
+     * @param maxBuffersPerThread the number of released buffers each thread keeps, zero to allocate every buffer
+     */
+    public BufferPool( int bufferSize, int maxBuffersPerThread )
+    {
+        if ( bufferSize < 1 )
+        {
+            throw new IllegalArgumentException( "The buffer size must be positive." );
+        }
+        if ( maxBuffersPerThread < 0 )
+        {
+            throw new IllegalArgumentException( "The number of buffers per thread must not be negative." );
+        }
+        this.bufferSize = bufferSize;
+        this.maxBuffersPerThread = maxBuffersPerThread;
+    }
+
+    /**
+     * @return the pool used by the archivers and unarchivers, never null
+     */
+    public static BufferPool getDefault()
+    {
+        return defaultPool;
+    }
+
+    /**
+     * Sets the pool used by the archivers and unarchivers of this class loader, for example to change the size of
+     * their buffers. Buffers of the previous pool still in use are dropped when released.
+     *
+     * @param pool the pool
+     */
+    public static void setDefault( BufferPool pool )
+    {
+        if ( pool == null )
+        {
+            throw new IllegalArgumentException( "The buffer pool must not be null." );
+        }
+        defaultPool = pool;
+    }
+
+    /**
+     * Acquires a buffer, to be released once done with it.
+     *
+     * @return a buffer of {@link #getBufferSize()} bytes, whose contents are undefined
+     */
+    public byte[] acquire()
+    {
+        acquisitions.incrementAndGet();
+        final byte[] buffer = buffers.get().pollFirst();
+        if ( buffer != null )
+        {
+            return buffer;
+        }
+        allocations.incrementAndGet();
+        return new byte[ bufferSize ];
+    }
+
+    /**
+     * Releases a buffer, which must no longer be used by the caller.
+     *
+     * @param buffer the buffer acquired from this pool; buffers of another size are dropped
+     */
+    public void release( byte[] buffer )
+    {
+        if ( buffer == null || buffer.length != bufferSize )
+        {
+            return;
+        }
+        final ArrayDeque<byte[]> threadBuffers = buffers.get();
+        if ( threadBuffers.size() < maxBuffersPerThread )
+        {
+            threadBuffers.addFirst( buffer );
+        }
+    }
+
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    public int getMaxBuffersPerThread()
+    {
+        return maxBuffersPerThread;
+    }
+
+    /**
+     * @return the number of buffers acquired from this pool
+     */
+    public long getAcquisitions()
+    {
+        return acquisitions.get();
+    }
+
+    /**
+     * @return the number of buffers allocated, as no released buffer was available
+     */
+    public long getAllocations()
+    {
+        return allocations.get();
+    }
+
+    public String getStatisticsMessage()
+    {
+        final long acquired = acquisitions.get();
+        final long allocated = allocations.get();
+        return "Buffer pool: " + acquired + " buffers of " + bufferSize + " bytes acquired, " + allocated
+                   + " allocated, " + ( acquired - allocated ) + " reused";
+    }
+
+}
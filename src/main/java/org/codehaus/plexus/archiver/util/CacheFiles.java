@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helpers of the on-disk caches shared by builds, which key their files by SHA-256 digests and evict the least
+ * recently used ones, as told by their modification times.
+ *
+ * @since 4.1.1
+ */
+public class CacheFiles
+{
+
+    /**
+     * Files used within this period are never evicted, as another build may be about to copy them.
+     */
+    public static final long EVICTION_GRACE_PERIOD = TimeUnit.HOURS.toMillis( 1 );
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private CacheFiles()
+    {
+    }
+
+    /**
+     * @return a new SHA-256 digest
+     */
+    public static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * @return the bytes in lower case hexadecimal
+     */
+    public static String toHex( byte[] bytes )
+    {
+        final char[] chars = new char[ bytes.length * 2 ];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            chars[i * 2] = HEX[( bytes[i] >> 4 ) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String( chars );
+    }
+
+    /**
+     * Deletes the least recently used files until their total size fits the maximum, sparing those used within the
+     * {@link #EVICTION_GRACE_PERIOD}.
+     *
+     * @param files the files of the cache
+     * @param maxSize the number of bytes the files are reduced to
+     *
+     * @return the number of files deleted
+     */
+    public static int evictLeastRecentlyUsed( List<File> files, long maxSize )
+    {
+        long size = 0;
+        final List<LastUse> lastUses = new ArrayList<LastUse>( files.size() );
+        for ( File file : files )
+        {
+            size += file.length();
+            lastUses.add( new LastUse( file ) );
+        }
+        if ( size <= maxSize )
+        {
+            return 0;
+        }
+
+        Collections.sort( lastUses, new Comparator<LastUse>()
+        {
+
+            @Override
+            public int compare( LastUse o1, LastUse o2 )
+            {
+                return o1.time < o2.time ? -1 : o1.time == o2.time ? 0 : 1;
+            }
+
+        } );
+        final long graceLimit = System.currentTimeMillis() - EVICTION_GRACE_PERIOD;
+        int evicted = 0;
+        for ( LastUse lastUse : lastUses )
+        {
+            if ( size <= maxSize || lastUse.time >= graceLimit )
+            {
+                break;
+            }
+            final long length = lastUse.file.length();
+            // used by another build since the files were listed
+            if ( lastUse.file.lastModified() < graceLimit && lastUse.file.delete() )
+            {
+                size -= length;
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private static final class LastUse
+    {
+
+        private final File file;
+
+        private final long time;
+
+        LastUse( File file )
+        {
+            this.file = file;
+            this.time = file.lastModified();
+        }
+
+    }
+
+}
@@ -75,14 +75,7 @@ public PlexusIoResource getSource()
     private void compressFile( InputStream in, OutputStream zOut )
         throws IOException
     {
-        byte[] buffer = new byte[ 8 * 1024 ];
-        int count = 0;
-        do
-        {
-            zOut.write( buffer, 0, count );
-            count = in.read( buffer, 0, buffer.length );
-        }
-        while ( count != -1 );
+        Streams.copy( in, zOut );
     }
 
     /**
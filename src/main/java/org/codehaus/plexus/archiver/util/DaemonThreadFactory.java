@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the daemon threads of the thread pools streams start on their own, so a stream which is never closed
+ * neither keeps the JVM alive nor its threads around.
+ *
+ * @since 4.1.1
+ */
+public class DaemonThreadFactory
+    implements ThreadFactory
+{
+
+    /**
+     * The seconds an idle thread is kept.
+     */
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private final String name;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * @param name the name of the threads, followed by their number
+     */
+    public DaemonThreadFactory( String name )
+    {
+        this.name = name;
+    }
+
+    @Override
+    public Thread newThread( Runnable r )
+    {
+        final Thread thread = new Thread( r, name + "-" + count.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+    }
+
+    /**
+     * Creates a thread pool of daemon threads, which end once they are idle for a while.
+     *
+     * @param threads the maximum number of threads
+     * @param name the name of the threads, followed by their number
+     *
+     * @return the thread pool
+     */
+    public static ExecutorService newFixedThreadPool( int threads, String name )
+    {
+        final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                    new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory( name ) );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
+}
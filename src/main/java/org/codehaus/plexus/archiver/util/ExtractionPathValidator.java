@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.Os;
+
+/**
+ * Resolves the names of extracted entries to files, making sure they don't escape the destination directory.
+ * <p>
+ * The destination directory is canonicalized once. Entry names are then resolved against it lexically, which
+ * rejects names that climb out of it with {@code ..} or are absolute paths elsewhere. A lexically safe path may
+ * still escape through a symbolic link, so every directory on it is checked not to be one; directories checked
+ * once are remembered until a symbolic link is extracted. Paths running through a symbolic link are resolved on
+ * the file system, as before.</p>
+ * <p>
+ * This class is thread safe.</p>
+ *
+ * @since 4.1.1
+ */
+public class ExtractionPathValidator
+{
+
+    private final File directory;
+
+    private final File canonicalDirectory;
+
+    private final Path canonicalPath;
+
+    private final Set<Path> safeDirectories = Collections.newSetFromMap( new ConcurrentHashMap<Path, Boolean>() );
+
+    /**
+     * @param directory the destination directory
+     *
+     * @throws IOException if the destination directory can't be canonicalized
+     */
+    public ExtractionPathValidator( File directory )
+        throws IOException
+    {
+        this.directory = directory;
+        this.canonicalDirectory = directory.getCanonicalFile();
+        this.canonicalPath = canonicalDirectory.toPath();
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    public File getCanonicalDirectory()
+    {
+        return canonicalDirectory;
+    }
+
+    /**
+     * Resolves the name of an entry to the file it is extracted to.
+     *
+     * @param entryName the name of the entry, after mapping
+     *
+     * @return the file to extract the entry to
+     *
+     * @throws ArchiverException if the entry would be extracted outside of the destination directory
+     * @throws IOException if the file system can't be queried
+     */
+    public File resolve( String entryName )
+        throws IOException
+    {
+        final Path path;
+        try
+        {
+            path = resolveLexically( entryName );
+        }
+        catch ( InvalidPathException e )
+        {
+            return resolveCanonically( entryName );
+        }
+        if ( !path.startsWith( canonicalPath ) )
+        {
+            if ( !isAbsolute( entryName ) )
+            {
+                throw outside( entryName );
+            }
+            // an absolute name may still lead into the destination directory through a symbolic link
+            return resolveCanonically( entryName );
+        }
+
+        final List<Path> ancestors = new ArrayList<Path>();
+        for ( Path p = path.getParent(); p != null && !p.equals( canonicalPath ); p = p.getParent() )
+        {
+            ancestors.add( p );
+        }
+        for ( int i = ancestors.size() - 1; i >= 0; i-- )
+        {
+            final Path ancestor = ancestors.get( i );
+            if ( safeDirectories.contains( ancestor ) )
+            {
+                continue;
+            }
+            if ( Files.isSymbolicLink( ancestor ) )
+            {
+                return resolveCanonically( entryName );
+            }
+            // directories that don't exist yet are created by the extraction
+            safeDirectories.add( ancestor );
+        }
+        if ( !path.equals( canonicalPath ) && Files.isSymbolicLink( path ) )
+        {
+            return resolveCanonically( entryName );
+        }
+        return path.toFile();
+    }
+
+    /**
+     * Tells the validator that a symbolic link was extracted, which may turn directories already checked into
+     * links.
+     */
+    public void symlinkCreated()
+    {
+        safeDirectories.clear();
+    }
+
+    private Path resolveLexically( String entryName )
+    {
+        final String name = toPlatformSeparators( entryName );
+        if ( isAbsolute( entryName ) )
+        {
+            return new File( name ).toPath().toAbsolutePath().normalize();
+        }
+        return canonicalPath.resolve( name ).normalize();
+    }
+
+    private static String toPlatformSeparators( String entryName )
+    {
+        return entryName.replace( '/', File.separatorChar ).replace( '\\', File.separatorChar );
+    }
+
+    private static boolean isAbsolute( String entryName )
+    {
+        final String name = toPlatformSeparators( entryName );
+        return name.startsWith( File.separator ) || ( Os.isFamily( Os.FAMILY_WINDOWS ) && name.indexOf( ':' ) > 0 );
+    }
+
+    private File resolveCanonically( String entryName )
+        throws IOException
+    {
+        // Symlinks re-evaluate back to the original file here.
+        final File f = FileUtils.resolveFile( canonicalDirectory, entryName );
+        final String canonicalDestPath = f.getCanonicalPath();
+        final String canonicalDirPath = canonicalDirectory.getPath();
+        if ( !canonicalDestPath.equals( canonicalDirPath )
+            && !canonicalDestPath.startsWith( canonicalDirPath.endsWith( File.separator )
+                                                  ? canonicalDirPath
+                                                  : canonicalDirPath + File.separator ) )
+        {
+            throw outside( entryName );
+        }
+        return f;
+    }
+
+    private static ArchiverException outside( String entryName )
+    {
+        return new ArchiverException( "Entry is outside of the target directory (" + entryName + ")" );
+    }
+
+}
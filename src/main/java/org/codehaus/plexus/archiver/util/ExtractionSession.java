@@ -0,0 +1,265 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state of a single extraction to a destination directory.
+ * <p>
+ * Besides resolving entry names with an {@link ExtractionPathValidator}, the session remembers the directories
+ * below the destination it has seen in a trie of path components. Each directory is created at most once, and the
+ * files of a directory the session created itself are known not to exist until they are extracted, so they need
+ * no existence check when existing files must not be overwritten. As the file system may ignore case, a name only
+ * differing in case from one the session has seen may still exist.</p>
+ * <p>
+ * This class is thread safe.</p>
+ *
+ * @since 4.1.1
+ */
+public class ExtractionSession
+{
+
+    private final ExtractionPathValidator validator;
+
+    private final Path root;
+
+    private Node tree = new Node();
+
+    /**
+     * @param directory the destination directory
+     *
+     * @throws IOException if the destination directory can't be canonicalized
+     */
+    public ExtractionSession( File directory )
+        throws IOException
+    {
+        validator = new ExtractionPathValidator( directory );
+        root = validator.getCanonicalDirectory().toPath();
+    }
+
+    public File getDirectory()
+    {
+        return validator.getDirectory();
+    }
+
+    /**
+     * Resolves the name of an entry to the file it is extracted to, see {@link ExtractionPathValidator}.
+     *
+     * @param entryName the name of the entry, after mapping
+     *
+     * @return the file to extract the entry to
+     *
+     * @throws IOException if the file system can't be queried
+     */
+    public File resolve( String entryName )
+        throws IOException
+    {
+        return validator.resolve( entryName );
+    }
+
+    /**
+     * Creates the directory a file is extracted to, unless the session knows it already exists.
+     *
+     * @param file the file about to be extracted
+     */
+    public void createParentDirectories( File file )
+    {
+        final File parent = file.getParentFile();
+        if ( parent != null )
+        {
+            createDirectories( parent );
+        }
+    }
+
+    /**
+     * Creates a directory and its parents, unless the session knows they already exist.
+     *
+     * @param directory the directory to create
+     */
+    public synchronized void createDirectories( File directory )
+    {
+        final Path path = relativize( directory );
+        if ( path == null )
+        {
+            directory.mkdirs();
+            return;
+        }
+        if ( !tree.directory )
+        {
+            final File rootDirectory = root.toFile();
+            tree.created = rootDirectory.mkdirs();
+            tree.directory = tree.created || rootDirectory.isDirectory();
+            if ( !tree.directory )
+            {
+                return;
+            }
+        }
+        if ( path.toString().isEmpty() )
+        {
+            return;
+        }
+        Node node = tree;
+        File current = root.toFile();
+        for ( Path name : path )
+        {
+            current = new File( current, name.toString() );
+            final Node child = node.getOrAddChild( name.toString() );
+            if ( !child.directory )
+            {
+                child.created = current.mkdir();
+                child.directory = child.created || current.isDirectory();
+                if ( !child.directory )
+                {
+                    // leave it to the extraction to report the failure
+                    return;
+                }
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Tells whether a file may already exist. Files in a directory created by the session don't exist unless the
+     * session extracted them.
+     *
+     * @param file the file about to be extracted
+     *
+     * @return false if the file is known not to exist
+     */
+    public synchronized boolean mayExist( File file )
+    {
+        final Path path = relativize( file );
+        if ( path == null || path.toString().isEmpty() )
+        {
+            return true;
+        }
+        Node node = tree;
+        for ( Path name : path )
+        {
+            final Node child = node.children != null ? node.children.get( name.toString() ) : null;
+            if ( child == null )
+            {
+                // only the contents of a directory created by the session are known
+                return !node.created || node.hasChildIgnoringCase( name.toString() );
+            }
+            node = child;
+        }
+        return true;
+    }
+
+    /**
+     * Records that a file was extracted, so it is known to exist for subsequent entries of the same name.
+     *
+     * @param file the file extracted
+     */
+    public synchronized void extracted( File file )
+    {
+        final Path path = relativize( file );
+        if ( path == null || path.toString().isEmpty() )
+        {
+            return;
+        }
+        Node node = tree;
+        for ( Path name : path )
+        {
+            node = node.getOrAddChild( name.toString() );
+        }
+    }
+
+    /**
+     * Tells the session that a symbolic link was extracted, which may lead to directories it doesn't know.
+     */
+    public synchronized void symlinkCreated()
+    {
+        validator.symlinkCreated();
+        tree = new Node();
+    }
+
+    private Path relativize( File file )
+    {
+        final Path path = file.toPath();
+        return path.startsWith( root ) ? root.relativize( path ) : null;
+    }
+
+    /**
+     * A file or directory below the destination directory.
+     */
+    private static class Node
+    {
+
+        /**
+         * The known contents of the directory, allocated once there are any.
+         */
+        private Map<String, Node> children;
+
+        /**
+         * The names of the known contents, case folded.
+         */
+        private Set<String> foldedNames;
+
+        /**
+         * Whether this is known to be an existing directory.
+         */
+        private boolean directory;
+
+        /**
+         * Whether the directory was created by the session, so all its contents are known.
+         */
+        private boolean created;
+
+        Node getOrAddChild( String name )
+        {
+            if ( children == null )
+            {
+                children = new HashMap<String, Node>( 4 );
+                foldedNames = new HashSet<String>( 4 );
+            }
+            Node child = children.get( name );
+            if ( child == null )
+            {
+                child = new Node();
+                children.put( name, child );
+                foldedNames.add( fold( name ) );
+            }
+            return child;
+        }
+
+        /**
+         * @return whether a file or directory whose name only differs in case is known, which is the same on a file
+         * system ignoring case
+         */
+        boolean hasChildIgnoringCase( String name )
+        {
+            return foldedNames != null && foldedNames.contains( fold( name ) );
+        }
+
+        private static String fold( String name )
+        {
+            // like String.equalsIgnoreCase, which compares both cases
+            return name.toUpperCase( Locale.ROOT ).toLowerCase( Locale.ROOT );
+        }
+
+    }
+
+}
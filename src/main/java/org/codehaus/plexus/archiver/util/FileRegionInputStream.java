@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The contents of an archive entry which are stored uncompressed, as a region of the archive file.
+ * <p>
+ * Unarchivers return this stream for such entries, so {@link org.codehaus.plexus.archiver.AbstractUnArchiver} can
+ * recognize it and let the operating system copy the region into the extracted file, see
+ * {@link #copyTo(WritableByteChannel)}, instead of reading it through a buffer on the heap. Otherwise it reads
+ * the stream it wraps.</p>
+ *
+ * @since 4.1.1
+ */
+public class FileRegionInputStream
+    extends FilterInputStream
+{
+
+    private final FileChannel channel;
+
+    private final long offset;
+
+    private final long length;
+
+    /**
+     * @param in the stream of the contents, read unless they are copied by {@link #copyTo(WritableByteChannel)}
+     * @param channel the archive file, not closed by this stream
+     * @param offset the offset of the contents in the archive file
+     * @param length the length of the contents
+     */
+    public FileRegionInputStream( InputStream in, FileChannel channel, long offset, long length )
+    {
+        super( in );
+        this.channel = channel;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    public long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Copies the contents with {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which doesn't move
+     * the position of the archive file, so regions of the same file may be copied concurrently.
+     *
+     * @param target the channel the contents are written to
+     *
+     * @throws IOException if the contents can't be copied, or the archive file is shorter than expected
+     */
+    public void copyTo( WritableByteChannel target )
+        throws IOException
+    {
+        long position = offset;
+        long remaining = length;
+        while ( remaining > 0 )
+        {
+            final long transferred = channel.transferTo( position, remaining, target );
+            if ( transferred <= 0 )
+            {
+                throw new EOFException( "Unexpected end of archive, " + remaining + " bytes of the entry missing." );
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Base class for output streams compressing fixed-size blocks of data in parallel.
+ * <p>
+ * The data written is split into blocks of the configured size, which are compressed on a thread pool.
+ * The compressed blocks are written to the underlying stream in order, keeping at most twice as many blocks
+ * in memory as there are threads. The threads are daemon threads, ended as soon as the stream is closed or fails.</p>
+ *
+ * @since 4.1.1
+ */
+public abstract class ParallelCompressorOutputStream
+    extends OutputStream
+{
+
+    protected final OutputStream out;
+
+    private final int blockSize;
+
+    private final int threads;
+
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<Future<byte[]>>();
+
+    private ExecutorService executorService;
+
+    private byte[] block;
+
+    private int blockLength;
+
+    private byte[] previousBlock;
+
+    private boolean closed;
+
+    private boolean failed;
+
+    /**
+     * @param out the stream to write the compressed data to
+     * @param blockSize the number of bytes compressed independently from each other
+     * @param threads the number of threads to compress blocks with
+     */
+    protected ParallelCompressorOutputStream( OutputStream out, int blockSize, int threads )
+    {
+        if ( blockSize <= 0 )
+        {
+            throw new IllegalArgumentException( "Block size must be positive: " + blockSize );
+        }
+        if ( threads <= 0 )
+        {
+            throw new IllegalArgumentException( "Number of threads must be positive: " + threads );
+        }
+        this.out = out;
+        this.blockSize = blockSize;
+        this.threads = threads;
+        this.block = new byte[ blockSize ];
+    }
+
+    /**
+     * Creates the task compressing a block.
+     *
+     * @param data the data to compress
+     * @param length the number of bytes of data to compress
+     * @param previousData the previous, full block, or null for the first block
+     * @param last whether this is the last block of the stream; it may be empty
+     *
+     * @return the task returning the compressed block
+     */
+    protected abstract Callable<byte[]> newBlockCompressor( byte[] data, int length, byte[] previousData,
+                                                           boolean last );
+
+    /**
+     * Writes whatever has to follow the last compressed block.
+     *
+     * @throws IOException if the trailer can't be written
+     */
+    protected void writeTrailer()
+        throws IOException
+    {
+    }
+
+    @Override
+    public void write( int b )
+        throws IOException
+    {
+        write( new byte[]
+        {
+            (byte) b
+        }, 0, 1 );
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len )
+        throws IOException
+    {
+        if ( closed )
+        {
+            throw new IOException( "Stream closed" );
+        }
+        if ( failed )
+        {
+            throw new IOException( "Compression failed" );
+        }
+        while ( len > 0 )
+        {
+            if ( blockLength == blockSize )
+            {
+                submitBlock( false );
+            }
+            final int n = Math.min( len, blockSize - blockLength );
+            System.arraycopy( b, off, block, blockLength, n );
+            blockLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+        if ( failed )
+        {
+            shutdown();
+            out.close();
+            return;
+        }
+        try
+        {
+            submitBlock( true );
+            while ( !pendingBlocks.isEmpty() )
+            {
+                writeNextBlock();
+            }
+            writeTrailer();
+            out.flush();
+        }
+        finally
+        {
+            shutdown();
+            out.close();
+        }
+    }
+
+    private void shutdown()
+    {
+        if ( executorService != null )
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void submitBlock( boolean last )
+        throws IOException
+    {
+        if ( executorService == null )
+        {
+            executorService =
+                DaemonThreadFactory.newFixedThreadPool( threads, "plexus-archiver-" + getClass().getSimpleName() );
+        }
+        pendingBlocks.add( executorService.submit( newBlockCompressor( block, blockLength, previousBlock, last ) ) );
+        previousBlock = block;
+        block = last ? null : new byte[ blockSize ];
+        blockLength = 0;
+        while ( pendingBlocks.size() > 2 * threads )
+        {
+            writeNextBlock();
+        }
+    }
+
+    private void writeNextBlock()
+        throws IOException
+    {
+        boolean written = false;
+        try
+        {
+            out.write( pendingBlocks.remove().get() );
+            written = true;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while compressing" );
+        }
+        catch ( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new IOException( cause.getMessage(), cause );
+        }
+        finally
+        {
+            if ( !written )
+            {
+                // the blocks still pending can't be written anymore
+                failed = true;
+                pendingBlocks.clear();
+                shutdown();
+            }
+        }
+    }
+
+}
@@ -1,10 +1,11 @@
 package org.codehaus.plexus.archiver.util;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import org.codehaus.plexus.components.io.functions.FileSupplier;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
 import org.codehaus.plexus.util.IOUtil;
@@ -78,12 +79,12 @@ public static void copyFile( PlexusIoResource in, File outFile )
         throws IOException
     {
         InputStream input = null;
-        OutputStream output = null;
+        FileOutputStream output = null;
         try
         {
             input = in.getContents();
             output = new FileOutputStream( outFile );
-            IOUtil.copy( input, output );
+            copy( input, output );
             output.close();
             output = null;
             input.close();
@@ -102,11 +103,11 @@ public static void copyFile( PlexusIoResource in, File outFile )
     public static void copyFile( InputStream input, File outFile )
         throws IOException
     {
-        OutputStream output = null;
+        FileOutputStream output = null;
         try
         {
             output = new FileOutputStream( outFile );
-            IOUtil.copy( input, output );
+            copy( input, output );
             output.close();
             output = null;
             input.close();
@@ -119,6 +120,53 @@ public static void copyFile( InputStream input, File outFile )
         }
     }
 
+    /**
+     * Copies the sources contents to the given open file, closing both.
+     *
+     * @since 4.1.1
+     */
+    public static void copyFile( InputStream input, FileOutputStream output )
+        throws IOException
+    {
+        try
+        {
+            copy( input, output );
+            output.close();
+            output = null;
+            input.close();
+            input = null;
+        }
+        finally
+        {
+            IOUtil.close( input );
+            IOUtil.close( output );
+        }
+    }
+
+    private static void copy( InputStream input, FileOutputStream output )
+        throws IOException
+    {
+        if ( input instanceof FileInputStream )
+        {
+            // the untransformed contents of a file, copied by the kernel rather than through the heap
+            final FileChannel source = ( (FileInputStream) input ).getChannel();
+            final FileChannel target = output.getChannel();
+            final long size = source.size();
+            long position = source.position();
+            long transferred = 1;
+            while ( position < size && transferred > 0 )
+            {
+                // nothing is transferred past the end of a file truncated meanwhile
+                transferred = source.transferTo( position, size - position, target );
+                position += transferred;
+            }
+        }
+        else
+        {
+            Streams.copy( input, output );
+        }
+    }
+
     /**
      * Checks, whether the resource and the file are identical.
      */
@@ -127,7 +175,7 @@ public static boolean isSame( PlexusIoResource resource, File file )
         if ( resource instanceof FileSupplier )
         {
             File resourceFile = ( (FileSupplier) resource ).getFile();
-            return file.equals( resourceFile );
+            return file != null && file.equals( resourceFile );
         }
         return false;
     }
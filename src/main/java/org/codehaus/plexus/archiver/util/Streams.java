@@ -21,9 +21,11 @@
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
 import javax.annotation.WillClose;
 import javax.annotation.WillNotClose;
 import org.codehaus.plexus.archiver.ArchiverException;
@@ -32,19 +34,27 @@
 public class Streams
 {
 
+    private static final byte[] NO_BUFFER = new byte[ 0 ];
+
+    /**
+     * Buffers a stream, with a buffer of the {@link BufferPool#getDefault() default pool} released on close.
+     */
     public static BufferedInputStream bufferedInputStream( InputStream is )
     {
         return is instanceof BufferedInputStream
                    ? (BufferedInputStream) is
-                   : new BufferedInputStream( is, 65536 );
+                   : new PooledBufferedInputStream( is, BufferPool.getDefault() );
 
     }
 
+    /**
+     * Buffers a stream, with a buffer of the {@link BufferPool#getDefault() default pool} released on close.
+     */
     public static BufferedOutputStream bufferedOutputStream( OutputStream os )
     {
         return os instanceof BufferedOutputStream
                    ? (BufferedOutputStream) os
-                   : new BufferedOutputStream( os, 65536 );
+                   : new PooledBufferedOutputStream( os, BufferPool.getDefault() );
 
     }
 
@@ -80,6 +90,27 @@ public static FileOutputStream fileOutputStream( File file )
         return new FileOutputStream( file );
     }
 
+    /**
+     * Opens a file to write it anew. An existing file is deleted rather than truncated, as it may be a hard link to a
+     * file which must not change, like an archive restored from an {@link ArchiveOutputCache}.
+     *
+     * @since 4.1.1
+     */
+    public static FileOutputStream newFileOutputStream( File file, String operation )
+        throws ArchiverException
+    {
+        try
+        {
+            Files.deleteIfExists( file.toPath() );
+        }
+        catch ( IOException e )
+        {
+            throw new ArchiverException(
+                "Problem replacing output file for " + operation + " " + file.getParent() + ", " + e.getMessage() );
+        }
+        return fileOutputStream( file, operation );
+    }
+
     public static FileOutputStream fileOutputStream( File file, String operation )
         throws ArchiverException
     {
@@ -95,6 +126,62 @@ public static FileOutputStream fileOutputStream( File file, String operation )
         }
     }
 
+    /**
+     * Wraps a stream owned by the caller, which is flushed rather than closed along with the wrapper.
+     *
+     * @since 4.1.1
+     */
+    public static OutputStream nonClosingOutputStream( @WillNotClose OutputStream os )
+    {
+        return new FilterOutputStream( os )
+        {
+
+            @Override
+            public void write( byte[] b, int off, int len )
+                throws IOException
+            {
+                out.write( b, off, len );
+            }
+
+            @Override
+            public void close()
+                throws IOException
+            {
+                flush();
+            }
+
+        };
+    }
+
+    /**
+     * Copies a stream through a buffer of the {@link BufferPool#getDefault() default pool}.
+     *
+     * @return the number of bytes copied
+     *
+     * @since 4.1.1
+     */
+    public static long copy( @WillNotClose InputStream in, @WillNotClose OutputStream out )
+        throws IOException
+    {
+        final BufferPool pool = BufferPool.getDefault();
+        final byte[] buffer = pool.acquire();
+        try
+        {
+            long copied = 0;
+            int count;
+            while ( ( count = in.read( buffer ) ) != -1 )
+            {
+                out.write( buffer, 0, count );
+                copied += count;
+            }
+            return copied;
+        }
+        finally
+        {
+            pool.release( buffer );
+        }
+    }
+
     public static void copyFully( @WillClose InputStream zIn, @WillClose OutputStream out, String gzip )
         throws ArchiverException
     {
@@ -120,9 +207,10 @@ public static void copyFullyDontCloseOutput( @WillClose InputStream zIn, @WillNo
         throws ArchiverException
     {
         // There must be 1 million libs out there that do this
+        final BufferPool pool = BufferPool.getDefault();
+        final byte[] buffer = pool.acquire();
         try
         {
-            byte[] buffer = cacheBuffer();
             int count = 0;
             do
             {
@@ -150,8 +238,141 @@ public static void copyFullyDontCloseOutput( @WillClose InputStream zIn, @WillNo
         }
         finally
         {
+            pool.release( buffer );
             IOUtil.close( zIn );
         }
     }
 
+    private static class PooledBufferedInputStream
+        extends BufferedInputStream
+    {
+
+        private final BufferPool pool;
+
+        PooledBufferedInputStream( InputStream in, BufferPool pool )
+        {
+            super( in, 1 );
+            this.pool = pool;
+            buf = pool.acquire();
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            final byte[] buffer = buf;
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                // only the close that took the buffer away from the stream releases it
+                if ( buffer != null && buf == null )
+                {
+                    pool.release( buffer );
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Buffers writes on its own rather than relying on the sizing logic of {@link BufferedOutputStream}, which
+     * differs between Java versions, so the pooled buffer is always used.
+     */
+    private static class PooledBufferedOutputStream
+        extends BufferedOutputStream
+    {
+
+        private final BufferPool pool;
+
+        PooledBufferedOutputStream( OutputStream out, BufferPool pool )
+        {
+            super( out, 1 );
+            this.pool = pool;
+            buf = pool.acquire();
+        }
+
+        @Override
+        public synchronized void write( int b )
+            throws IOException
+        {
+            ensureOpen();
+            if ( count >= buf.length )
+            {
+                flushBuffer();
+            }
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public synchronized void write( byte[] b, int off, int len )
+            throws IOException
+        {
+            ensureOpen();
+            if ( len >= buf.length )
+            {
+                flushBuffer();
+                out.write( b, off, len );
+                return;
+            }
+            if ( len > buf.length - count )
+            {
+                flushBuffer();
+            }
+            System.arraycopy( b, off, buf, count, len );
+            count += len;
+        }
+
+        @Override
+        public synchronized void flush()
+            throws IOException
+        {
+            flushBuffer();
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close()
+            throws IOException
+        {
+            if ( buf == NO_BUFFER )
+            {
+                return;
+            }
+            try
+            {
+                flush();
+            }
+            finally
+            {
+                pool.release( buf );
+                buf = NO_BUFFER;
+                count = 0;
+                out.close();
+            }
+        }
+
+        private void flushBuffer()
+            throws IOException
+        {
+            if ( count > 0 )
+            {
+                out.write( buf, 0, count );
+                count = 0;
+            }
+        }
+
+        private void ensureOpen()
+            throws IOException
+        {
+            if ( buf == NO_BUFFER )
+            {
+                throw new IOException( "Stream closed" );
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.xz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+import org.codehaus.plexus.archiver.util.ParallelCompressorOutputStream;
+import org.tukaani.xz.FinishableOutputStream;
+import org.tukaani.xz.FinishableWrapperOutputStream;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.check.CRC64;
+
+/**
+ * An output stream writing a single xz stream, compressing fixed-size blocks of data in parallel.
+ * <p>
+ * Every block is LZMA2 compressed on its own, so the stream consists of as many xz blocks as there are blocks of
+ * data, followed by the index listing them. This is what <code>xz --threads</code> does, and the result can be
+ * read by any xz implementation. Blocks are checked with CRC64, the default of the xz tool.</p>
+ *
+ * @since 4.1.1
+ */
+public class ParallelXZOutputStream
+    extends ParallelCompressorOutputStream
+{
+
+    private static final byte[] MAGIC =
+    {
+        (byte) 0xfd, '7', 'z', 'X', 'Z', 0
+    };
+
+    private static final byte[] FOOTER_MAGIC =
+    {
+        'Y', 'Z'
+    };
+
+    private static final byte[] STREAM_FLAGS =
+    {
+        0, 0x04
+    };
+
+    private static final int CHECK_SIZE = 8;
+
+    private static final int LZMA2_FILTER_ID = 0x21;
+
+    /**
+     * The largest default block size, 8 MiB. As up to twice as many blocks as threads are kept in memory, each
+     * compressed with a dictionary as large as the block at most, the default of the high presets would take
+     * gigabytes.
+     */
+    public static final int MAX_DEFAULT_BLOCK_SIZE = 8 * 1024 * 1024;
+
+    private final LZMA2Options options;
+
+    private final List<BlockCompressor> blocks = new ArrayList<BlockCompressor>();
+
+    /**
+     * Creates a stream compressing blocks of the default size for the given preset, three times its dictionary
+     * size, but at least 1 MiB and at most {@link #MAX_DEFAULT_BLOCK_SIZE}.
+     *
+     * @param out the stream to write the compressed data to
+     * @param preset the compression preset, from 0 to 9
+     * @param threads the number of threads to compress blocks with
+     *
+     * @throws IOException if the preset isn't supported or the stream header can't be written
+     */
+    public ParallelXZOutputStream( OutputStream out, int preset, int threads )
+        throws IOException
+    {
+        this( out, preset, getDefaultBlockSize( preset ), threads );
+    }
+
+    /**
+     * @param out the stream to write the compressed data to
+     * @param preset the compression preset, from 0 to 9
+     * @param blockSize the number of bytes compressed independently from each other
+     * @param threads the number of threads to compress blocks with
+     *
+     * @throws IOException if the preset isn't supported or the stream header can't be written
+     */
+    public ParallelXZOutputStream( OutputStream out, int preset, int blockSize, int threads )
+        throws IOException
+    {
+        super( out, blockSize, threads );
+        options = new LZMA2Options( preset );
+        // a dictionary larger than a block is of no use
+        options.setDictSize( Math.max( LZMA2Options.DICT_SIZE_MIN, Math.min( options.getDictSize(), blockSize ) ) );
+        out.write( MAGIC );
+        out.write( STREAM_FLAGS );
+        writeInt( out, crc32( STREAM_FLAGS, 0, STREAM_FLAGS.length ) );
+    }
+
+    /**
+     * @param preset the compression preset, from 0 to 9
+     *
+     * @return the default block size for the given preset
+     *
+     * @throws IOException if the preset isn't supported
+     */
+    public static int getDefaultBlockSize( int preset )
+        throws IOException
+    {
+        return Math.min( Math.max( 3 * new LZMA2Options( preset ).getDictSize(), 1024 * 1024 ),
+                         MAX_DEFAULT_BLOCK_SIZE );
+    }
+
+    @Override
+    protected Callable<byte[]> newBlockCompressor( byte[] data, int length, byte[] previousData, boolean last )
+    {
+        if ( length == 0 )
+        {
+            return new Callable<byte[]>()
+            {
+
+                @Override
+                public byte[] call()
+                {
+                    return new byte[ 0 ];
+                }
+
+            };
+        }
+        final BlockCompressor block = new BlockCompressor( data, length );
+        blocks.add( block );
+        return block;
+    }
+
+    @Override
+    protected void writeTrailer()
+        throws IOException
+    {
+        final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        index.write( 0 );
+        writeVli( index, blocks.size() );
+        for ( BlockCompressor block : blocks )
+        {
+            writeVli( index, block.unpaddedSize );
+            writeVli( index, block.length );
+        }
+        pad( index, index.size() );
+        writeInt( index, crc32( index.toByteArray(), 0, index.size() ) );
+        index.writeTo( out );
+
+        final ByteArrayOutputStream footer = new ByteArrayOutputStream();
+        writeInt( footer, index.size() / 4 - 1 );
+        footer.write( STREAM_FLAGS );
+        writeInt( out, crc32( footer.toByteArray(), 0, footer.size() ) );
+        footer.writeTo( out );
+        out.write( FOOTER_MAGIC );
+    }
+
+    private static int getDictSizeProperty( int dictSize )
+    {
+        int property = 0;
+        while ( ( 2 | ( property & 1 ) ) << ( property / 2 + 11 ) < dictSize )
+        {
+            property++;
+        }
+        return property;
+    }
+
+    private static void writeVli( OutputStream out, long value )
+        throws IOException
+    {
+        while ( value >= 0x80 )
+        {
+            out.write( (int) ( value | 0x80 ) );
+            value >>>= 7;
+        }
+        out.write( (int) value );
+    }
+
+    private static void writeInt( OutputStream out, int value )
+        throws IOException
+    {
+        out.write( value );
+        out.write( value >>> 8 );
+        out.write( value >>> 16 );
+        out.write( value >>> 24 );
+    }
+
+    private static void pad( OutputStream out, long size )
+        throws IOException
+    {
+        for ( long i = size; i % 4 != 0; i++ )
+        {
+            out.write( 0 );
+        }
+    }
+
+    private static int crc32( byte[] b, int off, int len )
+    {
+        final CRC32 crc = new CRC32();
+        crc.update( b, off, len );
+        return (int) crc.getValue();
+    }
+
+    private class BlockCompressor
+        implements Callable<byte[]>
+    {
+
+        private byte[] data;
+
+        private final int length;
+
+        private long unpaddedSize;
+
+        BlockCompressor( byte[] data, int length )
+        {
+            this.data = data;
+            this.length = length;
+        }
+
+        @Override
+        public byte[] call()
+            throws IOException
+        {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream( length / 4 + 64 );
+            final FinishableOutputStream lzma2 =
+                options.getOutputStream( new FinishableWrapperOutputStream( compressed ) );
+            lzma2.write( data, 0, length );
+            lzma2.finish();
+
+            final CRC64 check = new CRC64();
+            check.update( data, 0, length );
+            // the block is no longer needed once compressed
+            data = null;
+
+            final ByteArrayOutputStream header = new ByteArrayOutputStream( 32 );
+            header.write( 0 );
+            // one filter, compressed and uncompressed sizes present
+            header.write( 0xc0 );
+            writeVli( header, compressed.size() );
+            writeVli( header, length );
+            writeVli( header, LZMA2_FILTER_ID );
+            writeVli( header, 1 );
+            header.write( getDictSizeProperty( options.getDictSize() ) );
+            pad( header, header.size() );
+            final byte[] headerBytes = header.toByteArray();
+            // the header size, including its CRC32, in units of four bytes minus one
+            headerBytes[0] = (byte) ( ( headerBytes.length + 4 ) / 4 - 1 );
+
+            final ByteArrayOutputStream block =
+                new ByteArrayOutputStream( headerBytes.length + 4 + compressed.size() + 3 + CHECK_SIZE );
+            block.write( headerBytes );
+            writeInt( block, crc32( headerBytes, 0, headerBytes.length ) );
+            compressed.writeTo( block );
+            pad( block, compressed.size() );
+            block.write( check.finish() );
+
+            unpaddedSize = headerBytes.length + 4 + compressed.size() + CHECK_SIZE;
+            return block.toByteArray();
+        }
+
+    }
+
+}
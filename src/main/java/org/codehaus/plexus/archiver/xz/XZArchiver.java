@@ -35,6 +35,36 @@ public XZArchiver()
     {
     }
 
+    /**
+     * @param preset the compression preset, see {@link XZCompressor#setPreset(int)}
+     *
+     * @since 4.1.1
+     */
+    public void setCompressionPreset( int preset )
+    {
+        compressor.setPreset( preset );
+    }
+
+    /**
+     * @param threads the number of threads used to compress, see {@link XZCompressor#setThreads(int)}
+     *
+     * @since 4.1.1
+     */
+    public void setCompressionThreads( int threads )
+    {
+        compressor.setThreads( threads );
+    }
+
+    /**
+     * @param blockSize the size of the blocks compressed in parallel, see {@link XZCompressor#setBlockSize(int)}
+     *
+     * @since 4.1.1
+     */
+    public void setCompressionBlockSize( int blockSize )
+    {
+        compressor.setBlockSize( blockSize );
+    }
+
     @Override
     protected void execute() throws ArchiverException, IOException
     {
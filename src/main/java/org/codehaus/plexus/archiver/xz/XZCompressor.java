@@ -16,9 +16,11 @@
 package org.codehaus.plexus.archiver.xz;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
 import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.archiver.util.Compressor;
+import org.tukaani.xz.LZMA2Options;
 import static org.codehaus.plexus.archiver.util.Streams.bufferedOutputStream;
 import static org.codehaus.plexus.archiver.util.Streams.fileOutputStream;
 
@@ -29,18 +31,85 @@
 public class XZCompressor extends Compressor
 {
 
-    private XZCompressorOutputStream xzOut;
+    private OutputStream xzOut;
+
+    private int preset = LZMA2Options.PRESET_DEFAULT;
+
+    private int threads = 1;
+
+    private int blockSize;
 
     public XZCompressor()
     {
     }
 
+    /**
+     * Sets the compression preset.
+     *
+     * @param preset the preset, from 0 to 9, 6 by default
+     *
+     * @since 4.1.1
+     */
+    public void setPreset( int preset )
+    {
+        this.preset = preset;
+    }
+
+    public int getPreset()
+    {
+        return preset;
+    }
+
+    /**
+     * Sets the number of threads used to compress. With more than one thread, blocks of
+     * {@link #setBlockSize(int) block size} bytes are compressed in parallel, see {@link ParallelXZOutputStream}.
+     *
+     * @param threads the number of threads, 1 by default
+     *
+     * @since 4.1.1
+     */
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Sets the size of the blocks compressed independently when compressing with more than one thread.
+     *
+     * @param blockSize the block size in bytes, or 0 for the default of the preset
+     *
+     * @since 4.1.1
+     */
+    public void setBlockSize( int blockSize )
+    {
+        this.blockSize = blockSize;
+    }
+
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
     @Override
     public void compress() throws ArchiverException
     {
         try
         {
-            xzOut = new XZCompressorOutputStream( bufferedOutputStream( fileOutputStream( getDestFile() ) ) );
+            final OutputStream out = bufferedOutputStream( fileOutputStream( getDestFile() ) );
+            if ( threads > 1 )
+            {
+                final int size = blockSize > 0 ? blockSize : ParallelXZOutputStream.getDefaultBlockSize( preset );
+                xzOut = new ParallelXZOutputStream( out, preset, size, threads );
+            }
+            else
+            {
+                xzOut = new XZCompressorOutputStream( out, preset );
+            }
             compress( getSource(), xzOut );
         }
         catch ( IOException ioe )
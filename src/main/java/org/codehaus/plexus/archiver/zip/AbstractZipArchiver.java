@@ -16,39 +16,51 @@
  */
 package org.codehaus.plexus.archiver.zip;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.SequenceInputStream;
+import java.lang.reflect.Proxy;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipEncoding;
 import org.apache.commons.compress.archivers.zip.ZipEncodingHelper;
+import org.apache.commons.compress.archivers.zip.ZipUtil;
 import org.apache.commons.compress.parallel.InputStreamSupplier;
 import org.apache.commons.compress.utils.Charsets;
+import org.apache.commons.compress.utils.IOUtils;
 import org.codehaus.plexus.archiver.AbstractArchiver;
 import org.codehaus.plexus.archiver.ArchiveEntry;
 import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.ArchiverMetrics;
 import org.codehaus.plexus.archiver.ResourceIterator;
 import org.codehaus.plexus.archiver.UnixStat;
 import org.codehaus.plexus.archiver.exceptions.EmptyArchiveException;
+import org.codehaus.plexus.archiver.util.BufferPool;
 import org.codehaus.plexus.archiver.util.ResourceUtils;
+import org.codehaus.plexus.components.io.functions.FileSupplier;
 import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import static org.codehaus.plexus.archiver.util.Streams.bufferedOutputStream;
-import static org.codehaus.plexus.archiver.util.Streams.fileOutputStream;
+import static org.codehaus.plexus.archiver.util.Streams.newFileOutputStream;
+import static org.codehaus.plexus.archiver.util.Streams.nonClosingOutputStream;
 
 @SuppressWarnings(
 {
@@ -70,6 +82,8 @@
 
     private boolean recompressAddedZips = true;
 
+    private boolean recompressArchivedEntries = false;
+
     private boolean doUpdate = false;
 
     // shadow of the above if the value is altered in execute
@@ -103,6 +117,24 @@
     // Renamed version of original file, if it exists
     private File renamedFile = null;
 
+    // The renamed original file opened for reuse of unchanged entries in update mode
+    private org.apache.commons.compress.archivers.zip.ZipFile previousArchive;
+
+    private int reusedEntries;
+
+    private Executor executor;
+
+    private int compressionThreads = Runtime.getRuntime().availableProcessors();
+
+    private ScatterSpillPolicy scatterSpillPolicy;
+
+    private DeflatedEntryCache deflatedEntryCache;
+
+    /**
+     * The digests of the entries compressed because they weren't found in the cache, by entry name.
+     */
+    private final Map<String, String> uncachedEntries = new LinkedHashMap<String, String>();
+
     private File zipFile;
 
     private boolean success;
@@ -151,6 +183,124 @@ public void setRecompressAddedZips( boolean recompressAddedZips )
         this.recompressAddedZips = recompressAddedZips;
     }
 
+    /**
+     * Sets whether entries taken from other zip files should always be compressed again.
+     * <p>
+     * By default, the compressed data of an entry added from a zip file, for example by means of
+     * {@link #addArchivedFileSet(File)}, is copied as is, provided that its contents aren't transformed and it
+     * is stored using the compression method this archiver would use. Set this to true to inflate and deflate
+     * such entries like any other file.</p>
+     *
+     * @param recompressArchivedEntries true to compress entries taken from zip files again
+     *
+     * @since 4.1.1
+     */
+    public void setRecompressArchivedEntries( boolean recompressArchivedEntries )
+    {
+        this.recompressArchivedEntries = recompressArchivedEntries;
+    }
+
+    public boolean isRecompressArchivedEntries()
+    {
+        return recompressArchivedEntries;
+    }
+
+    /**
+     * Sets the executor entries are compressed on.
+     * <p>
+     * The executor may be shared by several archivers, for example to build the archives of a multi-module build
+     * on a single thread pool. It is never shut down by the archiver. By default, every archive is compressed on a
+     * thread pool of its own.</p>
+     * <p>
+     * The threads of the executor keep no state of the archive: it compresses into at most
+     * {@link #setCompressionThreads(int) compressionThreads} buffers of its own, released once it is written.</p>
+     *
+     * @param executor the executor to compress entries on, or null for a thread pool of the archive's own
+     *
+     * @since 4.1.1
+     */
+    public void setExecutor( Executor executor )
+    {
+        this.executor = executor;
+    }
+
+    public Executor getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * Sets the maximum number of entries compressed at the same time, defaults to the number of processors.
+     * <p>
+     * With an executor set, this bounds how many of its threads the archive occupies at once.</p>
+     *
+     * @param compressionThreads the maximum number of entries compressed at the same time
+     *
+     * @since 4.1.1
+     */
+    public void setCompressionThreads( int compressionThreads )
+    {
+        if ( compressionThreads < 1 )
+        {
+            throw new IllegalArgumentException( "Number of threads must be positive: " + compressionThreads );
+        }
+        this.compressionThreads = compressionThreads;
+    }
+
+    public int getCompressionThreads()
+    {
+        return compressionThreads;
+    }
+
+    /**
+     * Sets where entries are kept once compressed until they are written to the archive.
+     * <p>
+     * By default, every compressing thread keeps its share of {@link ScatterSpillPolicy#DEFAULT_MEMORY_BUDGET}
+     * bytes in memory and spills the rest to the default temporary directory.</p>
+     *
+     * @param scatterSpillPolicy the spill policy, or null for the default
+     *
+     * @since 4.1.1
+     */
+    public void setScatterSpillPolicy( ScatterSpillPolicy scatterSpillPolicy )
+    {
+        this.scatterSpillPolicy = scatterSpillPolicy;
+    }
+
+    public ScatterSpillPolicy getScatterSpillPolicy()
+    {
+        return scatterSpillPolicy;
+    }
+
+    /**
+     * Sets a cache of compressed entry data, which may be shared by builds.
+     * <p>
+     * Entries whose contents are found in the cache are added without being compressed again. The compressed data
+     * of the other entries is stored in the cache once the archive is written.</p>
+     *
+     * @param deflatedEntryCache the cache, or null to compress all entries
+     *
+     * @since 4.1.1
+     */
+    public void setDeflatedEntryCache( DeflatedEntryCache deflatedEntryCache )
+    {
+        this.deflatedEntryCache = deflatedEntryCache;
+    }
+
+    public DeflatedEntryCache getDeflatedEntryCache()
+    {
+        return deflatedEntryCache;
+    }
+
+    /**
+     * Sets whether an existing archive should be updated rather than rebuilt from scratch.
+     * <p>
+     * In update mode, entries of the existing archive whose name, compression method, modification time, mode,
+     * size and CRC match the entry about to be added are copied without being compressed again.
+     * Entries of the existing archive that are not added again are dropped.</p>
+     *
+     * @param update true to update an existing archive
+     */
     public void setUpdateMode( boolean update )
     {
         this.doUpdate = update;
@@ -224,18 +374,24 @@ private void createArchiveMain()
         }
 
         zipFile = getDestFile();
+        final OutputStream destStream = getDestStream();
 
-        if ( zipFile == null )
+        if ( destStream != null )
+        {
+            if ( doUpdate )
+            {
+                throw new ArchiverException( "An " + archiveType + " written to a stream can't be updated." );
+            }
+        }
+        else if ( zipFile == null )
         {
             throw new ArchiverException( "You must set the destination " + archiveType + "file." );
         }
-
-        if ( zipFile.exists() && !zipFile.isFile() )
+        else if ( zipFile.exists() && !zipFile.isFile() )
         {
             throw new ArchiverException( zipFile + " isn't a file." );
         }
-
-        if ( zipFile.exists() && !zipFile.canWrite() )
+        else if ( zipFile.exists() && !zipFile.canWrite() )
         {
             throw new ArchiverException( zipFile + " is read-only." );
         }
@@ -244,7 +400,7 @@ private void createArchiveMain()
         // we don't need to update if the original file doesn't exist
         addingNewFiles = true;
 
-        if ( doUpdate && !zipFile.exists() )
+        if ( doUpdate && renamedFile == null && !zipFile.exists() )
         {
             doUpdate = false;
             getLogger().debug( "ignoring update attribute as " + archiveType + " doesn't exist." );
@@ -252,7 +408,7 @@ private void createArchiveMain()
 
         success = false;
 
-        if ( doUpdate )
+        if ( doUpdate && renamedFile == null )
         {
             renamedFile = FileUtils.createTempFile( "zip", ".tmp", zipFile.getParentFile() );
             renamedFile.deleteOnExit();
@@ -277,34 +433,325 @@ private void createArchiveMain()
 
         String action = doUpdate ? "Updating " : "Building ";
 
-        getLogger().info( action + archiveType + ": " + zipFile.getAbsolutePath() );
+        String destination = destStream != null ? "stream" : zipFile.getAbsolutePath();
+        getLogger().info( action + archiveType + ": " + destination );
 
         if ( !skipWriting )
         {
-            zipArchiveOutputStream =
-                new ZipArchiveOutputStream( bufferedOutputStream( fileOutputStream( zipFile, "zip" ) ) );
+            // a stream can't be seeked, the sizes of deflated entries follow their data in data descriptors
+            zipArchiveOutputStream = new ZipArchiveOutputStream( bufferedOutputStream(
+                destStream != null ? nonClosingOutputStream( destStream ) : newFileOutputStream( zipFile, "zip" ) ) );
             zipArchiveOutputStream.setEncoding( encoding );
             zipArchiveOutputStream.setCreateUnicodeExtraFields( this.getUnicodeExtraFieldPolicy() );
             zipArchiveOutputStream.setMethod(
                 doCompress ? ZipArchiveOutputStream.DEFLATED : ZipArchiveOutputStream.STORED );
 
-            zOut = new ConcurrentJarCreator( recompressAddedZips, Runtime.getRuntime().availableProcessors() );
+            zOut = new ConcurrentJarCreator( recompressAddedZips, executor, compressionThreads,
+                                             scatterSpillPolicy );
+            zOut.setMetrics( getMetrics() );
+
+            if ( doUpdate && previousArchive == null )
+            {
+                previousArchive = new org.apache.commons.compress.archivers.zip.ZipFile( renamedFile, encoding );
+            }
         }
         initZipOutputStream( zOut );
 
         // Add the new files to the archive.
+        final long addStart = System.nanoTime();
         addResources( iter, zOut );
+        getMetrics().phaseCompleted( ArchiverMetrics.Phase.ADD_RESOURCES, System.nanoTime() - addStart );
 
-        // If we've been successful on an update, delete the
-        // temporary file
-        if ( doUpdate )
+        if ( doUpdate && !skipWriting )
         {
-            if ( !renamedFile.delete() )
+            getLogger().debug( "Reused " + reusedEntries + " unchanged entries of the original " + archiveType );
+        }
+        success = true;
+    }
+
+    private boolean addReusableEntry( ZipArchiveEntry ze, ArchiveEntry entry, ConcurrentJarCreator zOut )
+        throws IOException
+    {
+        return ( previousArchive != null && addUnchangedEntry( ze, entry, zOut ) )
+                   || ( !recompressArchivedEntries && addArchivedEntry( ze, entry, zOut ) )
+                   || ( deflatedEntryCache != null && addCachedEntry( ze, entry, zOut ) );
+    }
+
+    /**
+     * Adds the compressed data of an entry from the {@link DeflatedEntryCache}, if its contents are cached.
+     *
+     * @return true, if the cached data has been added, false if the entry needs to be compressed
+     */
+    private boolean addCachedEntry( ZipArchiveEntry ze, ArchiveEntry entry, ConcurrentJarCreator zOut )
+        throws IOException
+    {
+        // the manifest is written ahead of all other entries, compressed data is not
+        if ( ze.getMethod() != ZipArchiveEntry.DEFLATED || "META-INF/MANIFEST.MF".equals( ze.getName() ) )
+        {
+            return false;
+        }
+
+        final String digest;
+        final InputStream in = new BufferedInputStream( entry.getInputStream() );
+        try
+        {
+            if ( !recompressAddedZips )
             {
-                getLogger().warn( "Warning: unable to delete temporary file " + renamedFile.getName() );
+                // zip files are supposed to be stored, so let ConcurrentJarCreator have a look at the contents
+                final byte[] header = new byte[ 4 ];
+                in.mark( header.length );
+                if ( IOUtils.readFully( in, header ) == header.length && header[0] == 0x50 && header[1] == 0x4b
+                         && header[2] == 3 && header[3] == 4 )
+                {
+                    return false;
+                }
+                in.reset();
             }
+            digest = deflatedEntryCache.digest( in );
         }
-        success = true;
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        final DeflatedEntryCache.Entry cached = deflatedEntryCache.get( digest, Deflater.DEFAULT_COMPRESSION );
+        if ( cached == null )
+        {
+            uncachedEntries.put( ze.getName(), digest );
+            return false;
+        }
+
+        ze.setCrc( cached.getCrc() );
+        ze.setSize( cached.getSize() );
+        ze.setCompressedSize( cached.getCompressedSize() );
+        zOut.addRawArchiveEntry( ze, new InputStreamSupplier()
+        {
+
+            @Override
+            public InputStream get()
+            {
+                try
+                {
+                    return cached.getRawInputStream();
+                }
+                catch ( IOException e )
+                {
+                    throw new RuntimeException( e );
+                }
+            }
+
+        } );
+        return true;
+    }
+
+    /**
+     * Stores the compressed data of the entries not found in the {@link DeflatedEntryCache}, as written to the
+     * archive. Failing to do so doesn't fail the archive.
+     */
+    private void storeUncachedEntries()
+    {
+        if ( deflatedEntryCache == null )
+        {
+            return;
+        }
+        try
+        {
+            if ( !uncachedEntries.isEmpty() )
+            {
+                final org.apache.commons.compress.archivers.zip.ZipFile written =
+                    new org.apache.commons.compress.archivers.zip.ZipFile( zipFile, encoding );
+                try
+                {
+                    for ( Map.Entry<String, String> uncached : uncachedEntries.entrySet() )
+                    {
+                        final ZipArchiveEntry ze = written.getEntry( uncached.getKey() );
+                        if ( ze == null || ze.getMethod() != ZipArchiveEntry.DEFLATED )
+                        {
+                            continue;
+                        }
+                        final InputStream raw = written.getRawInputStream( ze );
+                        try
+                        {
+                            deflatedEntryCache.put( uncached.getValue(), Deflater.DEFAULT_COMPRESSION, ze.getCrc(),
+                                                    ze.getSize(), raw );
+                        }
+                        finally
+                        {
+                            IOUtil.close( raw );
+                        }
+                    }
+                }
+                finally
+                {
+                    org.apache.commons.compress.archivers.zip.ZipFile.closeQuietly( written );
+                }
+            }
+            deflatedEntryCache.trim();
+        }
+        catch ( IOException e )
+        {
+            getLogger().warn( "Unable to update the deflated entry cache: " + e.getMessage() );
+        }
+        finally
+        {
+            uncachedEntries.clear();
+        }
+        getLogger().debug( deflatedEntryCache.getStatisticsMessage() );
+    }
+
+    /**
+     * Adds the compressed data of an entry taken from another zip file as is, if the contents of the entry aren't
+     * transformed and it is compressed the same way this archiver would compress it.
+     * <p>
+     * Whether the entry is taken from a zip file is told by its resource. Only the proxies of resources, like those
+     * of archived file sets, have to be opened to find out.</p>
+     *
+     * @return true, if the compressed data has been added, false if the entry needs to be compressed again
+     */
+    private boolean addArchivedEntry( ZipArchiveEntry ze, ArchiveEntry entry, ConcurrentJarCreator zOut )
+        throws IOException
+    {
+        // the manifest is written ahead of all other entries, compressed data is not
+        if ( "META-INF/MANIFEST.MF".equals( ze.getName() ) )
+        {
+            return false;
+        }
+
+        final PlexusIoResource resource = entry.getResource();
+        if ( resource instanceof ZipEntrySource )
+        {
+            return addArchivedEntry( ze, entry, (ZipEntrySource) resource, null, zOut );
+        }
+        if ( resource instanceof FileSupplier || !Proxy.isProxyClass( resource.getClass() ) )
+        {
+            return false;
+        }
+
+        final InputStream in = entry.getInputStream();
+        try
+        {
+            return in instanceof ZipEntryInputStream
+                       && addArchivedEntry( ze, entry, (ZipEntryInputStream) in, in, zOut );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * @param contents the contents of the entry if they are open already, or null to open them if they are needed
+     */
+    private boolean addArchivedEntry( ZipArchiveEntry ze, ArchiveEntry entry, final ZipEntrySource zipEntrySource,
+                                      InputStream contents, ConcurrentJarCreator zOut )
+        throws IOException
+    {
+        final ZipArchiveEntry source = zipEntrySource.getZipArchiveEntry();
+        if ( source == null || source.getMethod() != ze.getMethod() || source.getGeneralPurposeBit().usesEncryption()
+                 || source.getCrc() == -1 || source.getSize() == -1 || source.getCompressedSize() == -1 )
+        {
+            return false;
+        }
+
+        if ( !recompressAddedZips && ze.getMethod() == ZipArchiveEntry.DEFLATED )
+        {
+            // zip files are supposed to be stored, so let ConcurrentJarCreator have a look at the contents
+            final InputStream in = contents != null ? contents : entry.getInputStream();
+            try
+            {
+                final byte[] header = new byte[ 4 ];
+                if ( IOUtils.readFully( in, header ) == header.length && header[0] == 0x50 && header[1] == 0x4b
+                         && header[2] == 3 && header[3] == 4 )
+                {
+                    return false;
+                }
+            }
+            finally
+            {
+                if ( contents == null )
+                {
+                    IOUtil.close( in );
+                }
+            }
+        }
+
+        ze.setCrc( source.getCrc() );
+        ze.setSize( source.getSize() );
+        ze.setCompressedSize( source.getCompressedSize() );
+        zOut.addRawArchiveEntry( ze, new InputStreamSupplier()
+        {
+
+            @Override
+            public InputStream get()
+            {
+                return zipEntrySource.getRawInputStream();
+            }
+
+        } );
+        return true;
+    }
+
+    /**
+     * Adds the entry of the original archive as is, if it is identical to the entry about to be written.
+     * <p>
+     * The entries are considered identical, if they share the name, compression method, modification time, mode,
+     * size and CRC. The CRC is only computed, if all other attributes match.</p>
+     *
+     * @return true, if the original entry has been added, false if the entry needs to be compressed again
+     */
+    private boolean addUnchangedEntry( ZipArchiveEntry ze, ArchiveEntry entry, ConcurrentJarCreator zOut )
+        throws IOException
+    {
+        if ( "META-INF/MANIFEST.MF".equals( ze.getName() ) )
+        {
+            // reused entries are written after the directories, but the manifest must stay in front
+            return false;
+        }
+        final ZipArchiveEntry previous = previousArchive.getEntry( ze.getName() );
+        if ( previous == null || previous.isDirectory() || previous.isUnixSymlink()
+                 || previous.getMethod() != ze.getMethod()
+                 || previous.getUnixMode() != ze.getUnixMode()
+                 || previous.getSize() != entry.getResource().getSize()
+                 || !Arrays.equals( ZipUtil.toDosTime( previous.getTime() ), ZipUtil.toDosTime( ze.getTime() ) ) )
+        {
+            return false;
+        }
+
+        final CRC32 crc = new CRC32();
+        final BufferPool pool = BufferPool.getDefault();
+        final byte[] buffer = pool.acquire();
+        final InputStream in = entry.getInputStream();
+        try
+        {
+            int count;
+            while ( ( count = in.read( buffer ) ) != -1 )
+            {
+                crc.update( buffer, 0, count );
+            }
+        }
+        finally
+        {
+            pool.release( buffer );
+            IOUtil.close( in );
+        }
+        if ( crc.getValue() != previous.getCrc() )
+        {
+            return false;
+        }
+
+        final ZipArchiveEntry raw = new ZipArchiveEntry( previous );
+        zOut.addRawArchiveEntry( raw, new InputStreamSupplier()
+        {
+
+            @Override
+            public InputStream get()
+            {
+                return previousArchive.getRawInputStream( previous );
+            }
+
+        } );
+        reusedEntries++;
+        return true;
     }
 
     /**
@@ -471,7 +918,8 @@ protected void zipFile( InputStreamSupplier in, ConcurrentJarCreator zOut, Strin
                 payload = new ByteArrayInputStream( bytes );
                 zOut.addArchiveEntry( ze, createInputStreamSupplier( payload ), true );
             }
-            else
+            else if ( !( in instanceof ArchiveEntryInputStreamSupplier )
+                          || !addReusableEntry( ze, ( (ArchiveEntryInputStreamSupplier) in ).entry, zOut ) )
             {
                 zOut.addArchiveEntry( ze, in, addInParallel );
             }
@@ -502,23 +950,7 @@ protected void zipFile( final ArchiveEntry entry, ConcurrentJarCreator zOut, Str
 
         final boolean b = entry.getResource() instanceof SymlinkDestinationSupplier;
         String symlinkTarget = b ? ( (SymlinkDestinationSupplier) entry.getResource() ).getSymlinkDestination() : null;
-        InputStreamSupplier in = new InputStreamSupplier()
-        {
-
-            @Override
-            public InputStream get()
-            {
-                try
-                {
-                    return entry.getInputStream();
-                }
-                catch ( IOException e )
-                {
-                    throw new RuntimeException( e );
-                }
-            }
-
-        };
+        InputStreamSupplier in = new ArchiveEntryInputStreamSupplier( entry );
         try
         {
             zipFile( in, zOut, vPath, resource.getLastModified(), null, entry.getMode(), symlinkTarget,
@@ -530,6 +962,36 @@ public InputStream get()
         }
     }
 
+    /**
+     * Supplies the contents of an {@link ArchiveEntry}. Unlike other suppliers it may be asked for the contents
+     * more than once, which allows unchanged entries to be detected in update mode.
+     */
+    private static class ArchiveEntryInputStreamSupplier
+        implements InputStreamSupplier
+    {
+
+        private final ArchiveEntry entry;
+
+        ArchiveEntryInputStreamSupplier( ArchiveEntry entry )
+        {
+            this.entry = entry;
+        }
+
+        @Override
+        public InputStream get()
+        {
+            try
+            {
+                return entry.getInputStream();
+            }
+            catch ( IOException e )
+            {
+                throw new RuntimeException( e );
+            }
+        }
+
+    }
+
     private void setTime( java.util.zip.ZipEntry zipEntry, long lastModified )
     {
         // Zip archives store file modification times with a
@@ -668,7 +1130,7 @@ protected boolean createEmptyZip( File zipFile )
         OutputStream os = null;
         try
         {
-            os = new FileOutputStream( zipFile );
+            os = newFileOutputStream( zipFile, archiveType );
             // Cf. PKZIP specification.
             byte[] empty = new byte[ 22 ];
             empty[0] = 80; // P
@@ -716,10 +1178,22 @@ protected void cleanUp()
         doUpdate = savedDoUpdate;
         success = false;
         zOut = null;
+        closePreviousArchive();
         renamedFile = null;
+        reusedEntries = 0;
+        uncachedEntries.clear();
         zipFile = null;
     }
 
+    private void closePreviousArchive()
+    {
+        if ( previousArchive != null )
+        {
+            org.apache.commons.compress.archivers.zip.ZipFile.closeQuietly( previousArchive );
+            previousArchive = null;
+        }
+    }
+
     /**
      * Makes this instance reset all attributes to their default
      * values and forget all children.
@@ -756,13 +1230,21 @@ public boolean isSupportingForced()
         return true;
     }
 
+    @Override
+    public boolean isSupportingStreaming()
+    {
+        return true;
+    }
+
     @Override
     protected boolean revert( StringBuffer messageBuffer )
     {
         int initLength = messageBuffer.length();
 
+        closePreviousArchive();
+
         // delete a bogus ZIP file (but only if it's not the original one)
-        if ( ( !doUpdate || renamedFile != null ) && !zipFile.delete() )
+        if ( getDestStream() == null && ( !doUpdate || renamedFile != null ) && !zipFile.delete() )
         {
             messageBuffer.append( " (and the archive is probably corrupt but I could not delete it)" );
         }
@@ -798,6 +1280,23 @@ protected void close()
                     zOut.writeTo( zipArchiveOutputStream );
                 }
                 zipArchiveOutputStream.close();
+                if ( success && getDestStream() == null )
+                {
+                    // the entries are read back from the archive written
+                    storeUncachedEntries();
+                }
+            }
+
+            // If we've been successful on an update, delete the
+            // temporary file
+            if ( success && doUpdate && renamedFile != null )
+            {
+                closePreviousArchive();
+                if ( !renamedFile.delete() )
+                {
+                    getLogger().warn( "Warning: unable to delete temporary file " + renamedFile.getName() );
+                }
+                renamedFile = null;
             }
         }
         catch ( IOException ex )
@@ -837,4 +1336,16 @@ protected String getArchiveType()
         return archiveType;
     }
 
+    @Override
+    protected String getConfigurationFingerprint()
+    {
+        if ( doUpdate )
+        {
+            // the archive depends on the archive it updates
+            return null;
+        }
+        return archiveType + '\n' + comment + '\n' + encoding + '\n' + doCompress + '\n' + recompressAddedZips
+                   + '\n' + recompressArchivedEntries + '\n' + doFilesonly;
+    }
+
 }
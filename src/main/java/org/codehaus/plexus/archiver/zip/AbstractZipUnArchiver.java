@@ -21,17 +21,36 @@
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
 import javax.annotation.Nonnull;
 import org.apache.commons.compress.archivers.zip.UnicodePathExtraField;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.CloseShieldFilterInputStream;
 import org.apache.commons.compress.utils.IOUtils;
 import org.codehaus.plexus.archiver.AbstractUnArchiver;
 import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.util.ArchiveDirectoryCache;
+import org.codehaus.plexus.archiver.util.ArchiveDirectoryCache.SharedZipFile;
+import org.codehaus.plexus.archiver.util.DaemonThreadFactory;
+import org.codehaus.plexus.archiver.util.FileRegionInputStream;
 import org.codehaus.plexus.components.io.filemappers.FileMapper;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
+import static org.codehaus.plexus.archiver.util.Streams.bufferedInputStream;
 
 /**
  * @author <a href="mailto:evenisse@codehaus.org">Emmanuel Venisse</a>
@@ -44,6 +63,10 @@
 
     private String encoding = "UTF8";
 
+    private int extractionThreads = 1;
+
+    private ExecutorService executorService;
+
     public AbstractZipUnArchiver()
     {
     }
@@ -68,6 +91,51 @@ public void setEncoding( String encoding )
         this.encoding = encoding;
     }
 
+    /**
+     * Sets the number of threads used to inflate and write file entries.
+     * <p>
+     * A value greater than one enables parallel extraction. Directories are still created on the calling thread
+     * before the files they contain are written, and symbolic links are created in archive order once all file
+     * entries have been extracted. Defaults to one, which extracts all entries sequentially.</p>
+     *
+     * @param extractionThreads the number of extraction threads
+     *
+     * @since 4.1.1
+     */
+    public void setExtractionThreads( int extractionThreads )
+    {
+        if ( extractionThreads < 1 )
+        {
+            throw new IllegalArgumentException( "The number of extraction threads must be positive." );
+        }
+        this.extractionThreads = extractionThreads;
+    }
+
+    public int getExtractionThreads()
+    {
+        return extractionThreads;
+    }
+
+    /**
+     * Sets the executor used for parallel extraction.
+     * <p>
+     * If set, file entries are extracted in parallel on the given executor regardless of
+     * {@link #setExtractionThreads(int)}. The executor is not shut down by the unarchiver.</p>
+     *
+     * @param executorService the executor to use, or {@code null} to let the unarchiver manage its own threads
+     *
+     * @since 4.1.1
+     */
+    public void setExecutorService( ExecutorService executorService )
+    {
+        this.executorService = executorService;
+    }
+
+    public ExecutorService getExecutorService()
+    {
+        return executorService;
+    }
+
     private static class ZipEntryFileInfo
         implements PlexusIoResource
     {
@@ -124,6 +192,10 @@ public boolean isSymbolicLink()
         public InputStream getContents()
             throws IOException
         {
+            if ( zipFile == null )
+            {
+                throw new IOException( "The contents of " + getName() + " can't be read ahead of a stream." );
+            }
             return zipFile.getInputStream( zipEntry );
         }
 
@@ -156,16 +228,36 @@ public boolean isExisting()
 
     }
 
+    /**
+     * Zip archives read from a stream are extracted from their local file headers, as the central directory at
+     * the end of the archive comes too late. As only the central directory records unix modes, the files keep
+     * default permissions and symbolic links are extracted as files holding their destination. Entries are
+     * extracted sequentially regardless of {@link #setExtractionThreads(int)}, and entries whose compression
+     * method isn't supported for streaming fail the extraction.
+     */
+    @Override
+    public boolean isSupportingStreaming()
+    {
+        return true;
+    }
+
     @Override
     protected void execute()
         throws ArchiverException
     {
+        if ( getSourceStream() != null )
+        {
+            execute( getSourceStream(), getDestDirectory() );
+            return;
+        }
         getLogger().debug( "Expanding: " + getSourceFile() + " into " + getDestDirectory() );
-        org.apache.commons.compress.archivers.zip.ZipFile zf = null;
-        InputStream in = null;
+        SharedZipFile sharedZipFile = null;
+        EntryExtractor extractor = null;
         try
         {
-            zf = new org.apache.commons.compress.archivers.zip.ZipFile( getSourceFile(), encoding, true );
+            sharedZipFile = ArchiveDirectoryCache.open( getSourceFile(), encoding );
+            final ZipFile zf = sharedZipFile.getZipFile();
+            extractor = new EntryExtractor( zf, getDestDirectory() );
             final Enumeration e = zf.getEntriesInPhysicalOrder();
             while ( e.hasMoreElements() )
             {
@@ -173,31 +265,71 @@ protected void execute()
                 final ZipEntryFileInfo fileInfo = new ZipEntryFileInfo( zf, ze );
                 if ( isSelected( fileInfo.getName(), fileInfo ) )
                 {
-                    in = zf.getInputStream( ze );
+                    extractor.extract( ze, fileInfo.getName() );
+                }
+            }
+
+            extractor.finish();
+            extractor = null;
 
-                    extractFileIfIncluded( getSourceFile(), getDestDirectory(), in, fileInfo.getName(),
-                                           new Date( ze.getTime() ), ze.isDirectory(),
-                                           ze.getUnixMode() != 0 ? ze.getUnixMode() : null,
-                                           resolveSymlink( zf, ze ), getFileMappers() );
+            sharedZipFile.close();
+            sharedZipFile = null;
 
-                    in.close();
-                    in = null;
+            getLogger().debug( "expand complete" );
+        }
+        catch ( final IOException ioe )
+        {
+            throw new ArchiverException( "Error while expanding " + getSourceFile().getAbsolutePath(), ioe );
+        }
+        finally
+        {
+            if ( extractor != null )
+            {
+                extractor.abort();
+            }
+            IOUtils.closeQuietly( sharedZipFile );
+        }
+    }
+
+    private void execute( final InputStream in, final File outputDirectory )
+        throws ArchiverException
+    {
+        getLogger().debug( "Expanding: stream into " + outputDirectory );
+        ZipArchiveInputStream zis = null;
+        try
+        {
+            // stored entries followed by a data descriptor are buffered until their size is known
+            zis = new ZipArchiveInputStream( new CloseShieldFilterInputStream( bufferedInputStream( in ) ), encoding,
+                                             true, true );
+            ZipArchiveEntry ze;
+            while ( ( ze = zis.getNextZipEntry() ) != null )
+            {
+                final ZipEntryFileInfo fileInfo = new ZipEntryFileInfo( null, ze );
+                if ( !isSelected( fileInfo.getName(), fileInfo ) )
+                {
+                    continue;
                 }
+                if ( !zis.canReadEntryData( ze ) )
+                {
+                    throw new ArchiverException( "Unable to expand " + ze.getName()
+                                                     + " from a stream, its compression method isn't supported." );
+                }
+                extractFileIfIncluded( null, outputDirectory, zis, fileInfo.getName(), new Date( ze.getTime() ),
+                                       ze.isDirectory(), null, null, getFileMappers() );
             }
 
-            zf.close();
-            zf = null;
+            zis.close();
+            zis = null;
 
             getLogger().debug( "expand complete" );
         }
         catch ( final IOException ioe )
         {
-            throw new ArchiverException( "Error while expanding " + getSourceFile().getAbsolutePath(), ioe );
+            throw new ArchiverException( "Error while expanding stream", ioe );
         }
         finally
         {
-            IOUtils.closeQuietly( in );
-            IOUtils.closeQuietly( zf );
+            IOUtils.closeQuietly( zis );
         }
     }
 
@@ -226,11 +358,13 @@ private void extractFileIfIncluded( final File sourceFile, final File destDirect
     protected void execute( final String path, final File outputDirectory )
         throws ArchiverException
     {
-        org.apache.commons.compress.archivers.zip.ZipFile zipFile = null;
-        InputStream in = null;
+        SharedZipFile sharedZipFile = null;
+        EntryExtractor extractor = null;
         try
         {
-            zipFile = new org.apache.commons.compress.archivers.zip.ZipFile( getSourceFile(), encoding, true );
+            sharedZipFile = ArchiveDirectoryCache.open( getSourceFile(), encoding );
+            final ZipFile zipFile = sharedZipFile.getZipFile();
+            extractor = new EntryExtractor( zipFile, outputDirectory );
 
             final Enumeration e = zipFile.getEntriesInPhysicalOrder();
 
@@ -245,30 +379,270 @@ protected void execute( final String path, final File outputDirectory )
 
                 if ( ze.getName().startsWith( path ) )
                 {
-                    in = zipFile.getInputStream( ze );
-
-                    extractFileIfIncluded( getSourceFile(), outputDirectory, in,
-                                           ze.getName(), new Date( ze.getTime() ), ze.isDirectory(),
-                                           ze.getUnixMode() != 0 ? ze.getUnixMode() : null,
-                                           resolveSymlink( zipFile, ze ), getFileMappers() );
-
-                    in.close();
-                    in = null;
+                    extractor.extract( ze, ze.getName() );
                 }
             }
 
-            zipFile.close();
-            zipFile = null;
+            extractor.finish();
+            extractor = null;
+
+            sharedZipFile.close();
+            sharedZipFile = null;
         }
         catch ( final IOException ioe )
         {
             throw new ArchiverException( "Error while expanding " + getSourceFile().getAbsolutePath(), ioe );
         }
         finally
+        {
+            if ( extractor != null )
+            {
+                extractor.abort();
+            }
+            IOUtils.closeQuietly( sharedZipFile );
+        }
+    }
+
+    private void extractEntry( final ZipFile zipFile, final FileChannel sourceChannel, final ZipArchiveEntry ze,
+                               final String name, final File outputDirectory, final String symlinkDestination )
+        throws IOException, ArchiverException
+    {
+        InputStream in = null;
+        try
+        {
+            in = zipFile.getInputStream( ze );
+            if ( ze.getMethod() == ZipEntry.STORED && ze.isStreamContiguous() && ze.getDataOffset() >= 0 )
+            {
+                in = new FileRegionInputStream( in, sourceChannel, ze.getDataOffset(), ze.getSize() );
+            }
+
+            extractFileIfIncluded( getSourceFile(), outputDirectory, in, name, new Date( ze.getTime() ),
+                                   ze.isDirectory(), ze.getUnixMode() != 0 ? ze.getUnixMode() : null,
+                                   symlinkDestination, getFileMappers() );
+
+            in.close();
+            in = null;
+        }
+        finally
         {
             IOUtils.closeQuietly( in );
-            IOUtils.closeQuietly( zipFile );
         }
     }
 
+    /**
+     * Extracts the entries of a single zip file, either on the calling thread or on an executor.
+     * <p>
+     * In parallel mode only regular files are extracted concurrently. Directories are created immediately on the
+     * calling thread, so the parents of all subsequent entries exist in archive order, and symbolic links are
+     * created in archive order after every file has been written, so no file is ever written through a link that
+     * the archive itself creates. Entries sharing a name are never written concurrently.</p>
+     */
+    private class EntryExtractor
+    {
+
+        private final ZipFile zipFile;
+
+        private final FileChannel sourceChannel;
+
+        private final File outputDirectory;
+
+        private final ExecutorService executor;
+
+        private final boolean ownsExecutor;
+
+        private final List<Future<Void>> pending = new ArrayList<Future<Void>>();
+
+        private final Set<String> scheduledNames = new HashSet<String>();
+
+        private final List<ZipArchiveEntry> symlinks = new ArrayList<ZipArchiveEntry>();
+
+        private final List<String> symlinkNames = new ArrayList<String>();
+
+        private int running;
+
+        private boolean aborted;
+
+        EntryExtractor( ZipFile zipFile, File outputDirectory )
+            throws IOException
+        {
+            this.zipFile = zipFile;
+            // positional reads of stored entries, shared by all the extraction threads
+            this.sourceChannel = FileChannel.open( getSourceFile().toPath(), StandardOpenOption.READ );
+            this.outputDirectory = outputDirectory;
+            if ( executorService != null )
+            {
+                executor = executorService;
+                ownsExecutor = false;
+            }
+            else if ( extractionThreads > 1 )
+            {
+                executor = DaemonThreadFactory.newFixedThreadPool( extractionThreads, "plexus-archiver-"
+                    + AbstractZipUnArchiver.this.getClass().getSimpleName() );
+                ownsExecutor = true;
+            }
+            else
+            {
+                executor = null;
+                ownsExecutor = false;
+            }
+        }
+
+        void extract( final ZipArchiveEntry ze, final String name )
+            throws IOException, ArchiverException
+        {
+            if ( executor == null || ze.isDirectory() )
+            {
+                extractEntry( zipFile, sourceChannel, ze, name, outputDirectory, resolveSymlink( zipFile, ze ) );
+            }
+            else if ( ze.isUnixSymlink() )
+            {
+                symlinks.add( ze );
+                symlinkNames.add( name );
+            }
+            else
+            {
+                if ( !scheduledNames.add( name ) )
+                {
+                    // a duplicate entry must overwrite the earlier one, never race with it
+                    awaitPending();
+                }
+                pending.add( executor.submit( new Callable<Void>()
+                {
+
+                    @Override
+                    public Void call()
+                        throws Exception
+                    {
+                        synchronized ( EntryExtractor.this )
+                        {
+                            if ( aborted )
+                            {
+                                return null;
+                            }
+                            running++;
+                        }
+                        try
+                        {
+                            extractEntry( zipFile, sourceChannel, ze, name, outputDirectory, null );
+                        }
+                        finally
+                        {
+                            synchronized ( EntryExtractor.this )
+                            {
+                                running--;
+                                EntryExtractor.this.notifyAll();
+                            }
+                        }
+                        return null;
+                    }
+
+                } ) );
+            }
+        }
+
+        /**
+         * Waits for the pending extractions and extracts the symbolic links. If this fails, the extraction is to be
+         * {@link #abort() aborted}.
+         */
+        void finish()
+            throws IOException, ArchiverException
+        {
+            awaitPending();
+            for ( int i = 0; i < symlinks.size(); i++ )
+            {
+                final ZipArchiveEntry ze = symlinks.get( i );
+                extractEntry( zipFile, sourceChannel, ze, symlinkNames.get( i ), outputDirectory,
+                              resolveSymlink( zipFile, ze ) );
+            }
+            shutdown();
+        }
+
+        /**
+         * Cancels the pending extractions and waits for those already running, so no file is written and the zip
+         * file is no longer read once the extraction failed.
+         */
+        void abort()
+        {
+            synchronized ( this )
+            {
+                aborted = true;
+            }
+            for ( Future<Void> future : pending )
+            {
+                // interrupting a read would close the channels of the zip file, which may be shared
+                future.cancel( false );
+            }
+            pending.clear();
+            try
+            {
+                synchronized ( this )
+                {
+                    while ( running > 0 )
+                    {
+                        wait();
+                    }
+                }
+                if ( ownsExecutor )
+                {
+                    executor.shutdownNow();
+                    executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                shutdown();
+            }
+        }
+
+        private void awaitPending()
+            throws IOException, ArchiverException
+        {
+            try
+            {
+                for ( Future<Void> future : pending )
+                {
+                    future.get();
+                }
+                pending.clear();
+                scheduledNames.clear();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new ArchiverException( "Interrupted while expanding " + getSourceFile().getAbsolutePath(), e );
+            }
+            catch ( ExecutionException e )
+            {
+                final Throwable cause = e.getCause();
+                if ( cause instanceof IOException )
+                {
+                    throw (IOException) cause;
+                }
+                if ( cause instanceof RuntimeException )
+                {
+                    throw (RuntimeException) cause;
+                }
+                if ( cause instanceof Error )
+                {
+                    throw (Error) cause;
+                }
+                throw new ArchiverException( "Error while expanding " + getSourceFile().getAbsolutePath(), cause );
+            }
+        }
+
+        private void shutdown()
+        {
+            if ( ownsExecutor )
+            {
+                executor.shutdown();
+            }
+            IOUtils.closeQuietly( sourceChannel );
+        }
+
+    }
+
 }
@@ -18,10 +18,18 @@
 package org.codehaus.plexus.archiver.zip;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
@@ -35,6 +43,9 @@
 import org.apache.commons.compress.parallel.InputStreamSupplier;
 import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
 import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+import org.codehaus.plexus.archiver.ArchiverMetrics;
+import org.codehaus.plexus.archiver.diags.ArchiverEvents;
+import org.codehaus.plexus.archiver.util.BoundedExecutorService;
 import org.codehaus.plexus.util.IOUtil;
 
 import static org.apache.commons.compress.archivers.zip.ZipArchiveEntryRequest.createZipArchiveEntryRequest;
@@ -54,8 +65,37 @@
 
     private final ParallelScatterZipCreator parallelScatterZipCreator;
 
+    private final ScatterGatherBackingStoreSupplier scatterSupplier;
+
+    /**
+     * The streams the entries are compressed into in parallel, one for each of the entries compressed at the same
+     * time, rather than one for each thread of a possibly shared executor.
+     */
+    private final List<ScatterZipOutputStream> scatterStreams = new ArrayList<ScatterZipOutputStream>();
+
+    private final Deque<ScatterZipOutputStream> idleScatterStreams = new ArrayDeque<ScatterZipOutputStream>();
+
+    private final List<RawEntry> rawEntries = new ArrayList<RawEntry>();
+
     private long zipCloseElapsed;
 
+    private volatile ArchiverMetrics metrics = ArchiverMetrics.NONE;
+
+    private static class RawEntry
+    {
+
+        private final ZipArchiveEntry zipArchiveEntry;
+
+        private final InputStreamSupplier rawSource;
+
+        RawEntry( ZipArchiveEntry zipArchiveEntry, InputStreamSupplier rawSource )
+        {
+            this.zipArchiveEntry = zipArchiveEntry;
+            this.rawSource = rawSource;
+        }
+
+    }
+
     private static class DeferredSupplier
         implements ScatterGatherBackingStoreSupplier
     {
@@ -75,6 +115,151 @@ public ScatterGatherBackingStore get()
 
     }
 
+    /**
+     * Reports the bytes the backing stores of the entries compressed didn't keep on the heap.
+     */
+    private class MeteringSupplier
+        implements ScatterGatherBackingStoreSupplier
+    {
+
+        private final ScatterGatherBackingStoreSupplier supplier;
+
+        MeteringSupplier( ScatterGatherBackingStoreSupplier supplier )
+        {
+            this.supplier = supplier;
+        }
+
+        public ScatterGatherBackingStore get()
+            throws IOException
+        {
+            final ScatterGatherBackingStore store = supplier.get();
+            return new ScatterGatherBackingStore()
+            {
+
+                @Override
+                public InputStream getInputStream()
+                    throws IOException
+                {
+                    return store.getInputStream();
+                }
+
+                @Override
+                public void writeOut( byte[] data, int offset, int length )
+                    throws IOException
+                {
+                    store.writeOut( data, offset, length );
+                }
+
+                @Override
+                public void closeForWriting()
+                    throws IOException
+                {
+                    store.closeForWriting();
+                    final long spilled = getSpilledBytes( store );
+                    if ( spilled > 0 )
+                    {
+                        metrics.bytesSpilled( spilled );
+                        ArchiverEvents.scatterSpill( spilled );
+                    }
+                }
+
+                @Override
+                public void close()
+                    throws IOException
+                {
+                    store.close();
+                }
+
+            };
+        }
+
+    }
+
+    /**
+     * Reports an entry once its contents have been read and compressed.
+     */
+    private class MeteringInputStream
+        extends FilterInputStream
+    {
+
+        private final String name;
+
+        private final long startNanos = System.nanoTime();
+
+        private final ArchiverEvents.Recording recording;
+
+        private long size;
+
+        private boolean closed;
+
+        MeteringInputStream( String name, InputStream in )
+        {
+            super( in );
+            this.name = name;
+            recording = ArchiverEvents.entryCompression( name );
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            final int b = super.read();
+            if ( b >= 0 )
+            {
+                size++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+            throws IOException
+        {
+            final int read = super.read( b, off, len );
+            if ( read > 0 )
+            {
+                size += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip( long n )
+            throws IOException
+        {
+            final long skipped = super.skip( n );
+            size += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            super.close();
+            if ( !closed )
+            {
+                closed = true;
+                metrics.entryProcessed( name, size, System.nanoTime() - startNanos );
+                recording.end( size );
+            }
+        }
+
+    }
+
+    private static long getSpilledBytes( ScatterGatherBackingStore store )
+    {
+        if ( store instanceof SpillingScatterOutputStream )
+        {
+            return ( (SpillingScatterOutputStream) store ).getSpilledBytes();
+        }
+        if ( store instanceof DeferredScatterOutputStream )
+        {
+            return ( (DeferredScatterOutputStream) store ).getSpilledBytes();
+        }
+        return 0;
+    }
+
     public static ScatterZipOutputStream createDeferred(
         ScatterGatherBackingStoreSupplier scatterGatherBackingStoreSupplier )
         throws IOException
@@ -120,16 +305,92 @@ public ConcurrentJarCreator( int nThreads ) throws IOException
      * @throws IOException
      */
     public ConcurrentJarCreator( boolean compressAddedZips, int nThreads ) throws IOException
+    {
+        this( compressAddedZips, null, nThreads, null );
+    }
+
+    /**
+     * Creates a new {@code ConcurrentJarCreator} instance compressing entries on the given executor.
+     * <p>
+     * The executor may be shared with other archivers, it isn't shut down once the archive is written.
+     * At most {@code nThreads} entries of this archive are compressed at the same time, see
+     * {@link BoundedExecutorService}, into as many scatter streams of the archive's own, which are released once the
+     * archive is written whatever the number of threads of the executor.</p>
+     *
+     * @param compressAddedZips Indicates if entries that are zip files should be compressed,
+     *                          see {@link #ConcurrentJarCreator(boolean, int)}
+     * @param executor The executor compressing the entries
+     * @param nThreads The maximum number of entries of this archive compressed at the same time
+     *
+     * @throws IOException
+     *
+     * @since 4.1.1
+     */
+    public ConcurrentJarCreator( boolean compressAddedZips, Executor executor, int nThreads ) throws IOException
+    {
+        this( compressAddedZips, executor, nThreads, null );
+    }
+
+    /**
+     * Creates a new {@code ConcurrentJarCreator} instance keeping compressed entries as told by a spill policy.
+     *
+     * @param compressAddedZips Indicates if entries that are zip files should be compressed,
+     *                          see {@link #ConcurrentJarCreator(boolean, int)}
+     * @param executor The executor compressing the entries, see
+     *                 {@link #ConcurrentJarCreator(boolean, Executor, int)}, or null for a thread pool of the
+     *                 archive's own
+     * @param nThreads The maximum number of entries of this archive compressed at the same time
+     * @param spillPolicy Where compressed entries are kept until they are written, or null to keep up to
+     *                    {@link ScatterSpillPolicy#DEFAULT_MEMORY_BUDGET} bytes divided evenly among the threads in
+     *                    memory and the rest in the default temporary directory
+     *
+     * @throws IOException
+     *
+     * @since 4.1.1
+     */
+    public ConcurrentJarCreator( boolean compressAddedZips, Executor executor, int nThreads,
+                                 ScatterSpillPolicy spillPolicy ) throws IOException
+    {
+        this( compressAddedZips,
+              executor != null
+                  ? new BoundedExecutorService( executor, nThreads )
+                  : Executors.newFixedThreadPool( nThreads ),
+              spillPolicy != null
+                  ? spillPolicy.newBackingStoreSupplier()
+                  : new DeferredSupplier( (int) ( ScatterSpillPolicy.DEFAULT_MEMORY_BUDGET / nThreads ) ) );
+    }
+
+    private ConcurrentJarCreator( boolean compressAddedZips, ExecutorService executorService,
+                                  ScatterGatherBackingStoreSupplier defaultSupplier )
+        throws IOException
     {
         this.compressAddedZips = compressAddedZips;
-        ScatterGatherBackingStoreSupplier defaultSupplier = new DeferredSupplier( 100000000 / nThreads );
-        directories = createDeferred( defaultSupplier );
-        manifest = createDeferred( defaultSupplier );
-        metaInfDir = createDeferred( defaultSupplier );
-        synchronousEntries = createDeferred( defaultSupplier );
-        parallelScatterZipCreator = new ParallelScatterZipCreator( Executors.newFixedThreadPool( nThreads ),
-                                                                   defaultSupplier );
+        final ScatterGatherBackingStoreSupplier supplier = new MeteringSupplier( defaultSupplier );
+        scatterSupplier = supplier;
+        directories = createDeferred( supplier );
+        manifest = createDeferred( supplier );
+        metaInfDir = createDeferred( supplier );
+        synchronousEntries = createDeferred( supplier );
+        // shut down by ParallelScatterZipCreator once the entries are written
+        parallelScatterZipCreator = new ParallelScatterZipCreator( executorService, supplier );
+    }
 
+    /**
+     * Sets the listener the entries, the compression queue, the spilled bytes and the phases of writing the archive
+     * are reported to.
+     *
+     * @param metrics the metrics, or null to report nothing
+     *
+     * @since 4.1.1
+     */
+    public void setMetrics( ArchiverMetrics metrics )
+    {
+        this.metrics = metrics != null ? metrics : ArchiverMetrics.NONE;
+    }
+
+    public ArchiverMetrics getMetrics()
+    {
+        return metrics;
     }
 
     /**
@@ -165,7 +426,7 @@ public void addArchiveEntry( final ZipArchiveEntry zipArchiveEntry, final InputS
         }
         else if ( "META-INF".equals( zipArchiveEntry.getName() ) || "META-INF/".equals( zipArchiveEntry.getName() ) )
         {
-            InputStream payload = source.get();
+            InputStream payload = meter( zipArchiveEntry, source ).get();
             if ( zipArchiveEntry.isDirectory() )
             {
                 zipArchiveEntry.setMethod( ZipEntry.STORED );
@@ -177,7 +438,7 @@ else if ( "META-INF".equals( zipArchiveEntry.getName() ) || "META-INF/".equals(
         }
         else if ( "META-INF/MANIFEST.MF".equals( zipArchiveEntry.getName() ) )
         {
-            InputStream payload = source.get();
+            InputStream payload = meter( zipArchiveEntry, source ).get();
             if ( zipArchiveEntry.isDirectory() )
             {
                 zipArchiveEntry.setMethod( ZipEntry.STORED );
@@ -189,14 +450,97 @@ else if ( "META-INF/MANIFEST.MF".equals( zipArchiveEntry.getName() ) )
         }
         else if ( addInParallel )
         {
-            parallelScatterZipCreator.addArchiveEntry( createEntrySupplier( zipArchiveEntry, source ) );
+            final ZipArchiveEntryRequestSupplier requestSupplier =
+                createEntrySupplier( zipArchiveEntry, meter( zipArchiveEntry, source ) );
+            // not ParallelScatterZipCreator.addArchiveEntry, its scatter streams stay in the threads of the executor
+            parallelScatterZipCreator.submit( new Callable<Object>()
+            {
+
+                @Override
+                public Object call()
+                    throws IOException
+                {
+                    final ScatterZipOutputStream scatterStream = acquireScatterStream();
+                    try
+                    {
+                        scatterStream.addArchiveEntry( requestSupplier.get() );
+                    }
+                    finally
+                    {
+                        releaseScatterStream( scatterStream );
+                    }
+                    return null;
+                }
+
+            } );
         }
         else
         {
-            synchronousEntries.addArchiveEntry( createEntry( zipArchiveEntry, source ) );
+            synchronousEntries.addArchiveEntry( createEntry( zipArchiveEntry, meter( zipArchiveEntry, source ) ) );
+        }
+    }
+
+    private ScatterZipOutputStream acquireScatterStream()
+        throws IOException
+    {
+        synchronized ( scatterStreams )
+        {
+            final ScatterZipOutputStream idle = idleScatterStreams.poll();
+            if ( idle != null )
+            {
+                return idle;
+            }
+            final ScatterZipOutputStream created = createDeferred( scatterSupplier );
+            scatterStreams.add( created );
+            return created;
+        }
+    }
+
+    private void releaseScatterStream( ScatterZipOutputStream scatterStream )
+    {
+        synchronized ( scatterStreams )
+        {
+            idleScatterStreams.push( scatterStream );
         }
     }
 
+    /**
+     * Adds an already compressed archive entry to this archive.
+     * <p>
+     * The data supplied by {@code rawSource} is copied verbatim, so the entry must carry the compression method,
+     * CRC, size and compressed size matching that data. The source is only opened when the archive is written,
+     * which happens on the thread calling {@link #writeTo(ZipArchiveOutputStream)}.</p>
+     * <p>
+     * This method is expected to be called from a single client thread</p>
+     *
+     * @param zipArchiveEntry The entry to add
+     * @param rawSource The supplier of the compressed entry data
+     */
+    public void addRawArchiveEntry( final ZipArchiveEntry zipArchiveEntry, final InputStreamSupplier rawSource )
+    {
+        if ( zipArchiveEntry.getMethod() == -1 || zipArchiveEntry.getCrc() == -1 || zipArchiveEntry.getSize() == -1
+                 || zipArchiveEntry.getCompressedSize() == -1 )
+        {
+            throw new IllegalArgumentException(
+                "Method, CRC and sizes must be set on the supplied zipArchiveEntry" );
+        }
+        rawEntries.add( new RawEntry( zipArchiveEntry, rawSource ) );
+    }
+
+    private InputStreamSupplier meter( final ZipArchiveEntry zipArchiveEntry, final InputStreamSupplier source )
+    {
+        return new InputStreamSupplier()
+        {
+
+            @Override
+            public InputStream get()
+            {
+                return new MeteringInputStream( zipArchiveEntry.getName(), source.get() );
+            }
+
+        };
+    }
+
     private InputStreamSupplier createInputStreamSupplier( final InputStream payload )
     {
         return new InputStreamSupplier()
@@ -214,20 +558,69 @@ public InputStream get()
     public void writeTo( ZipArchiveOutputStream targetStream ) throws IOException, ExecutionException,
                                                                       InterruptedException
     {
+        final long gatherStart = System.nanoTime();
         metaInfDir.writeTo( targetStream );
         manifest.writeTo( targetStream );
         directories.writeTo( targetStream );
         synchronousEntries.writeTo( targetStream );
+        writeRawEntriesTo( targetStream );
+        // waits for the entries compressed in parallel
         parallelScatterZipCreator.writeTo( targetStream );
-        long startAt = System.currentTimeMillis();
+        writeScatterStreamsTo( targetStream );
+        final long closeStart = System.nanoTime();
+        metrics.phaseCompleted( ArchiverMetrics.Phase.GATHER, closeStart - gatherStart );
         targetStream.close();
-        zipCloseElapsed = System.currentTimeMillis() - startAt;
+        final long closeElapsed = System.nanoTime() - closeStart;
+        metrics.phaseCompleted( ArchiverMetrics.Phase.CLOSE, closeElapsed );
+        zipCloseElapsed = closeElapsed / 1000000;
         metaInfDir.close();
         manifest.close();
         directories.close();
         synchronousEntries.close();
     }
 
+    private void writeScatterStreamsTo( ZipArchiveOutputStream targetStream ) throws IOException
+    {
+        synchronized ( scatterStreams )
+        {
+            try
+            {
+                for ( ScatterZipOutputStream scatterStream : scatterStreams )
+                {
+                    scatterStream.writeTo( targetStream );
+                }
+            }
+            finally
+            {
+                for ( ScatterZipOutputStream scatterStream : scatterStreams )
+                {
+                    scatterStream.close();
+                }
+                scatterStreams.clear();
+                idleScatterStreams.clear();
+            }
+        }
+    }
+
+    private void writeRawEntriesTo( ZipArchiveOutputStream targetStream ) throws IOException
+    {
+        for ( RawEntry rawEntry : rawEntries )
+        {
+            final long startNanos = System.nanoTime();
+            final InputStream payload = rawEntry.rawSource.get();
+            try
+            {
+                targetStream.addRawArchiveEntry( rawEntry.zipArchiveEntry, payload );
+            }
+            finally
+            {
+                IOUtil.close( payload );
+            }
+            metrics.entryProcessed( rawEntry.zipArchiveEntry.getName(), rawEntry.zipArchiveEntry.getSize(),
+                                    System.nanoTime() - startNanos );
+        }
+    }
+
     /**
      * Returns a message describing the overall statistics of the compression run
      *
@@ -241,13 +634,14 @@ public String getStatisticsMessage()
     private ZipArchiveEntryRequestSupplier createEntrySupplier( final ZipArchiveEntry zipArchiveEntry,
                                                                 final InputStreamSupplier inputStreamSupplier )
     {
-
+        final long submittedAt = System.nanoTime();
         return new ZipArchiveEntryRequestSupplier()
         {
 
             @Override
             public ZipArchiveEntryRequest get()
             {
+                metrics.queueWaited( System.nanoTime() - submittedAt );
                 try
                 {
                     return createEntry( zipArchiveEntry, inputStreamSupplier );
@@ -50,6 +50,15 @@ public void closeForWriting() throws IOException
         dfos.close();
     }
 
+    /**
+     * @return the number of bytes written to a temporary file, once closed for writing
+     */
+    long getSpilledBytes()
+    {
+        File file = dfos.getFile();
+        return file != null ? file.length() : 0;
+    }
+
     @Override
     public void close() throws IOException
     {
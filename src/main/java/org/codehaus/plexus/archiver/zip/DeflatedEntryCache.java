@@ -0,0 +1,376 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codehaus.plexus.archiver.util.BufferPool;
+import org.codehaus.plexus.archiver.util.CacheFiles;
+import org.codehaus.plexus.archiver.util.Streams;
+import org.codehaus.plexus.util.IOUtil;
+import static org.codehaus.plexus.archiver.util.Streams.bufferedOutputStream;
+import static org.codehaus.plexus.archiver.util.Streams.fileOutputStream;
+
+/**
+ * An on-disk cache of compressed zip entry data, shared by builds.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of their uncompressed contents and the compression level, and hold the
+ * compressed data with its CRC and size, so an archiver can add unchanged contents as is instead of compressing
+ * them again.</p>
+ * <p>
+ * Several JVMs may use the same directory. Entries are written to temporary files first and moved into place
+ * atomically, so an entry is either complete or absent. Using an entry refreshes its modification time, and
+ * {@link #trim()} evicts the least recently used entries until the cache fits its maximum size. Entries used
+ * within the last hour are never evicted, as another build may be about to copy them.</p>
+ *
+ * @since 4.1.1
+ */
+public class DeflatedEntryCache
+{
+
+    /**
+     * The maximum size of the cache used by default, 512 MB.
+     */
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+    private static final int MAGIC = 0x50444543;
+
+    private static final int HEADER_SIZE = 4 + 8 + 8;
+
+    private static final String SUFFIX = ".deflated";
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong stores = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param directory the directory holding the cache, created as needed
+     */
+    public DeflatedEntryCache( File directory )
+    {
+        this( directory, DEFAULT_MAX_SIZE );
+    }
+
+    /**
+     * @param directory the directory holding the cache, created as needed
+     * @param maxSize the number of bytes {@link #trim()} reduces the cache to
+     */
+    public DeflatedEntryCache( File directory, long maxSize )
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Computes the digest entries are keyed by.
+     *
+     * @param in the uncompressed contents, read to the end but not closed
+     *
+     * @return the hexadecimal SHA-256 digest of the contents
+     *
+     * @throws IOException if the contents can't be read
+     */
+    public String digest( InputStream in )
+        throws IOException
+    {
+        final MessageDigest digest = CacheFiles.newDigest();
+        final BufferPool pool = BufferPool.getDefault();
+        final byte[] buffer = pool.acquire();
+        try
+        {
+            int count;
+            while ( ( count = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, count );
+            }
+        }
+        finally
+        {
+            pool.release( buffer );
+        }
+        return CacheFiles.toHex( digest.digest() );
+    }
+
+    /**
+     * Looks up compressed data.
+     *
+     * @param digest the digest of the uncompressed contents, see {@link #digest(InputStream)}
+     * @param level the compression level
+     *
+     * @return the cached entry, or null if there is none
+     */
+    public Entry get( String digest, int level )
+    {
+        final File file = getFile( digest, level );
+        final DataInputStream in;
+        try
+        {
+            in = new DataInputStream( new FileInputStream( file ) );
+        }
+        catch ( FileNotFoundException e )
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        try
+        {
+            if ( in.readInt() != MAGIC )
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+            final long crc = in.readLong();
+            final long size = in.readLong();
+            final long compressedSize = file.length() - HEADER_SIZE;
+            // the modification time tells the least recently used entries
+            file.setLastModified( System.currentTimeMillis() );
+            hits.incrementAndGet();
+            return new Entry( file, crc, size, compressedSize );
+        }
+        catch ( IOException e )
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * Stores compressed data, unless it is cached already.
+     *
+     * @param digest the digest of the uncompressed contents, see {@link #digest(InputStream)}
+     * @param level the compression level
+     * @param crc the CRC of the uncompressed contents
+     * @param size the size of the uncompressed contents
+     * @param raw the compressed data, read to the end but not closed
+     *
+     * @throws IOException if the entry can't be written
+     */
+    public void put( String digest, int level, long crc, long size, InputStream raw )
+        throws IOException
+    {
+        final File file = getFile( digest, level );
+        if ( file.exists() )
+        {
+            return;
+        }
+        final File parent = file.getParentFile();
+        parent.mkdirs();
+        final File temp = File.createTempFile( digest, ".tmp", parent );
+        try
+        {
+            final DataOutputStream out = new DataOutputStream( bufferedOutputStream( fileOutputStream( temp ) ) );
+            try
+            {
+                out.writeInt( MAGIC );
+                out.writeLong( crc );
+                out.writeLong( size );
+                Streams.copy( raw, out );
+                out.close();
+            }
+            finally
+            {
+                IOUtil.close( out );
+            }
+            move( temp, file );
+            stores.incrementAndGet();
+        }
+        finally
+        {
+            temp.delete();
+        }
+    }
+
+    private static void move( File source, File target )
+        throws IOException
+    {
+        try
+        {
+            Files.move( source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            try
+            {
+                Files.move( source.toPath(), target.toPath() );
+            }
+            catch ( FileAlreadyExistsException ex )
+            {
+                // stored by another build meanwhile
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache fits its maximum size, as well as temporary files
+     * left behind by builds that didn't complete.
+     *
+     * @throws IOException if the cache directory can't be listed
+     */
+    public void trim()
+        throws IOException
+    {
+        final File[] subdirectories = directory.listFiles();
+        if ( subdirectories == null )
+        {
+            return;
+        }
+        final long graceLimit = System.currentTimeMillis() - CacheFiles.EVICTION_GRACE_PERIOD;
+        final List<File> files = new ArrayList<File>();
+        for ( File subdirectory : subdirectories )
+        {
+            final File[] children = subdirectory.listFiles();
+            if ( children == null )
+            {
+                continue;
+            }
+            for ( File child : children )
+            {
+                if ( child.getName().endsWith( SUFFIX ) )
+                {
+                    files.add( child );
+                }
+                else if ( child.lastModified() < graceLimit )
+                {
+                    child.delete();
+                }
+            }
+        }
+        evictions.addAndGet( CacheFiles.evictLeastRecentlyUsed( files, maxSize ) );
+    }
+
+    private File getFile( String digest, int level )
+    {
+        return new File( new File( directory, digest.substring( 0, 2 ) ), digest + "-" + level + SUFFIX );
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getStores()
+    {
+        return stores.get();
+    }
+
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    public String getStatisticsMessage()
+    {
+        return "Deflated entry cache: " + hits + " hits, " + misses + " misses, " + stores + " stored, " + evictions
+                   + " evicted";
+    }
+
+    /**
+     * Compressed data found in the cache.
+     */
+    public static class Entry
+    {
+
+        private final File file;
+
+        private final long crc;
+
+        private final long size;
+
+        private final long compressedSize;
+
+        Entry( File file, long crc, long size, long compressedSize )
+        {
+            this.file = file;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+        }
+
+        public long getCrc()
+        {
+            return crc;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public long getCompressedSize()
+        {
+            return compressedSize;
+        }
+
+        /**
+         * @return the compressed data
+         *
+         * @throws IOException if the entry has been evicted meanwhile
+         */
+        public InputStream getRawInputStream()
+            throws IOException
+        {
+            final InputStream in = new FileInputStream( file );
+            if ( in.skip( HEADER_SIZE ) != HEADER_SIZE )
+            {
+                in.close();
+                throw new IOException( "Truncated cache entry " + file );
+            }
+            return in;
+        }
+
+    }
+
+}
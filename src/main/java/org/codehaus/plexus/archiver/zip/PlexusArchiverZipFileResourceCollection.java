@@ -8,6 +8,8 @@
 import java.util.Iterator;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.codehaus.plexus.archiver.util.ArchiveDirectoryCache;
+import org.codehaus.plexus.archiver.util.ArchiveDirectoryCache.SharedZipFile;
 import org.codehaus.plexus.components.io.resources.AbstractPlexusIoArchiveResourceCollection;
 import org.codehaus.plexus.components.io.resources.EncodingSupported;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
@@ -32,8 +34,7 @@ protected Iterator<PlexusIoResource> getEntries()
         {
             throw new IOException( "The tar archive file has not been set." );
         }
-        final ZipFile zipFile = new ZipFile( f, charset != null ? charset.name() : "UTF8" );
-        return new CloseableIterator( zipFile );
+        return new CloseableIterator( ArchiveDirectoryCache.open( f, charset != null ? charset.name() : "UTF8" ) );
     }
 
     @Override
@@ -49,12 +50,15 @@ public boolean isConcurrentAccessSupported()
 
         final Enumeration en;
 
+        private final SharedZipFile sharedZipFile;
+
         private final ZipFile zipFile;
 
-        public CloseableIterator( ZipFile zipFile )
+        public CloseableIterator( SharedZipFile sharedZipFile )
         {
+            this.sharedZipFile = sharedZipFile;
+            this.zipFile = sharedZipFile.getZipFile();
             this.en = zipFile.getEntriesInPhysicalOrder();
-            this.zipFile = zipFile;
         }
 
         @Override
@@ -83,7 +87,7 @@ public void remove()
         public void close()
             throws IOException
         {
-            zipFile.close();
+            sharedZipFile.close();
         }
 
     }
@@ -19,20 +19,28 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.charset.Charset;
 import java.util.Enumeration;
 import java.util.Iterator;
-import java.util.jar.JarFile;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.codehaus.plexus.archiver.util.ArchiveDirectoryCache;
+import org.codehaus.plexus.archiver.util.ArchiveDirectoryCache.SharedZipFile;
 import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
 import org.codehaus.plexus.components.io.resources.AbstractPlexusIoArchiveResourceCollection;
 import org.codehaus.plexus.components.io.resources.EncodingSupported;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
 import org.codehaus.plexus.components.io.resources.PlexusIoURLResource;
 
+/**
+ * The entries of a zip file, all read from a single {@link ZipFile}.
+ * <p>
+ * The contents of several entries may be read concurrently. The URLs of the entries are only created when asked
+ * for, and the signatures of signed jars aren't verified.</p>
+ */
 public class PlexusIoZipFileResourceCollection
     extends AbstractPlexusIoArchiveResourceCollection
     implements EncodingSupported
@@ -58,8 +66,8 @@ public PlexusIoZipFileResourceCollection()
     @Override
     public boolean isConcurrentAccessSupported()
     {
-        // Maybe we could support concurrent some time in the future
-        return false;
+        // the zip file synchronizes the reads of its entries
+        return true;
     }
 
     @Override
@@ -71,25 +79,11 @@ protected Iterator<PlexusIoResource> getEntries()
         {
             throw new IOException( "The zip file has not been set." );
         }
-        final URLClassLoader urlClassLoader = new URLClassLoader( new URL[]
-        {
-            f.toURI().toURL()
-        }, null )
-        {
-
-            @Override
-            public URL getResource( String name )
-            {
-                return findResource( name );
-            }
-
-        };
 
         final URL url = new URL( "jar:" + f.toURI().toURL() + "!/" );
-        final JarFile jarFile = new JarFile( f );
-        final ZipFile zipFile = new ZipFile( f, charset != null ? charset.name() : "UTF8" );
-        final Enumeration<ZipArchiveEntry> en = zipFile.getEntriesInPhysicalOrder();
-        return new ZipFileResourceIterator( en, url, jarFile, zipFile, urlClassLoader );
+        final SharedZipFile zipFile = ArchiveDirectoryCache.open( f, charset != null ? charset.name() : "UTF8" );
+        final Enumeration<ZipArchiveEntry> en = zipFile.getZipFile().getEntriesInPhysicalOrder();
+        return new ZipFileResourceIterator( en, url, zipFile );
     }
 
     private static class ZipFileResourceIterator
@@ -98,52 +92,57 @@ public URL getResource( String name )
 
         private class ZipFileResource
             extends PlexusIoURLResource
+            implements ZipEntrySource
         {
-            private final JarFile jarFile;
 
-            private ZipFileResource( JarFile jarFile, ZipArchiveEntry entry )
+            private final ZipArchiveEntry entry;
+
+            private ZipFileResource( ZipArchiveEntry entry )
             {
                 super( entry.getName(),
                        entry.getTime() == -1 ? PlexusIoResource.UNKNOWN_MODIFICATION_DATE : entry.getTime(),
                        entry.isDirectory() ? PlexusIoResource.UNKNOWN_RESOURCE_SIZE : entry.getSize(),
                        !entry.isDirectory(), entry.isDirectory(), true );
 
-                this.jarFile = jarFile;
+                this.entry = entry;
+            }
+
+            @Override
+            public InputStream getContents()
+                throws IOException
+            {
+                // Reads the entry from the zip file the collection has open rather than through the URL, which
+                // would open the file again for every entry. It also tells the zip archiver the compressed
+                // data of the entry may be copied as is.
+                return new ZipEntryInputStream( zipFile, entry );
+            }
+
+            @Override
+            public ZipArchiveEntry getZipArchiveEntry()
+            {
+                return entry;
             }
 
             @Override
-            public InputStream getContents() throws IOException {
-                // Uses the JarFile to get the input stream for the entry.
-                // The super method will do the same, why overriding it?
-                // But it will create new JarFile for every entry
-                // and that could be very expensive in some cases (when the JAR is signed).
-                // Enabling the URLConnection cache would solve the problem
-                // but the cache is global and shared during the build so
-                // if the AJR file changed during the causes another problem
-                // (see plexus-io#2).
-                // Using local JarFile instance solves the two issues -
-                // JarFile is initialized once so there is no performance penalty
-                // and it is local so if the file changed during the build
-                // would not be a problem.
-                // And we know the URL returned by getURL is part of the JAR
-                // because that is how we constructed it.
-                return jarFile.getInputStream( jarFile.getEntry( getName() ) );
+            public InputStream getRawInputStream()
+            {
+                return zipFile.getRawInputStream( entry );
             }
 
             @Override
             public URL getURL()
                 throws IOException
             {
-                String spec = getName();
-                if ( spec.startsWith( "/" ) )
+                // Names starting with a slash (PLXCOMP-170) resolve below the root too
+                final String spec = "./" + getName();
+                try
                 {
-                    // Code path for PLXCOMP-170. Note that urlClassloader does not seem to produce correct
-                    // urls for this. Which again means files loaded via this path cannot have file names
-                    // requiring url encoding
-                    spec = "./" + spec;
-                    return new URL( url, spec );
+                    return new URL( url, new URI( null, null, spec, null ).getRawPath() );
+                }
+                catch ( URISyntaxException e )
+                {
+                    throw new IOException( "Invalid entry name " + getName(), e );
                 }
-                return urlClassLoader.getResource( spec );
             }
 
         }
@@ -155,9 +154,9 @@ public URL getURL()
 
             private final ZipArchiveEntry entry;
 
-            private ZipFileSymlinkResource( JarFile jarFile, ZipArchiveEntry entry )
+            private ZipFileSymlinkResource( ZipArchiveEntry entry )
             {
-                super( jarFile, entry );
+                super( entry );
 
                 this.entry = entry;
             }
@@ -181,20 +180,16 @@ public boolean isSymbolicLink()
 
         private final URL url;
 
-        private final JarFile jarFile;
+        private final SharedZipFile sharedZipFile;
 
         private final ZipFile zipFile;
 
-        private final URLClassLoader urlClassLoader;
-
-        public ZipFileResourceIterator( Enumeration<ZipArchiveEntry> en, URL url, JarFile jarFile, ZipFile zipFile,
-                                        URLClassLoader urlClassLoader )
+        public ZipFileResourceIterator( Enumeration<ZipArchiveEntry> en, URL url, SharedZipFile sharedZipFile )
         {
             this.en = en;
             this.url = url;
-            this.jarFile = jarFile;
-            this.zipFile = zipFile;
-            this.urlClassLoader = urlClassLoader;
+            this.sharedZipFile = sharedZipFile;
+            this.zipFile = sharedZipFile.getZipFile();
         }
 
         @Override
@@ -208,8 +203,8 @@ public PlexusIoResource next()
         {
             final ZipArchiveEntry entry = en.nextElement();
             return entry.isUnixSymlink()
-                       ? new ZipFileSymlinkResource( jarFile, entry )
-                       : new ZipFileResource( jarFile, entry );
+                       ? new ZipFileSymlinkResource( entry )
+                       : new ZipFileResource( entry );
 
         }
 
@@ -223,21 +218,7 @@ public void remove()
         public void close()
             throws IOException
         {
-            try
-            {
-                urlClassLoader.close();
-            }
-            finally
-            {
-                try
-                {
-                    zipFile.close();
-                } finally
-                {
-                    jarFile.close();
-                }
-
-            }
+            sharedZipFile.close();
         }
 
     }
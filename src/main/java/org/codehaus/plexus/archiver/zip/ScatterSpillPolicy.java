@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+
+/**
+ * Decides where {@link ConcurrentJarCreator} keeps the entries it has compressed until they are written to the
+ * archive.
+ * <p>
+ * The compressed entries are kept on the heap as long as the memory budget allows. The budget is shared by all the
+ * scatter streams of an archive, so a thread compressing large entries may use what the others leave. Once the
+ * budget is exhausted, streams spill the rest of their data to the configured {@link Store}.</p>
+ *
+ * @since 4.1.1
+ */
+public class ScatterSpillPolicy
+{
+
+    /**
+     * Where data beyond the memory budget is kept.
+     */
+    public enum Store
+    {
+
+        /**
+         * Temporary files, read back sequentially.
+         */
+        TEMP_FILE,
+
+        /**
+         * Temporary files, read back by mapping them into memory.
+         */
+        MAPPED_FILE,
+
+        /**
+         * Direct buffers outside the heap, which are limited by the direct memory limit rather than the memory
+         * budget. Data beyond both goes to temporary files.
+         */
+        DIRECT_MEMORY
+
+    }
+
+    /**
+     * The memory budget used by default, which is what {@link ConcurrentJarCreator} kept on the heap before
+     * spilling data to temporary files.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 100000000;
+
+    /**
+     * The direct memory limit used by default.
+     */
+    public static final long DEFAULT_DIRECT_MEMORY_LIMIT = 100000000;
+
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+    private long directMemoryLimit = DEFAULT_DIRECT_MEMORY_LIMIT;
+
+    private File spillDirectory;
+
+    private Store store = Store.TEMP_FILE;
+
+    /**
+     * @return a policy keeping all the compressed data on the heap
+     */
+    public static ScatterSpillPolicy inMemory()
+    {
+        final ScatterSpillPolicy policy = new ScatterSpillPolicy();
+        policy.setMemoryBudget( Long.MAX_VALUE );
+        return policy;
+    }
+
+    public long getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    /**
+     * @param memoryBudget the number of bytes all the scatter streams of an archive keep on the heap together
+     */
+    public void setMemoryBudget( long memoryBudget )
+    {
+        if ( memoryBudget < 0 )
+        {
+            throw new IllegalArgumentException( "Memory budget must not be negative: " + memoryBudget );
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    public long getDirectMemoryLimit()
+    {
+        return directMemoryLimit;
+    }
+
+    /**
+     * @param directMemoryLimit the number of bytes all the scatter streams of an archive keep in direct buffers
+     * together, when spilling to {@link Store#DIRECT_MEMORY}
+     */
+    public void setDirectMemoryLimit( long directMemoryLimit )
+    {
+        if ( directMemoryLimit < 0 )
+        {
+            throw new IllegalArgumentException( "Direct memory limit must not be negative: " + directMemoryLimit );
+        }
+        this.directMemoryLimit = directMemoryLimit;
+    }
+
+    public File getSpillDirectory()
+    {
+        return spillDirectory;
+    }
+
+    /**
+     * @param spillDirectory the directory temporary files are created in, or null for the default temporary
+     * directory
+     */
+    public void setSpillDirectory( File spillDirectory )
+    {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public Store getStore()
+    {
+        return store;
+    }
+
+    /**
+     * @param store where data beyond the memory budget is kept
+     */
+    public void setStore( Store store )
+    {
+        if ( store == null )
+        {
+            throw new IllegalArgumentException( "Store must not be null" );
+        }
+        this.store = store;
+    }
+
+    /**
+     * Creates the supplier of the backing stores of a single archive, which share a fresh memory budget and direct
+     * memory limit.
+     */
+    ScatterGatherBackingStoreSupplier newBackingStoreSupplier()
+    {
+        final AtomicLong budget = new AtomicLong( memoryBudget );
+        final AtomicLong directBudget = new AtomicLong( directMemoryLimit );
+        final File directory = spillDirectory;
+        final Store spillStore = store;
+        return new ScatterGatherBackingStoreSupplier()
+        {
+
+            @Override
+            public ScatterGatherBackingStore get()
+                throws IOException
+            {
+                return new SpillingScatterOutputStream( budget, directBudget, directory, spillStore );
+            }
+
+        };
+    }
+
+}
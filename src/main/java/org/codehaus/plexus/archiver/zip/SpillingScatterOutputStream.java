@@ -0,0 +1,300 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+
+/**
+ * A scatter backing store keeping data on the heap while a shared memory budget allows, and spilling the rest to
+ * the store chosen by a {@link ScatterSpillPolicy}. Direct buffers are limited by a shared budget of their own, and
+ * data beyond it goes to a temporary file.
+ *
+ * @since 4.1.1
+ */
+class SpillingScatterOutputStream
+    implements ScatterGatherBackingStore
+{
+
+    private static final int HEAP_CHUNK_SIZE = 64 * 1024;
+
+    private static final int DIRECT_CHUNK_SIZE = 1024 * 1024;
+
+    private final AtomicLong budget;
+
+    private final AtomicLong directBudget;
+
+    private final File directory;
+
+    private final ScatterSpillPolicy.Store store;
+
+    private final List<ByteBuffer> heapChunks = new ArrayList<ByteBuffer>();
+
+    private final List<ByteBuffer> directChunks = new ArrayList<ByteBuffer>();
+
+    private long reserved;
+
+    private long directReserved;
+
+    private boolean spilled;
+
+    private boolean directSpilled;
+
+    private File spillFile;
+
+    private OutputStream spillOut;
+
+    private long spilledBytes;
+
+    SpillingScatterOutputStream( AtomicLong budget, AtomicLong directBudget, File directory,
+                                 ScatterSpillPolicy.Store store )
+    {
+        this.budget = budget;
+        this.directBudget = directBudget;
+        this.directory = directory;
+        this.store = store;
+    }
+
+    @Override
+    public void writeOut( byte[] data, int offset, int length )
+        throws IOException
+    {
+        while ( length > 0 && !spilled )
+        {
+            ByteBuffer chunk = heapChunks.isEmpty() ? null : heapChunks.get( heapChunks.size() - 1 );
+            if ( chunk == null || !chunk.hasRemaining() )
+            {
+                if ( !reserve( budget, HEAP_CHUNK_SIZE ) )
+                {
+                    spilled = true;
+                    break;
+                }
+                reserved += HEAP_CHUNK_SIZE;
+                chunk = ByteBuffer.allocate( HEAP_CHUNK_SIZE );
+                heapChunks.add( chunk );
+            }
+            final int n = Math.min( length, chunk.remaining() );
+            chunk.put( data, offset, n );
+            offset += n;
+            length -= n;
+        }
+        if ( length > 0 )
+        {
+            spill( data, offset, length );
+        }
+    }
+
+    private static boolean reserve( AtomicLong budget, int size )
+    {
+        long available;
+        do
+        {
+            available = budget.get();
+            if ( available < size )
+            {
+                return false;
+            }
+        }
+        while ( !budget.compareAndSet( available, available - size ) );
+        return true;
+    }
+
+    private void spill( byte[] data, int offset, int length )
+        throws IOException
+    {
+        spilledBytes += length;
+        if ( store == ScatterSpillPolicy.Store.DIRECT_MEMORY )
+        {
+            while ( length > 0 && !directSpilled )
+            {
+                ByteBuffer chunk = directChunks.isEmpty() ? null : directChunks.get( directChunks.size() - 1 );
+                if ( chunk == null || !chunk.hasRemaining() )
+                {
+                    if ( !reserve( directBudget, DIRECT_CHUNK_SIZE ) )
+                    {
+                        directSpilled = true;
+                        break;
+                    }
+                    directReserved += DIRECT_CHUNK_SIZE;
+                    chunk = ByteBuffer.allocateDirect( DIRECT_CHUNK_SIZE );
+                    directChunks.add( chunk );
+                }
+                final int n = Math.min( length, chunk.remaining() );
+                chunk.put( data, offset, n );
+                offset += n;
+                length -= n;
+            }
+            if ( length == 0 )
+            {
+                return;
+            }
+        }
+        if ( spillOut == null )
+        {
+            spillFile = File.createTempFile( "scatterzipfragment", "zip", directory );
+            spillOut = new BufferedOutputStream( new FileOutputStream( spillFile ), HEAP_CHUNK_SIZE );
+        }
+        spillOut.write( data, offset, length );
+    }
+
+    /**
+     * @return the number of bytes which didn't fit into the memory budget
+     */
+    long getSpilledBytes()
+    {
+        return spilledBytes;
+    }
+
+    @Override
+    public void closeForWriting()
+        throws IOException
+    {
+        if ( spillOut != null )
+        {
+            spillOut.close();
+        }
+    }
+
+    @Override
+    public InputStream getInputStream()
+        throws IOException
+    {
+        final List<InputStream> parts = new ArrayList<InputStream>();
+        parts.add( new ByteBuffersInputStream( heapChunks ) );
+        if ( !directChunks.isEmpty() )
+        {
+            parts.add( new ByteBuffersInputStream( directChunks ) );
+        }
+        if ( spillFile != null )
+        {
+            parts.add( store == ScatterSpillPolicy.Store.MAPPED_FILE
+                           ? new ByteBuffersInputStream( map( spillFile ) )
+                           : new FileInputStream( spillFile ) );
+        }
+        return parts.size() == 1 ? parts.get( 0 ) : new SequenceInputStream( Collections.enumeration( parts ) );
+    }
+
+    private static List<ByteBuffer> map( File file )
+        throws IOException
+    {
+        final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        final RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            final long size = channel.size();
+            for ( long position = 0; position < size; position += Integer.MAX_VALUE )
+            {
+                final ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, position,
+                                                       Math.min( Integer.MAX_VALUE, size - position ) );
+                // positioned at the end, like the chunks that were written to
+                buffer.position( buffer.limit() );
+                buffers.add( buffer );
+            }
+        }
+        finally
+        {
+            // mappings stay valid once the channel is closed
+            raf.close();
+        }
+        return buffers;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        heapChunks.clear();
+        directChunks.clear();
+        budget.addAndGet( reserved );
+        reserved = 0;
+        directBudget.addAndGet( directReserved );
+        directReserved = 0;
+        if ( spillFile != null && !spillFile.delete() )
+        {
+            // still mapped on platforms which can't delete such files, until the mappings are garbage collected
+            spillFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * Reads the bytes written to a list of buffers, up to their positions.
+     */
+    private static class ByteBuffersInputStream
+        extends InputStream
+    {
+
+        private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+
+        private int index;
+
+        ByteBuffersInputStream( List<ByteBuffer> written )
+        {
+            for ( ByteBuffer buffer : written )
+            {
+                final ByteBuffer readable = buffer.duplicate();
+                readable.flip();
+                buffers.add( readable );
+            }
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            final byte[] b = new byte[ 1 ];
+            return read( b, 0, 1 ) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+            throws IOException
+        {
+            if ( len == 0 )
+            {
+                return 0;
+            }
+            while ( index < buffers.size() && !buffers.get( index ).hasRemaining() )
+            {
+                index++;
+            }
+            if ( index == buffers.size() )
+            {
+                return -1;
+            }
+            final ByteBuffer buffer = buffers.get( index );
+            final int n = Math.min( len, buffer.remaining() );
+            buffer.get( b, off, n );
+            return n;
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+/**
+ * The uncompressed contents of a zip file entry.
+ * <p>
+ * Resources backed by a zip file entry return this stream as long as their contents are not transformed.
+ * This allows {@link AbstractZipArchiver} to recognize such contents and copy the compressed data of the entry
+ * instead of inflating and deflating it again.</p>
+ *
+ * @since 4.1.1
+ */
+class ZipEntryInputStream
+    extends FilterInputStream
+    implements ZipEntrySource
+{
+
+    private final ZipFile zipFile;
+
+    private final ZipArchiveEntry entry;
+
+    ZipEntryInputStream( ZipFile zipFile, ZipArchiveEntry entry )
+        throws IOException
+    {
+        this( zipFile.getInputStream( entry ), zipFile, entry );
+    }
+
+    ZipEntryInputStream( InputStream in, ZipFile zipFile, ZipArchiveEntry entry )
+    {
+        super( in );
+        this.zipFile = zipFile;
+        this.entry = entry;
+    }
+
+    /**
+     * @return the zip file entry this stream reads
+     */
+    @Override
+    public ZipArchiveEntry getZipArchiveEntry()
+    {
+        return entry;
+    }
+
+    @Override
+    public InputStream getRawInputStream()
+    {
+        return zipFile.getRawInputStream( entry );
+    }
+
+}
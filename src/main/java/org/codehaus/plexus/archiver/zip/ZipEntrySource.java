@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.InputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+/**
+ * The source of contents read from a zip file entry, which {@link AbstractZipArchiver} may copy the compressed data
+ * of instead of inflating and deflating it again.
+ *
+ * @since 4.1.1
+ */
+interface ZipEntrySource
+{
+
+    /**
+     * @return the zip file entry the contents are read from, or null if they are transformed
+     */
+    ZipArchiveEntry getZipArchiveEntry();
+
+    /**
+     * Opens a new stream of the compressed data of the entry.
+     *
+     * @return the compressed data, exactly as stored in the zip file
+     */
+    InputStream getRawInputStream();
+
+}
@@ -12,11 +12,12 @@
 import org.codehaus.plexus.components.io.functions.InputStreamTransformer;
 import org.codehaus.plexus.components.io.functions.ResourceAttributeSupplier;
 import org.codehaus.plexus.components.io.resources.AbstractPlexusIoResource;
+import org.codehaus.plexus.components.io.resources.AbstractPlexusIoResourceCollection;
 import org.codehaus.plexus.components.io.resources.ClosingInputStream;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
 
 public class ZipResource extends AbstractPlexusIoResource
-    implements ResourceAttributeSupplier
+    implements ResourceAttributeSupplier, ZipEntrySource
 {
 
     private final org.apache.commons.compress.archivers.zip.ZipFile zipFile;
@@ -86,8 +87,31 @@ public URL getURL()
     public InputStream getContents()
         throws IOException
     {
-        final InputStream inputStream = zipFile.getInputStream( entry );
-        return new ClosingInputStream( streamTransformer.transform( this, inputStream ), inputStream );
+        final InputStream inputStream = new ZipEntryInputStream( zipFile, entry );
+        final InputStream transformed = streamTransformer.transform( this, inputStream );
+        return transformed == inputStream ? inputStream : new ClosingInputStream( transformed, inputStream );
+    }
+
+    /**
+     * @return the zip file entry of this resource, or null if its contents are transformed
+     *
+     * @since 4.1.1
+     */
+    @Override
+    public ZipArchiveEntry getZipArchiveEntry()
+    {
+        return streamTransformer == null || streamTransformer == AbstractPlexusIoResourceCollection.identityTransformer
+                   ? entry
+                   : null;
+    }
+
+    /**
+     * @since 4.1.1
+     */
+    @Override
+    public InputStream getRawInputStream()
+    {
+        return zipFile.getRawInputStream( entry );
     }
 
 }
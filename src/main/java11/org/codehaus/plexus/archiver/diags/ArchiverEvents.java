@@ -0,0 +1,281 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.diags;
+
+import java.io.File;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emits Java Flight Recorder events for the operations of the archivers and unarchivers.
+ * <p>
+ * This implementation is the one of Java 11 and later, loaded from the multi-release jar in place of the one
+ * recording nothing. The compression or extraction of an entry is only recorded from
+ * {@link #DEFAULT_ENTRY_SIZE_THRESHOLD} bytes, or as many as the {@code plexus.archiver.jfr.entrySizeThreshold}
+ * system property tells.</p>
+ *
+ * @since 4.1.1
+ */
+public class ArchiverEvents
+{
+
+    /**
+     * The uncompressed size from which the compression or extraction of an entry is recorded.
+     */
+    public static final long DEFAULT_ENTRY_SIZE_THRESHOLD = 1024 * 1024;
+
+    private static final long ENTRY_SIZE_THRESHOLD =
+        Long.getLong( "plexus.archiver.jfr.entrySizeThreshold", DEFAULT_ENTRY_SIZE_THRESHOLD );
+
+    private static final Recording NONE = new Recording();
+
+    /**
+     * An operation being recorded.
+     */
+    public static class Recording
+    {
+
+        Recording()
+        {
+        }
+
+        /**
+         * Ends the operation, whose event is committed if it is enabled.
+         *
+         * @param size the number of bytes written or extracted, or -1 if unknown
+         */
+        public void end( long size )
+        {
+        }
+
+    }
+
+    private static final class EventRecording
+        extends Recording
+    {
+
+        private final ArchiverEvent event;
+
+        private final long minSize;
+
+        EventRecording( ArchiverEvent event, long minSize )
+        {
+            this.event = event;
+            this.minSize = minSize;
+            event.begin();
+        }
+
+        @Override
+        public void end( long size )
+        {
+            event.end();
+            if ( size >= minSize && event.shouldCommit() )
+            {
+                event.size = size;
+                event.commit();
+            }
+        }
+
+    }
+
+    @Category( "Plexus Archiver" )
+    abstract static class ArchiverEvent
+        extends Event
+    {
+
+        @Label( "Size" )
+        @DataAmount
+        long size;
+
+    }
+
+    @Name( "org.codehaus.plexus.archiver.Archive" )
+    @Label( "Archive" )
+    @Description( "An archive created or extracted" )
+    static class ArchiveEvent
+        extends ArchiverEvent
+    {
+
+        @Label( "Operation" )
+        String operation;
+
+        @Label( "Archive Type" )
+        String archiveType;
+
+        @Label( "Path" )
+        String path;
+
+    }
+
+    @Name( "org.codehaus.plexus.archiver.Entry" )
+    @Label( "Archive Entry" )
+    @Description( "An entry compressed into an archive or extracted from it" )
+    static class EntryEvent
+        extends ArchiverEvent
+    {
+
+        @Label( "Operation" )
+        String operation;
+
+        @Label( "Name" )
+        String name;
+
+    }
+
+    @Name( "org.codehaus.plexus.archiver.Finalizer" )
+    @Label( "Archive Finalizer" )
+    @Description( "A finalizer run after the entries were added to an archive or extracted" )
+    static class FinalizerEvent
+        extends ArchiverEvent
+    {
+
+        @Label( "Finalizer" )
+        String finalizer;
+
+    }
+
+    @Name( "org.codehaus.plexus.archiver.JarTool" )
+    @Label( "Jar Tool" )
+    @Description( "The JDK jar tool updating a modular jar" )
+    static class JarToolEvent
+        extends ArchiverEvent
+    {
+
+        @Label( "Path" )
+        String path;
+
+    }
+
+    @Name( "org.codehaus.plexus.archiver.ScatterSpill" )
+    @Label( "Scatter Spill" )
+    @Description( "Compressed entries kept in a temporary file or outside the heap until written into the archive" )
+    static class ScatterSpillEvent
+        extends ArchiverEvent
+    {
+
+    }
+
+    private ArchiverEvents()
+    {
+    }
+
+    /**
+     * @param archiveType the type of the archive, like {@code zip}
+     * @param file the archive created, or null if written into a stream
+     */
+    public static Recording archiveCreation( String archiveType, File file )
+    {
+        return archive( "create", archiveType, file );
+    }
+
+    /**
+     * @param archiveType the type of the unarchiver
+     * @param file the archive extracted, or null if read from a stream
+     */
+    public static Recording archiveExtraction( String archiveType, File file )
+    {
+        return archive( "extract", archiveType, file );
+    }
+
+    private static Recording archive( String operation, String archiveType, File file )
+    {
+        final ArchiveEvent event = new ArchiveEvent();
+        if ( !event.isEnabled() )
+        {
+            return NONE;
+        }
+        event.operation = operation;
+        event.archiveType = archiveType;
+        event.path = file != null ? file.getPath() : null;
+        return new EventRecording( event, Long.MIN_VALUE );
+    }
+
+    /**
+     * @param name the name of the entry compressed into an archive
+     */
+    public static Recording entryCompression( String name )
+    {
+        return entry( "compress", name );
+    }
+
+    /**
+     * @param name the name of the entry extracted from an archive
+     */
+    public static Recording entryExtraction( String name )
+    {
+        return entry( "extract", name );
+    }
+
+    private static Recording entry( String operation, String name )
+    {
+        final EntryEvent event = new EntryEvent();
+        if ( !event.isEnabled() )
+        {
+            return NONE;
+        }
+        event.operation = operation;
+        event.name = name;
+        return new EventRecording( event, ENTRY_SIZE_THRESHOLD );
+    }
+
+    /**
+     * @param finalizer the finalizer run after the entries were added to an archive or extracted
+     */
+    public static Recording finalizerExecution( Object finalizer )
+    {
+        final FinalizerEvent event = new FinalizerEvent();
+        if ( !event.isEnabled() )
+        {
+            return NONE;
+        }
+        event.finalizer = finalizer.getClass().getName();
+        return new EventRecording( event, Long.MIN_VALUE );
+    }
+
+    /**
+     * @param file the archive the JDK jar tool updates
+     */
+    public static Recording jarToolInvocation( File file )
+    {
+        final JarToolEvent event = new JarToolEvent();
+        if ( !event.isEnabled() )
+        {
+            return NONE;
+        }
+        event.path = file != null ? file.getPath() : null;
+        return new EventRecording( event, Long.MIN_VALUE );
+    }
+
+    /**
+     * Records that compressed entries didn't fit into the memory of the scatter backing stores.
+     *
+     * @param size the number of bytes kept in a temporary file or outside the heap
+     */
+    public static void scatterSpill( long size )
+    {
+        final ScatterSpillEvent event = new ScatterSpillEvent();
+        if ( event.shouldCommit() )
+        {
+            event.size = size;
+            event.commit();
+        }
+    }
+
+}
@@ -25,12 +25,15 @@
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.BasePlexusArchiverTest;
+import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.archiver.exceptions.EmptyArchiveException;
 import org.codehaus.plexus.archiver.zip.ZipArchiver;
 import org.codehaus.plexus.util.FileUtils;
@@ -105,6 +108,37 @@ public void testCreateResourceCollection()
         juZipFile.close();
     }
 
+    public void testCreateArchiveWithMultipleThreads()
+        throws Exception
+    {
+        // large enough to be split into several bzip2 streams
+        final File largeFile = new File( "target/output/large-for-bzip2.txt" );
+        largeFile.getParentFile().mkdirs();
+        final byte[] pom = FileUtils.fileRead( "pom.xml" ).getBytes( "UTF-8" );
+        final OutputStream out = new FileOutputStream( largeFile );
+        for ( int i = 0; i * pom.length < 2500000; i++ )
+        {
+            out.write( pom );
+            out.write( Integer.toString( i ).getBytes( "UTF-8" ) );
+        }
+        out.close();
+
+        final File bz2File = new File( "target/output/large-for-bzip2.txt.bz2" );
+        BZip2Archiver bzip2Archiver = (BZip2Archiver) lookup( Archiver.ROLE, "bzip2" );
+        bzip2Archiver.setDestFile( bz2File );
+        bzip2Archiver.setCompressionThreads( 3 );
+        bzip2Archiver.addFile( largeFile, "large-for-bzip2.txt" );
+        FileUtils.removePath( bz2File.getPath() );
+        bzip2Archiver.createArchive();
+
+        final File extracted = new File( "target/output/large-for-bzip2-extracted.txt" );
+        final UnArchiver unArchiver = (UnArchiver) lookup( UnArchiver.ROLE, "bzip2" );
+        unArchiver.setSourceFile( bz2File );
+        unArchiver.setDestFile( extracted );
+        unArchiver.extract();
+        assertTrue( FileUtils.contentEquals( largeFile, extracted ) );
+    }
+
     /**
      * Tests the .bzip2 archiver is forced set to true, and after that
      * tests the behavior when the forced is set to false.
@@ -0,0 +1,100 @@
+package org.codehaus.plexus.archiver.dir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import javax.annotation.Nonnull;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.archiver.Archiver;
+import org.codehaus.plexus.archiver.util.DefaultFileSet;
+import org.codehaus.plexus.components.io.functions.InputStreamTransformer;
+import org.codehaus.plexus.components.io.resources.PlexusIoResource;
+import org.codehaus.plexus.util.FileUtils;
+
+public class DirectoryArchiverTest
+    extends PlexusTestCase
+{
+
+    public void testParallelCopy()
+        throws Exception
+    {
+        final File sourceDirectory = getTestFile( "src/test/resources" );
+        final File destDirectory = getTestFile( "target/output/dir-parallel" );
+        FileUtils.deleteDirectory( destDirectory );
+
+        final DirectoryArchiver archiver = (DirectoryArchiver) lookup( Archiver.ROLE, "dir" );
+        archiver.setCopyThreads( 4 );
+        archiver.setDestFile( destDirectory );
+        archiver.addDirectory( sourceDirectory, null, new String[]
+        {
+            "symlinks/**"
+        } );
+        archiver.createArchive();
+
+        final List<String> names = FileUtils.getFileNames( sourceDirectory, null, "symlinks/**", false );
+        assertFalse( names.isEmpty() );
+        for ( String name : names )
+        {
+            final File source = new File( sourceDirectory, name );
+            final File copy = new File( destDirectory, name );
+            assertTrue( name, FileUtils.contentEquals( source, copy ) );
+            assertFalse( name, Files.isSameFile( source.toPath(), copy.toPath() ) );
+            assertEquals( name, source.lastModified(), copy.lastModified() );
+        }
+    }
+
+    public void testHardLinks()
+        throws Exception
+    {
+        final File sourceDirectory = getTestFile( "target/output/dir-links-source" );
+        final File destDirectory = getTestFile( "target/output/dir-links" );
+        FileUtils.deleteDirectory( sourceDirectory );
+        FileUtils.deleteDirectory( destDirectory );
+        FileUtils.mkdir( new File( sourceDirectory, "linked" ).getPath() );
+        FileUtils.mkdir( new File( sourceDirectory, "transformed" ).getPath() );
+        FileUtils.fileWrite( new File( sourceDirectory, "linked/a.txt" ), "UTF-8", "a" );
+        FileUtils.fileWrite( new File( sourceDirectory, "transformed/b.txt" ), "UTF-8", "b" );
+
+        final DirectoryArchiver archiver = (DirectoryArchiver) lookup( Archiver.ROLE, "dir" );
+        archiver.setHardLinks( true );
+        archiver.setDestFile( destDirectory );
+        archiver.addDirectory( new File( sourceDirectory, "linked" ) );
+        final DefaultFileSet transformed = DefaultFileSet.fileSet( new File( sourceDirectory, "transformed" ) );
+        transformed.setStreamTransformer( new InputStreamTransformer()
+        {
+
+            @Nonnull
+            @Override
+            public InputStream transform( @Nonnull PlexusIoResource resource, @Nonnull InputStream inputStream )
+                throws IOException
+            {
+                inputStream.close();
+                return new ByteArrayInputStream( "c".getBytes( "UTF-8" ) );
+            }
+
+        } );
+        archiver.addFileSet( transformed );
+        archiver.createArchive();
+
+        assertTrue( Files.isSameFile( new File( sourceDirectory, "linked/a.txt" ).toPath(),
+                                      new File( destDirectory, "a.txt" ).toPath() ) );
+        // transformed contents are copied
+        assertEquals( "c", FileUtils.fileRead( new File( destDirectory, "b.txt" ), "UTF-8" ) );
+        assertEquals( "b", FileUtils.fileRead( new File( sourceDirectory, "transformed/b.txt" ), "UTF-8" ) );
+
+        // copying over a link replaces it rather than writing into its source
+        archiver.setHardLinks( false );
+        archiver.setDestFile( destDirectory );
+        archiver.addDirectory( new File( sourceDirectory, "linked" ) );
+        archiver.createArchive();
+
+        assertEquals( "a", FileUtils.fileRead( new File( sourceDirectory, "linked/a.txt" ), "UTF-8" ) );
+        assertEquals( "a", FileUtils.fileRead( new File( destDirectory, "a.txt" ), "UTF-8" ) );
+        assertFalse( Files.isSameFile( new File( sourceDirectory, "linked/a.txt" ).toPath(),
+                                       new File( destDirectory, "a.txt" ).toPath() ) );
+    }
+
+}
@@ -25,8 +25,11 @@
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.codehaus.plexus.archiver.Archiver;
@@ -103,6 +106,86 @@ public void testCreateResourceCollection()
         juZipFile.close();
     }
 
+    public void testCreateArchiveWithMultipleThreads()
+        throws Exception
+    {
+        final File pomFile = new File( "pom.xml" );
+        final File gzFile = new File( "target/output/pom-parallel.xml.gz" );
+        GZipArchiver gzipArchiver = (GZipArchiver) lookup( Archiver.ROLE, "gzip" );
+        gzipArchiver.setDestFile( gzFile );
+        gzipArchiver.setCompressionThreads( 3 );
+        gzipArchiver.setCompressionBlockSize( 1024 );
+        gzipArchiver.addFile( pomFile, "pom.xml" );
+        FileUtils.removePath( gzFile.getPath() );
+        gzipArchiver.createArchive();
+
+        final InputStream archivePom = new GZIPInputStream( new FileInputStream( gzFile ) );
+        final InputStream pom = new FileInputStream( pomFile );
+        assertTrue( Arrays.equals( IOUtil.toByteArray( pom ), IOUtil.toByteArray( archivePom ) ) );
+        archivePom.close();
+        pom.close();
+    }
+
+    public void testParallelStreamEndsThreadsOnFailure()
+        throws Exception
+    {
+        final boolean[] full = new boolean[ 1 ];
+        final ParallelGZipOutputStream out = new ParallelGZipOutputStream( new OutputStream()
+        {
+
+            @Override
+            public void write( int b )
+                throws IOException
+            {
+                if ( full[0] )
+                {
+                    throw new IOException( "No space left on device" );
+                }
+            }
+
+        }, 1024, 2 );
+        out.write( new byte[ 4 * 1024 ] );
+        full[0] = true;
+        assertTrue( getCompressionThreads().length > 0 );
+        for ( Thread thread : getCompressionThreads() )
+        {
+            assertTrue( thread.getName(), thread.isDaemon() );
+        }
+        try
+        {
+            for ( int i = 0; i < 100; i++ )
+            {
+                out.write( new byte[ 1024 ] );
+            }
+            fail( "Expected an IOException" );
+        }
+        catch ( IOException e )
+        {
+            assertEquals( "No space left on device", e.getMessage() );
+        }
+        for ( Thread thread : getCompressionThreads() )
+        {
+            thread.join( 10000 );
+            assertFalse( thread.getName(), thread.isAlive() );
+        }
+        out.close();
+    }
+
+    private static Thread[] getCompressionThreads()
+    {
+        final Thread[] threads = new Thread[ Thread.activeCount() + 16 ];
+        final int count = Thread.enumerate( threads );
+        int found = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( threads[i].getName().startsWith( "plexus-archiver-ParallelGZipOutputStream-" ) )
+            {
+                threads[found++] = threads[i];
+            }
+        }
+        return Arrays.copyOf( threads, found );
+    }
+
     /**
      * Tests the .gzip archiver is forced set to true, and after that
      * tests the behavior when the forced is set to false.
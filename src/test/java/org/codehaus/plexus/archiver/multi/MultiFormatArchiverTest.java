@@ -0,0 +1,283 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.multi;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.archiver.AbstractArchiver;
+import org.codehaus.plexus.archiver.Archiver;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.tar.GZipTarFile;
+import org.codehaus.plexus.archiver.tar.TarArchiver;
+import org.codehaus.plexus.archiver.tar.TarFile;
+import org.codehaus.plexus.archiver.tar.XZTarFile;
+import org.codehaus.plexus.components.io.resources.AbstractPlexusIoResource;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Test case for {@link MultiFormatArchiver}.
+ */
+public class MultiFormatArchiverTest
+    extends PlexusTestCase
+{
+
+    private static final String CONTENTS = "read once";
+
+    private File outputDirectory;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        outputDirectory = getTestFile( "target/output/multi" );
+        FileUtils.deleteDirectory( outputDirectory );
+        outputDirectory.mkdirs();
+    }
+
+    public void testCreateArchivesFromOneRead()
+        throws Exception
+    {
+        final AtomicInteger reads = new AtomicInteger();
+        final MultiFormatArchiver archiver = newArchiver();
+        archiver.addResource( newCountedResource( CONTENTS, reads ), "counted.txt", 0644 );
+
+        archiver.createArchive();
+
+        assertEquals( 1, reads.get() );
+        assertEquals( 3, archiver.getResults().size() );
+        for ( MultiFormatArchiver.Result result : archiver.getResults() )
+        {
+            assertTrue( result.toString(), result.isSuccessful() );
+            assertTrue( result.getSize() > 0 );
+        }
+        assertArchives( "counted.txt", CONTENTS );
+    }
+
+    public void testReadFromResourcesWithoutWindow()
+        throws Exception
+    {
+        final AtomicInteger reads = new AtomicInteger();
+        final MultiFormatArchiver archiver = newArchiver();
+        archiver.setMemoryBudget( 0 );
+        archiver.addResource( newCountedResource( CONTENTS, reads ), "counted.txt", 0644 );
+
+        archiver.createArchive();
+
+        assertEquals( 3, reads.get() );
+        assertArchives( "counted.txt", CONTENTS );
+    }
+
+    public void testEntryLargerThanWindow()
+        throws Exception
+    {
+        final StringBuilder contents = new StringBuilder();
+        for ( int i = 0; contents.length() < 1024 * 1024; i++ )
+        {
+            contents.append( "line " ).append( i ).append( '\n' );
+        }
+        final AtomicInteger reads = new AtomicInteger();
+        final MultiFormatArchiver archiver = newArchiver();
+        archiver.setMemoryBudget( 256 * 1024 );
+        archiver.addResource( newCountedResource( contents.toString(), reads ), "large.txt", 0644 );
+
+        archiver.createArchive();
+
+        assertEquals( 1, reads.get() );
+        assertArchives( "large.txt", contents.toString() );
+    }
+
+    public void testReportFailedTargets()
+        throws Exception
+    {
+        final MultiFormatArchiver archiver = newArchiver();
+        final File notADirectory = new File( outputDirectory, "file" );
+        FileUtils.fileWrite( notADirectory, "UTF-8", CONTENTS );
+        final AbstractArchiver failing = (AbstractArchiver) lookup( Archiver.ROLE, "zip" );
+        failing.setDestFile( new File( notADirectory, "failing.zip" ) );
+        archiver.addTarget( failing );
+
+        try
+        {
+            archiver.createArchive();
+            fail( "Expected an ArchiverException" );
+        }
+        catch ( ArchiverException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( "failing.zip" ) );
+        }
+
+        assertEquals( 4, archiver.getResults().size() );
+        for ( int i = 0; i < 3; i++ )
+        {
+            assertTrue( archiver.getResults().get( i ).isSuccessful() );
+        }
+        assertFalse( archiver.getResults().get( 3 ).isSuccessful() );
+        assertNotNull( archiver.getResults().get( 3 ).getFailure() );
+        assertArchives( null, null );
+    }
+
+    private MultiFormatArchiver newArchiver()
+        throws Exception
+    {
+        final MultiFormatArchiver archiver = new MultiFormatArchiver();
+        archiver.addDirectory( getTestFile( "src/test/resources/symlinks/src" ) );
+
+        final AbstractArchiver zip = (AbstractArchiver) lookup( Archiver.ROLE, "zip" );
+        zip.setDestFile( new File( outputDirectory, "archive.zip" ) );
+        archiver.addTarget( zip );
+
+        final TarArchiver tarGz = (TarArchiver) lookup( Archiver.ROLE, "tar" );
+        tarGz.setCompression( TarArchiver.TarCompressionMethod.gzip );
+        tarGz.setDestFile( new File( outputDirectory, "archive.tar.gz" ) );
+        archiver.addTarget( tarGz );
+
+        final TarArchiver tarXz = (TarArchiver) lookup( Archiver.ROLE, "tar" );
+        tarXz.setCompression( TarArchiver.TarCompressionMethod.xz );
+        tarXz.setDestFile( new File( outputDirectory, "archive.tar.xz" ) );
+        archiver.addTarget( tarXz );
+
+        return archiver;
+    }
+
+    private static AbstractPlexusIoResource newCountedResource( String contents, final AtomicInteger reads )
+        throws IOException
+    {
+        final byte[] bytes = contents.getBytes( "UTF-8" );
+        return new AbstractPlexusIoResource( "counted.txt", System.currentTimeMillis(), bytes.length, true, false,
+                                             true )
+        {
+
+            @Nonnull
+            @Override
+            public InputStream getContents()
+                throws IOException
+            {
+                reads.incrementAndGet();
+                return new ByteArrayInputStream( bytes );
+            }
+
+            @Override
+            public URL getURL()
+                throws IOException
+            {
+                return null;
+            }
+
+        };
+    }
+
+    private void assertArchives( String countedEntry, String countedContents )
+        throws IOException
+    {
+        final Map<String, String> zipEntries = readZip( new File( outputDirectory, "archive.zip" ) );
+        final Map<String, String> tarGzEntries = readTar( new GZipTarFile( new File( outputDirectory,
+                                                                                     "archive.tar.gz" ) ) );
+        final Map<String, String> tarXzEntries = readTar( new XZTarFile( new File( outputDirectory,
+                                                                                   "archive.tar.xz" ) ) );
+
+        assertEquals( "file:" + FileUtils.fileRead( getTestFile( "src/test/resources/symlinks/src/fileR.txt" ) ),
+                      zipEntries.get( "fileR.txt" ) );
+        assertEquals( "link:fileR.txt", zipEntries.get( "symR" ) );
+        assertEquals( "directory", zipEntries.get( "aRegularDir" ) );
+        if ( countedEntry != null )
+        {
+            assertEquals( "file:" + countedContents, zipEntries.get( countedEntry ) );
+        }
+        assertEquals( zipEntries, tarGzEntries );
+        assertEquals( zipEntries, tarXzEntries );
+    }
+
+    private static Map<String, String> readZip( File file )
+        throws IOException
+    {
+        final Map<String, String> entries = new TreeMap<String, String>();
+        final ZipFile zipFile = new ZipFile( file );
+        try
+        {
+            for ( Enumeration<ZipArchiveEntry> en = zipFile.getEntries(); en.hasMoreElements(); )
+            {
+                final ZipArchiveEntry entry = en.nextElement();
+                final String name = stripSlash( entry.getName() );
+                if ( entry.isDirectory() )
+                {
+                    entries.put( name, "directory" );
+                }
+                else
+                {
+                    final String contents = IOUtil.toString( zipFile.getInputStream( entry ), "UTF-8" );
+                    entries.put( name, ( entry.isUnixSymlink() ? "link:" : "file:" ) + contents );
+                }
+            }
+        }
+        finally
+        {
+            zipFile.close();
+        }
+        return entries;
+    }
+
+    private static Map<String, String> readTar( TarFile tarFile )
+        throws IOException
+    {
+        final Map<String, String> entries = new TreeMap<String, String>();
+        try
+        {
+            for ( Enumeration<org.apache.commons.compress.archivers.ArchiveEntry> en = tarFile.getEntries();
+                  en.hasMoreElements(); )
+            {
+                final TarArchiveEntry entry = (TarArchiveEntry) en.nextElement();
+                final String name = stripSlash( entry.getName() );
+                if ( entry.isSymbolicLink() )
+                {
+                    entries.put( name, "link:" + entry.getLinkName() );
+                }
+                else if ( entry.isDirectory() )
+                {
+                    entries.put( name, "directory" );
+                }
+                else
+                {
+                    entries.put( name, "file:" + IOUtil.toString( tarFile.getInputStream( entry ), "UTF-8" ) );
+                }
+            }
+        }
+        finally
+        {
+            tarFile.close();
+        }
+        return entries;
+    }
+
+    private static String stripSlash( String name )
+    {
+        return name.endsWith( "/" ) ? name.substring( 0, name.length() - 1 ) : name;
+    }
+
+}
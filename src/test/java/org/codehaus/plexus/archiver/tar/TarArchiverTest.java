@@ -24,13 +24,17 @@
 package org.codehaus.plexus.archiver.tar;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.channels.Channels;
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.codehaus.plexus.PlexusTestCase;
@@ -474,6 +478,50 @@ TarFile newTarFile( File tarFile )
 
     }
 
+    private class ParallelCompressionTarHandler
+        extends TarHandler
+    {
+
+        private final TarArchiver.TarCompressionMethod compression;
+
+        private final String extension;
+
+        ParallelCompressionTarHandler( TarArchiver.TarCompressionMethod compression, String extension )
+        {
+            this.compression = compression;
+            this.extension = extension;
+        }
+
+        @Override
+        File createTarFile()
+            throws Exception
+        {
+            final File tarFile = new File( "target/output/src-parallel.tar." + extension );
+            TarArchiver tarArchiver = getPosixTarArchiver();
+            tarArchiver.setDestFile( tarFile );
+            tarArchiver.setCompression( compression );
+            tarArchiver.setCompressionThreads( 4 );
+            tarArchiver.setCompressionBlockSize( 8 * 1024 );
+            tarArchiver.addDirectory( new File( "src" ), null, FileUtils.getDefaultExcludes() );
+            FileUtils.removePath( tarFile.getPath() );
+            tarArchiver.createArchive();
+            return tarFile;
+        }
+
+        @Override
+        TarFile newTarFile( File tarFile )
+        {
+            if ( TarArchiver.TarCompressionMethod.bzip2.equals( compression ) )
+            {
+                return new BZip2TarFile( tarFile );
+            }
+            return TarArchiver.TarCompressionMethod.xz.equals( compression )
+                       ? new XZTarFile( tarFile )
+                       : new GZipTarFile( tarFile );
+        }
+
+    }
+
     private class BZip2TarHandler
         extends TarHandler
     {
@@ -512,6 +560,27 @@ public void testGzipCompressedResourceCollection()
         testCreateResourceCollection( new GZipTarHandler() );
     }
 
+    public void testParallelGzipCompressedResourceCollection()
+        throws Exception
+    {
+        testCreateResourceCollection(
+            new ParallelCompressionTarHandler( TarArchiver.TarCompressionMethod.gzip, "gz" ) );
+    }
+
+    public void testParallelBzip2CompressedResourceCollection()
+        throws Exception
+    {
+        testCreateResourceCollection(
+            new ParallelCompressionTarHandler( TarArchiver.TarCompressionMethod.bzip2, "bz2" ) );
+    }
+
+    public void testParallelXZCompressedResourceCollection()
+        throws Exception
+    {
+        testCreateResourceCollection(
+            new ParallelCompressionTarHandler( TarArchiver.TarCompressionMethod.xz, "xz" ) );
+    }
+
     public void testGzipFIleHandleLeak()
         throws Exception
     {
@@ -544,6 +613,29 @@ public void testBzip2CompressedResourceCollection()
         testCreateResourceCollection( new BZip2TarHandler() );
     }
 
+    public void testCreateArchiveIntoChannel()
+        throws Exception
+    {
+        final TarArchiver archiver = getPosixTarArchiver();
+        archiver.setCompression( TarArchiver.TarCompressionMethod.gzip );
+        archiver.addFile( getTestFile( "pom.xml" ), "pom.xml" );
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiver.createArchive( Channels.newChannel( out ) );
+
+        final TarArchiveInputStream in =
+            new TarArchiveInputStream( new GZIPInputStream( new ByteArrayInputStream( out.toByteArray() ) ) );
+        try
+        {
+            assertEquals( "pom.xml", in.getNextTarEntry().getName() );
+            assertEquals( FileUtils.fileRead( getTestFile( "pom.xml" ) ), IOUtil.toString( in ) );
+            assertNull( in.getNextTarEntry() );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
     public void testTarFileNotClosingInputStream()
         throws Exception
     {
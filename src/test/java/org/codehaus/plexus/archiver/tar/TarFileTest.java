@@ -4,14 +4,18 @@
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.codehaus.plexus.PlexusTestCase;
 import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.bzip2.BZip2Compressor;
 import org.codehaus.plexus.archiver.gzip.GZipCompressor;
 import org.codehaus.plexus.archiver.util.Compressor;
+import org.codehaus.plexus.archiver.xz.XZCompressor;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import static org.codehaus.plexus.components.io.resources.ResourceFactory.createResource;
@@ -86,6 +90,114 @@ public TarFile newTarFile( File file )
         } );
     }
 
+    public void testRandomAccess() throws Exception
+    {
+        final File file = createTarFile();
+        testRandomAccess( new TarFile( file ), file, null, false );
+
+        final File gzipFile = compress( file, new GZipCompressor(), ".gz" );
+        testRandomAccess( new GZipTarFile( gzipFile ), gzipFile, null, false );
+
+        // several xz blocks, so entries can be reached without decompressing from the start
+        final XZCompressor xz = new XZCompressor();
+        xz.setThreads( 2 );
+        xz.setBlockSize( 64 * 1024 );
+        final File xzFile = compress( file, xz, ".xz" );
+        testRandomAccess( new XZTarFile( xzFile ), xzFile, null, false );
+
+        final File indexFile = new File( "target/output/TarFileTest.tar.idx" );
+        indexFile.delete();
+        testRandomAccess( new TarFile( file ), file, indexFile, false );
+        assertTrue( indexFile.isFile() );
+        testRandomAccess( new TarFile( file ), file, indexFile, true );
+    }
+
+    private void testRandomAccess( final TarFile tarFile, File file, File indexFile, boolean indexRead )
+        throws Exception
+    {
+        final List<TarArchiveEntry> entries = new ArrayList<TarArchiveEntry>();
+        for ( Enumeration en = tarFile.getEntries(); en.hasMoreElements(); )
+        {
+            final TarArchiveEntry te = (TarArchiveEntry) en.nextElement();
+            if ( !te.isDirectory() && !te.isSymbolicLink() )
+            {
+                entries.add( te );
+            }
+        }
+        tarFile.close();
+
+        // a fresh instance knows nothing but the index file
+        final int[] opened = new int[ 1 ];
+        final TarFile reopened = new TarFile( file )
+        {
+
+            @Override
+            protected InputStream getInputStream( File file ) throws IOException
+            {
+                opened[0]++;
+                return tarFile.getInputStream( file );
+            }
+
+            @Override
+            protected InputStream getInputStream( File file, long offset ) throws IOException
+            {
+                opened[0]++;
+                return tarFile.getInputStream( file, offset );
+            }
+
+        };
+        reopened.setIndexFile( indexFile );
+        Collections.reverse( entries );
+        for ( TarArchiveEntry te : entries )
+        {
+            final InputStream teStream = reopened.getInputStream( new TarArchiveEntry( te.getName() ) );
+            final InputStream fileStream = new FileInputStream( new File( "src", te.getName() ) );
+            assertTrue( te.getName(),
+                        Arrays.equals( IOUtil.toByteArray( teStream ), IOUtil.toByteArray( fileStream ) ) );
+            teStream.close();
+            fileStream.close();
+        }
+        // one pass to build the index, unless it was read, and one per entry
+        assertEquals( entries.size() + ( indexRead ? 0 : 1 ), opened[0] );
+
+        // going forward, the entries are read on from the first one
+        opened[0] = 0;
+        Collections.reverse( entries );
+        for ( TarArchiveEntry te : entries )
+        {
+            final InputStream teStream = reopened.getInputStream( new TarArchiveEntry( te.getName() ) );
+            final InputStream fileStream = new FileInputStream( new File( "src", te.getName() ) );
+            assertTrue( te.getName(),
+                        Arrays.equals( IOUtil.toByteArray( teStream ), IOUtil.toByteArray( fileStream ) ) );
+            teStream.close();
+            fileStream.close();
+        }
+        reopened.close();
+        assertEquals( 1, opened[0] );
+    }
+
+    private File createTarFile() throws Exception
+    {
+        final File file = new File( "target/output/TarFileTest-random.tar" );
+        final TarArchiver archiver = (TarArchiver) lookup( Archiver.ROLE, "tar" );
+        archiver.setLongfile( TarLongFileMode.posix );
+        archiver.setDestFile( file );
+        archiver.addDirectory( new File( "src" ) );
+        FileUtils.removePath( file.getPath() );
+        archiver.createArchive();
+        return file;
+    }
+
+    private File compress( File file, Compressor compressor, String extension ) throws Exception
+    {
+        final File compressedFile = new File( file.getPath() + extension );
+        compressor.setSource( createResource( file, file.getName() ) );
+        compressor.setDestFile( compressedFile );
+        compressor.compress();
+        compressor.close();
+        return compressedFile;
+    }
+
     private void testTarFile( Compressor compressor, String extension,
                               TarFileCreator tarFileCreator )
         throws Exception
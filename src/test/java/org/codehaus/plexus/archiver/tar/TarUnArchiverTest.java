@@ -1,8 +1,23 @@
 package org.codehaus.plexus.archiver.tar;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.UnArchiver;
+import org.codehaus.plexus.archiver.bzip2.ParallelBZip2OutputStream;
+import org.codehaus.plexus.archiver.xz.ParallelXZOutputStream;
 import org.codehaus.plexus.components.io.fileselectors.FileSelector;
 import org.codehaus.plexus.components.io.fileselectors.IncludeExcludeFileSelector;
 import org.codehaus.plexus.util.FileUtils;
@@ -108,4 +123,219 @@ public void testSelectors()
                        } );
     }
 
+    public void testExtractFromChannel()
+        throws Exception
+    {
+        final File outputDirectory = new File( getBasedir(), "target/tar-unarchiver-channel-tests" );
+        FileUtils.deleteDirectory( outputDirectory );
+        outputDirectory.mkdirs();
+
+        final IncludeExcludeFileSelector fileSelector = new IncludeExcludeFileSelector();
+        fileSelector.setExcludes( new String[]
+        {
+            "**/directory/**"
+        } );
+        final TarUnArchiver tarUn = (TarUnArchiver) lookup( UnArchiver.ROLE, "tar.gz" );
+        tarUn.setDestDirectory( outputDirectory );
+        tarUn.setFileSelectors( new FileSelector[]
+        {
+            fileSelector
+        } );
+        final FileChannel channel = FileChannel.open( new File( getBasedir(), "src/test/jars/test.tar.gz" ).toPath() );
+        try
+        {
+            tarUn.extract( channel );
+            assertTrue( channel.isOpen() );
+        }
+        finally
+        {
+            channel.close();
+        }
+
+        assertFileExistance( "target/tar-unarchiver-channel-tests", "/resources/artifactId/test.properties", true );
+        assertFileExistance( "target/tar-unarchiver-channel-tests", "/resources/artifactId/directory/test.properties",
+                             false );
+        assertFileExistance( "target/tar-unarchiver-channel-tests", "/META-INF/MANIFEST.MF", true );
+    }
+
+    public void testExtractPlainTarMembers()
+        throws Exception
+    {
+        final File sourceDirectory = new File( getBasedir(), "src/test/resources" );
+        final File tarFile = new File( getBasedir(), "target/output/plain-members.tar" );
+        final TarArchiver tarArchiver = (TarArchiver) lookup( Archiver.ROLE, "tar" );
+        tarArchiver.setDestFile( tarFile );
+        tarArchiver.setLongfile( TarLongFileMode.posix );
+        tarArchiver.addDirectory( sourceDirectory, null, new String[]
+        {
+            "symlinks/**"
+        } );
+        FileUtils.removePath( tarFile.getPath() );
+        tarArchiver.createArchive();
+
+        final File outputDirectory = new File( getBasedir(), "target/output/plain-members" );
+        FileUtils.deleteDirectory( outputDirectory );
+        outputDirectory.mkdirs();
+        final TarUnArchiver tarUn = (TarUnArchiver) lookup( UnArchiver.ROLE, "tar" );
+        tarUn.setSourceFile( tarFile );
+        tarUn.setDestDirectory( outputDirectory );
+        tarUn.extract();
+
+        final List<String> names = FileUtils.getFileNames( outputDirectory, null, null, false );
+        assertFalse( names.isEmpty() );
+        for ( String name : names )
+        {
+            assertTrue( name, FileUtils.contentEquals( new File( sourceDirectory, name ),
+                                                       new File( outputDirectory, name ) ) );
+        }
+    }
+
+    public void testParallelDecompression()
+        throws Exception
+    {
+        // random data is stored rather than deflated, so gzip headers planted in its second half end up in the
+        // compressed file, where they have to be told apart from the real ones
+        final byte[] data = new byte[ 3 * 1024 * 1024 ];
+        new Random( 4711 ).nextBytes( data );
+        for ( int i = 2200000; i + 4 < data.length; i += 100000 )
+        {
+            System.arraycopy( new byte[]
+            {
+                (byte) 0x1f, (byte) 0x8b, 8, 0
+            }, 0, data, i, 4 );
+        }
+        final File dataFile = new File( "target/output/parallel-decompression/data.bin" );
+        FileUtils.mkdir( dataFile.getParent() );
+        FileUtils.fileWrite( new File( "target/output/parallel-decompression/small.txt" ), "UTF-8", "small" );
+        final OutputStream dataOut = new FileOutputStream( dataFile );
+        dataOut.write( data );
+        dataOut.close();
+
+        final File tarFile = new File( "target/output/parallel-decompression.tar" );
+        final TarArchiver tarArchiver = (TarArchiver) lookup( Archiver.ROLE, "tar" );
+        tarArchiver.setDestFile( tarFile );
+        tarArchiver.addDirectory( dataFile.getParentFile() );
+        FileUtils.removePath( tarFile.getPath() );
+        tarArchiver.createArchive();
+        final byte[] tar = Files.readAllBytes( tarFile.toPath() );
+
+        // concatenated gzip members of 768k
+        final File gzFile = new File( "target/output/parallel-decompression.tar.gz" );
+        final OutputStream gzOut = new FileOutputStream( gzFile );
+        for ( int off = 0; off < tar.length; off += 768 * 1024 )
+        {
+            final GZIPOutputStream member = new GZIPOutputStream( gzOut )
+            {
+
+                @Override
+                public void close()
+                {
+                    // keep the file open for the next member
+                }
+
+            };
+            member.write( tar, off, Math.min( 768 * 1024, tar.length - off ) );
+            member.finish();
+        }
+        gzOut.close();
+        assertParallelDecompression( gzFile, TarUnArchiver.UntarCompressionMethod.GZIP, data );
+
+        final File bz2File = new File( "target/output/parallel-decompression.tar.bz2" );
+        final OutputStream bz2Out = new ParallelBZip2OutputStream( new FileOutputStream( bz2File ), 2, 2 );
+        bz2Out.write( tar );
+        bz2Out.close();
+        assertParallelDecompression( bz2File, TarUnArchiver.UntarCompressionMethod.BZIP2, data );
+
+        final File xzFile = new File( "target/output/parallel-decompression.tar.xz" );
+        final OutputStream xzOut = new ParallelXZOutputStream( new FileOutputStream( xzFile ), 0, 256 * 1024, 2 );
+        xzOut.write( tar );
+        xzOut.close();
+        assertParallelDecompression( xzFile, TarUnArchiver.UntarCompressionMethod.XZ, data );
+    }
+
+    public void testParallelDecompressionOfHeaderInFileName()
+        throws Exception
+    {
+        final byte[] data = new byte[ 2 * 1024 * 1024 ];
+        new Random( 4711 ).nextBytes( data );
+        final File dataFile = new File( "target/output/parallel-decompression-name/data.bin" );
+        FileUtils.mkdir( dataFile.getParent() );
+        FileUtils.fileWrite( new File( "target/output/parallel-decompression-name/small.txt" ), "UTF-8", "small" );
+        final OutputStream dataOut = new FileOutputStream( dataFile );
+        dataOut.write( data );
+        dataOut.close();
+
+        final File tarFile = new File( "target/output/parallel-decompression-name.tar" );
+        final TarArchiver tarArchiver = (TarArchiver) lookup( Archiver.ROLE, "tar" );
+        tarArchiver.setDestFile( tarFile );
+        tarArchiver.addDirectory( dataFile.getParentFile() );
+        FileUtils.removePath( tarFile.getPath() );
+        tarArchiver.createArchive();
+        final byte[] tar = Files.readAllBytes( tarFile.toPath() );
+
+        final ByteArrayOutputStream gz = new ByteArrayOutputStream();
+        final GZIPOutputStream first = new GZIPOutputStream( gz );
+        first.write( tar, 0, 768 * 1024 );
+        first.finish();
+
+        // the file name of the second member holds a gzip header at the offset the first segment is expected to end
+        gz.write( new byte[]
+        {
+            (byte) 0x1f, (byte) 0x8b, 8, 8, 0, 0, 0, 0, 0, (byte) 0xff
+        } );
+        while ( gz.size() < 1024 * 1024 )
+        {
+            gz.write( 'a' );
+        }
+        // the flags of the header end the name
+        gz.write( new byte[]
+        {
+            (byte) 0x1f, (byte) 0x8b, 8, 0
+        } );
+        final Deflater deflater = new Deflater( Deflater.DEFAULT_COMPRESSION, true );
+        final DeflaterOutputStream second = new DeflaterOutputStream( gz, deflater );
+        second.write( tar, 768 * 1024, tar.length - 768 * 1024 );
+        second.finish();
+        deflater.end();
+        final CRC32 crc = new CRC32();
+        crc.update( tar, 768 * 1024, tar.length - 768 * 1024 );
+        for ( long value : new long[] { crc.getValue(), tar.length - 768 * 1024 } )
+        {
+            for ( int i = 0; i < 4; i++ )
+            {
+                gz.write( (int) ( value >> ( i * 8 ) ) );
+            }
+        }
+
+        final File gzFile = new File( "target/output/parallel-decompression-name.tar.gz" );
+        Files.write( gzFile.toPath(), gz.toByteArray() );
+        assertParallelDecompression( gzFile, TarUnArchiver.UntarCompressionMethod.GZIP, data );
+    }
+
+    private void assertParallelDecompression( File file, TarUnArchiver.UntarCompressionMethod compression,
+                                              byte[] data )
+        throws Exception
+    {
+        final File outputDirectory = new File( "target/output/parallel-decompression-" + compression );
+        FileUtils.deleteDirectory( outputDirectory );
+        outputDirectory.mkdirs();
+
+        final TarUnArchiver tarUn = (TarUnArchiver) lookup( UnArchiver.ROLE, "tar" );
+        tarUn.setSourceFile( file );
+        tarUn.setDestDirectory( outputDirectory );
+        tarUn.setCompression( compression );
+        tarUn.setDecompressionThreads( 3 );
+        tarUn.extract();
+
+        assertTrue( Arrays.equals( data, Files.readAllBytes( new File( outputDirectory, "data.bin" ).toPath() ) ) );
+        assertEquals( "small", FileUtils.fileRead( new File( outputDirectory, "small.txt" ), "UTF-8" ) );
+        for ( Thread thread : Thread.getAllStackTraces().keySet() )
+        {
+            if ( thread.getName().startsWith( "plexus-archiver-ParallelDecompressingInputStream" ) )
+            {
+                assertTrue( thread.getName(), thread.isDaemon() );
+            }
+        }
+    }
+
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.archiver.tar.GZipTarFile;
+import org.codehaus.plexus.archiver.tar.TarFile;
+import org.codehaus.plexus.archiver.util.ArchiveDirectoryCache.SharedZipFile;
+import org.codehaus.plexus.archiver.zip.PlexusIoZipFileResourceCollection;
+import org.codehaus.plexus.components.io.resources.PlexusIoResource;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+public class ArchiveDirectoryCacheTest
+    extends PlexusTestCase
+{
+
+    private File zipFile;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        zipFile = getTestFile( "target/output/directory-cache/test.zip" );
+        FileUtils.copyFile( getTestFile( "src/test/jars/test.zip" ), zipFile );
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        ArchiveDirectoryCache.setDefault( null );
+        super.tearDown();
+    }
+
+    public void testShareOpenZipFile()
+        throws Exception
+    {
+        final ArchiveDirectoryCache cache = new ArchiveDirectoryCache();
+        final SharedZipFile first = cache.openZipFile( zipFile, "UTF8" );
+        first.close();
+        final SharedZipFile second = cache.openZipFile( zipFile, "UTF8" );
+        assertSame( first.getZipFile(), second.getZipFile() );
+        assertReadable( second.getZipFile() );
+        second.close();
+
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 0.5, cache.getHitRate() );
+        assertEquals( 1, cache.getArchiveCount() );
+        assertEquals( Collections.list( first.getZipFile().getEntries() ).size(), cache.getEntryCount() );
+
+        // a changed archive is parsed again, and the outdated zip file closed
+        assertTrue( zipFile.setLastModified( zipFile.lastModified() - 10000 ) );
+        final SharedZipFile third = cache.openZipFile( zipFile, "UTF8" );
+        assertNotSame( first.getZipFile(), third.getZipFile() );
+        assertClosed( first.getZipFile() );
+        assertEquals( 1, cache.getArchiveCount() );
+        third.close();
+
+        cache.clear();
+        assertClosed( third.getZipFile() );
+    }
+
+    public void testEvictLeastRecentlyUsed()
+        throws Exception
+    {
+        final File other = getTestFile( "target/output/directory-cache/other.zip" );
+        FileUtils.copyFile( zipFile, other );
+        final ArchiveDirectoryCache cache = new ArchiveDirectoryCache( 1, ArchiveDirectoryCache.DEFAULT_MAX_ENTRIES );
+
+        final SharedZipFile first = cache.openZipFile( zipFile, "UTF8" );
+        final SharedZipFile second = cache.openZipFile( other, "UTF8" );
+        assertEquals( 1, cache.getEvictions() );
+        assertEquals( 1, cache.getArchiveCount() );
+
+        // still in use
+        assertReadable( first.getZipFile() );
+        first.close();
+        assertClosed( first.getZipFile() );
+
+        second.close();
+        assertReadable( second.getZipFile() );
+        cache.clear();
+    }
+
+    public void testDefaultCache()
+        throws Exception
+    {
+        final ArchiveDirectoryCache cache = new ArchiveDirectoryCache();
+        ArchiveDirectoryCache.setDefault( cache );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            final PlexusIoZipFileResourceCollection collection = new PlexusIoZipFileResourceCollection();
+            collection.setFile( zipFile );
+            final Iterator<PlexusIoResource> resources = collection.getResources();
+            while ( resources.hasNext() )
+            {
+                IOUtil.close( resources.next().getContents() );
+            }
+            ( (Closeable) resources ).close();
+        }
+        assertEquals( 1, cache.getHits() );
+
+        final File tarFile = getTestFile( "src/test/jars/test.tar.gz" );
+        for ( int i = 0; i < 2; i++ )
+        {
+            final TarFile tar = new GZipTarFile( tarFile );
+            try
+            {
+                // an entry that wasn't read yet is looked up in the index
+                IOUtil.close( tar.getInputStream( new TarArchiveEntry( "META-INF/MANIFEST.MF" ) ) );
+            }
+            finally
+            {
+                tar.close();
+            }
+        }
+        assertEquals( 2, cache.getHits() );
+        assertEquals( 2, cache.getArchiveCount() );
+    }
+
+    private static void assertReadable( ZipFile zipFile )
+        throws IOException
+    {
+        final ZipArchiveEntry entry = zipFile.getEntries().nextElement();
+        IOUtil.toByteArray( zipFile.getInputStream( entry ) );
+    }
+
+    private static void assertClosed( ZipFile zipFile )
+    {
+        try
+        {
+            assertReadable( zipFile );
+            fail( "The zip file must be closed" );
+        }
+        catch ( IOException expected )
+        {
+        }
+    }
+
+}
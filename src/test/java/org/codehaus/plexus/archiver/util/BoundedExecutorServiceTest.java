@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+public class BoundedExecutorServiceTest
+    extends TestCase
+{
+
+    public void testMaxConcurrency()
+        throws Exception
+    {
+        final ExecutorService shared = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            final BoundedExecutorService bounded = new BoundedExecutorService( shared, 2 );
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+            final AtomicInteger completed = new AtomicInteger();
+            for ( int i = 0; i < 20; i++ )
+            {
+                bounded.execute( new Runnable()
+                {
+
+                    @Override
+                    public void run()
+                    {
+                        final int now = running.incrementAndGet();
+                        synchronized ( maxRunning )
+                        {
+                            maxRunning.set( Math.max( maxRunning.get(), now ) );
+                        }
+                        try
+                        {
+                            Thread.sleep( 5 );
+                        }
+                        catch ( InterruptedException e )
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                        running.decrementAndGet();
+                        completed.incrementAndGet();
+                    }
+
+                } );
+            }
+            bounded.shutdown();
+            assertTrue( bounded.awaitTermination( 30, TimeUnit.SECONDS ) );
+            assertTrue( bounded.isTerminated() );
+            assertEquals( 20, completed.get() );
+            assertEquals( 2, maxRunning.get() );
+            assertFalse( shared.isShutdown() );
+
+            try
+            {
+                bounded.execute( new Runnable()
+                {
+
+                    @Override
+                    public void run()
+                    {
+                    }
+
+                } );
+                fail( "Tasks must be rejected after shutdown" );
+            }
+            catch ( RejectedExecutionException expected )
+            {
+            }
+        }
+        finally
+        {
+            shared.shutdownNow();
+        }
+    }
+
+    public void testCancelTasksRejectedByTheExecutor()
+        throws Exception
+    {
+        final ExecutorService shared = Executors.newFixedThreadPool( 2 );
+        final AtomicBoolean rejecting = new AtomicBoolean();
+        try
+        {
+            final BoundedExecutorService bounded = new BoundedExecutorService( new Executor()
+            {
+
+                @Override
+                public void execute( Runnable command )
+                {
+                    if ( rejecting.get() )
+                    {
+                        throw new RejectedExecutionException( "Rejected" );
+                    }
+                    shared.execute( command );
+                }
+
+            }, 1 );
+            final CountDownLatch started = new CountDownLatch( 1 );
+            final CountDownLatch release = new CountDownLatch( 1 );
+            final Future<?> first = bounded.submit( new Runnable()
+            {
+
+                @Override
+                public void run()
+                {
+                    started.countDown();
+                    try
+                    {
+                        release.await();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+            } );
+            final AtomicInteger ran = new AtomicInteger();
+            final Runnable task = new Runnable()
+            {
+
+                @Override
+                public void run()
+                {
+                    ran.incrementAndGet();
+                }
+
+            };
+            final Future<?> second = bounded.submit( task );
+            final Future<?> third = bounded.submit( task );
+            assertTrue( started.await( 30, TimeUnit.SECONDS ) );
+            rejecting.set( true );
+            release.countDown();
+
+            first.get( 30, TimeUnit.SECONDS );
+            for ( Future<?> future : new Future<?>[] {second, third} )
+            {
+                try
+                {
+                    future.get( 30, TimeUnit.SECONDS );
+                    fail( "Expected the rejected task to be cancelled" );
+                }
+                catch ( CancellationException expected )
+                {
+                }
+            }
+            assertEquals( 0, ran.get() );
+            bounded.shutdown();
+            assertTrue( bounded.awaitTermination( 30, TimeUnit.SECONDS ) );
+        }
+        finally
+        {
+            shared.shutdownNow();
+        }
+    }
+
+    public void testShutdownNowCancelsQueuedTasks()
+        throws Exception
+    {
+        final ExecutorService shared = Executors.newFixedThreadPool( 1 );
+        try
+        {
+            final BoundedExecutorService bounded = new BoundedExecutorService( shared, 1 );
+            final CountDownLatch release = new CountDownLatch( 1 );
+            bounded.submit( new Runnable()
+            {
+
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        release.await();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+            } );
+            final Future<?> queued = bounded.submit( new Runnable()
+            {
+
+                @Override
+                public void run()
+                {
+                }
+
+            } );
+            assertEquals( 1, bounded.shutdownNow().size() );
+            assertTrue( queued.isCancelled() );
+            release.countDown();
+            assertTrue( bounded.awaitTermination( 30, TimeUnit.SECONDS ) );
+        }
+        finally
+        {
+            shared.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class BufferPoolTest
+    extends TestCase
+{
+
+    private final BufferPool defaultPool = BufferPool.getDefault();
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        BufferPool.setDefault( defaultPool );
+        super.tearDown();
+    }
+
+    public void testReuseReleasedBuffers()
+    {
+        final BufferPool pool = new BufferPool( 16, 1 );
+        final byte[] first = pool.acquire();
+        final byte[] second = pool.acquire();
+        assertNotSame( first, second );
+        assertEquals( 16, first.length );
+
+        pool.release( first );
+        pool.release( second );
+        // beyond the buffers kept by the thread, or of another size
+        pool.release( new byte[ 8 ] );
+        assertSame( first, pool.acquire() );
+        assertNotSame( second, pool.acquire() );
+
+        assertEquals( 4, pool.getAcquisitions() );
+        assertEquals( 3, pool.getAllocations() );
+    }
+
+    public void testPooledStreams()
+        throws IOException
+    {
+        final BufferPool pool = new BufferPool( 1024, 3 );
+        BufferPool.setDefault( pool );
+        final byte[] data = new byte[ 10000 ];
+        new Random( 4711 ).nextBytes( data );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            final ByteArrayOutputStream target = new ByteArrayOutputStream();
+            final BufferedOutputStream out = Streams.bufferedOutputStream( target );
+            final BufferedInputStream in = Streams.bufferedInputStream( new ByteArrayInputStream( data ) );
+            out.write( in.read() );
+            final byte[] chunk = new byte[ 10 ];
+            assertEquals( 10, in.read( chunk ) );
+            out.write( chunk, 0, 10 );
+            Streams.copy( in, out );
+            in.close();
+            in.close();
+            out.close();
+            out.close();
+            assertTrue( Arrays.equals( data, target.toByteArray() ) );
+            try
+            {
+                out.write( 0 );
+                fail( "A closed stream must not be written" );
+            }
+            catch ( IOException expected )
+            {
+            }
+        }
+        // the buffers of two streams and a copy are allocated once
+        assertEquals( 9, pool.getAcquisitions() );
+        assertEquals( 3, pool.getAllocations() );
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.File;
+import java.nio.file.Files;
+import junit.framework.TestCase;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.Os;
+
+public class ExtractionPathValidatorTest
+    extends TestCase
+{
+
+    private File root;
+
+    private File dest;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        root = Files.createTempDirectory( "validator" ).toFile().getCanonicalFile();
+        dest = new File( root, "dest" );
+        dest.mkdirs();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( root );
+    }
+
+    public void testResolvesNamesLexically()
+        throws Exception
+    {
+        final ExtractionPathValidator validator = new ExtractionPathValidator( dest );
+        assertEquals( new File( dest, "a/b/c.txt" ), validator.resolve( "a/b/c.txt" ) );
+        assertEquals( new File( dest, "a/c.txt" ), validator.resolve( "a/./b/../c.txt" ) );
+        assertEquals( new File( dest, "a/c.txt" ), validator.resolve( "a\\c.txt" ) );
+        assertEquals( new File( dest, "c.txt" ), validator.resolve( new File( dest, "c.txt" ).getPath() ) );
+        assertEquals( dest, validator.resolve( "" ) );
+    }
+
+    public void testRejectsNamesOutsideOfDirectory()
+        throws Exception
+    {
+        final ExtractionPathValidator validator = new ExtractionPathValidator( dest );
+        assertOutside( validator, "../outside.txt" );
+        assertOutside( validator, "a/../../outside.txt" );
+        assertOutside( validator, "../dest-sibling/outside.txt" );
+        assertOutside( validator, new File( root, "outside.txt" ).getPath() );
+    }
+
+    public void testRejectsNamesEscapingThroughSymbolicLinks()
+        throws Exception
+    {
+        if ( Os.isFamily( Os.FAMILY_WINDOWS ) )
+        {
+            return;
+        }
+        final File outside = new File( root, "outside" );
+        outside.mkdirs();
+        new File( dest, "inside" ).mkdirs();
+        Files.createSymbolicLink( new File( dest, "toOutside" ).toPath(), outside.toPath() );
+        Files.createSymbolicLink( new File( dest, "toInside" ).toPath(), new File( dest, "inside" ).toPath() );
+
+        final ExtractionPathValidator validator = new ExtractionPathValidator( dest );
+        assertOutside( validator, "toOutside/file.txt" );
+        assertOutside( validator, "toOutside" );
+        assertEquals( new File( dest, "inside/file.txt" ), validator.resolve( "toInside/file.txt" ) );
+
+        // a directory checked before may be replaced by an extracted link
+        assertEquals( new File( dest, "later/file.txt" ), validator.resolve( "later/file.txt" ) );
+        Files.createSymbolicLink( new File( dest, "later" ).toPath(), outside.toPath() );
+        validator.symlinkCreated();
+        assertOutside( validator, "later/file.txt" );
+    }
+
+    private static void assertOutside( ExtractionPathValidator validator, String entryName )
+        throws Exception
+    {
+        try
+        {
+            validator.resolve( entryName );
+            fail( "Expected " + entryName + " to be rejected" );
+        }
+        catch ( ArchiverException e )
+        {
+            assertEquals( "Entry is outside of the target directory (" + entryName + ")", e.getMessage() );
+        }
+    }
+
+}
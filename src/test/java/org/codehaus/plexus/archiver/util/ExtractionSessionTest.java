@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Codehaus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.File;
+import java.nio.file.Files;
+import junit.framework.TestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+public class ExtractionSessionTest
+    extends TestCase
+{
+
+    private File root;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        root = Files.createTempDirectory( "session" ).toFile().getCanonicalFile();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( root );
+    }
+
+    public void testCreatesParentDirectories()
+        throws Exception
+    {
+        final File dest = new File( root, "dest" );
+        final ExtractionSession session = new ExtractionSession( dest );
+        final File file = session.resolve( "a/b/c.txt" );
+        session.createParentDirectories( file );
+        assertTrue( new File( dest, "a/b" ).isDirectory() );
+
+        // the session doesn't look again at directories it knows
+        FileUtils.deleteDirectory( new File( dest, "a" ) );
+        session.createParentDirectories( session.resolve( "a/b/d.txt" ) );
+        assertFalse( new File( dest, "a" ).exists() );
+        session.createParentDirectories( session.resolve( "a/e/f.txt" ) );
+        assertFalse( new File( dest, "a/e" ).exists() );
+    }
+
+    public void testKnowsContentsOfCreatedDirectories()
+        throws Exception
+    {
+        final File dest = new File( root, "dest" );
+        new File( dest, "existing" ).mkdirs();
+        final ExtractionSession session = new ExtractionSession( dest );
+
+        final File created = session.resolve( "existing/created/file.txt" );
+        session.createParentDirectories( created );
+        assertFalse( session.mayExist( created ) );
+        session.extracted( created );
+        assertTrue( session.mayExist( created ) );
+        // the same file on a file system ignoring case
+        assertTrue( session.mayExist( session.resolve( "existing/created/FILE.txt" ) ) );
+        assertFalse( session.mayExist( session.resolve( "existing/created/other.txt" ) ) );
+
+        final File existing = session.resolve( "existing/file.txt" );
+        session.createParentDirectories( existing );
+        assertTrue( session.mayExist( existing ) );
+
+        session.symlinkCreated();
+        assertTrue( session.mayExist( session.resolve( "existing/created/other.txt" ) ) );
+    }
+
+}
@@ -21,6 +21,7 @@
 import java.util.Arrays;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
 import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.BasePlexusArchiverTest;
 import org.codehaus.plexus.archiver.exceptions.EmptyArchiveException;
@@ -111,6 +112,32 @@ public void testCreateResourceCollection() throws Exception
         juZipFile.close();
     }
 
+    public void testCreateArchiveWithMultipleThreads() throws Exception
+    {
+        final File pomFile = new File( "pom.xml" );
+        final File xzFile = new File( "target/output/pom-parallel.xml.xz" );
+        XZArchiver xzArchiver = (XZArchiver) lookup( Archiver.ROLE, "xz" );
+        xzArchiver.setDestFile( xzFile );
+        xzArchiver.setCompressionPreset( 1 );
+        xzArchiver.setCompressionThreads( 3 );
+        xzArchiver.setCompressionBlockSize( 1024 );
+        xzArchiver.addFile( pomFile, "pom.xml" );
+        FileUtils.removePath( xzFile.getPath() );
+        xzArchiver.createArchive();
+
+        final InputStream archivePom = new XZCompressorInputStream( new FileInputStream( xzFile ) );
+        final InputStream pom = new FileInputStream( pomFile );
+        assertTrue( Arrays.equals( IOUtil.toByteArray( pom ), IOUtil.toByteArray( archivePom ) ) );
+        archivePom.close();
+        pom.close();
+    }
+
+    public void testDefaultBlockSizeIsCapped() throws Exception
+    {
+        assertEquals( 1024 * 1024, ParallelXZOutputStream.getDefaultBlockSize( 0 ) );
+        assertEquals( ParallelXZOutputStream.MAX_DEFAULT_BLOCK_SIZE, ParallelXZOutputStream.getDefaultBlockSize( 9 ) );
+    }
+
     /**
      * Tests the .xz archiver is forced set to true, and after that
      * tests the behavior when the forced is set to false.
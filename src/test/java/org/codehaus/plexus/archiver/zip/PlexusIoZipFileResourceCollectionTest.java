@@ -1,15 +1,22 @@
 package org.codehaus.plexus.archiver.zip;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.io.IOUtils;
 import org.codehaus.plexus.PlexusTestCase;
 import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
@@ -88,6 +95,89 @@ public void testFilesThatAreNotThere()
         }
     }
 
+    public void testURLsOfEntriesNeedingEscapes()
+        throws Exception
+    {
+        File testZip = new File( getBasedir(), "src/test/resources/archiveWithIllegalHtmlFileName.zip" );
+        PlexusIoZipFileResourceCollection prc = new PlexusIoZipFileResourceCollection();
+        prc.setFile( testZip );
+        final Iterator<PlexusIoResource> entries = prc.getEntries();
+        while ( entries.hasNext() )
+        {
+            final PlexusIoResource next = entries.next();
+            final InputStream contents = next.getContents();
+            final InputStream urlContents = next.getURL().openStream();
+            assertEquals( next.getName(), IOUtils.toString( contents, "UTF-8" ),
+                          IOUtils.toString( urlContents, "UTF-8" ) );
+            contents.close();
+            urlContents.close();
+        }
+    }
+
+    public void testConcurrentAccess()
+        throws Exception
+    {
+        PlexusIoZipFileResourceCollection prc = new PlexusIoZipFileResourceCollection();
+        prc.setFile( getTestFile( "src/test/jars/test.jar" ) );
+        assertTrue( prc.isConcurrentAccessSupported() );
+        final List<PlexusIoResource> resources = new ArrayList<PlexusIoResource>();
+        final Map<String, String> expected = new HashMap<String, String>();
+        final Iterator<PlexusIoResource> entries = prc.getResources();
+        while ( entries.hasNext() )
+        {
+            final PlexusIoResource next = entries.next();
+            if ( next.isFile() )
+            {
+                resources.add( next );
+                final InputStream contents = next.getContents();
+                expected.put( next.getName(), IOUtils.toString( contents, "ISO-8859-1" ) );
+                contents.close();
+            }
+        }
+        assertFalse( resources.isEmpty() );
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            final List<Future<String>> futures = new ArrayList<Future<String>>();
+            for ( int i = 0; i < 8; i++ )
+            {
+                for ( final PlexusIoResource resource : resources )
+                {
+                    futures.add( executor.submit( new Callable<String>()
+                    {
+
+                        @Override
+                        public String call()
+                            throws Exception
+                        {
+                            final InputStream contents = resource.getContents();
+                            try
+                            {
+                                return IOUtils.toString( contents, "ISO-8859-1" );
+                            }
+                            finally
+                            {
+                                contents.close();
+                            }
+                        }
+
+                    } ) );
+                }
+            }
+            for ( int i = 0; i < futures.size(); i++ )
+            {
+                final PlexusIoResource resource = resources.get( i % resources.size() );
+                assertEquals( resource.getName(), expected.get( resource.getName() ), futures.get( i ).get() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            ( (Closeable) entries ).close();
+        }
+    }
+
     public void testSymlinkEntries()
         throws Exception
     {
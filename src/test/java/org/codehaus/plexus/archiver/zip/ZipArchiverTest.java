@@ -28,32 +28,44 @@
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarInputStream;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import javax.annotation.Nonnull;
 import org.apache.commons.compress.archivers.zip.ExtraFieldUtils;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipExtraField;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.utils.BoundedInputStream;
 import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.ArchiverMetrics;
 import org.codehaus.plexus.archiver.BasePlexusArchiverTest;
 import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.archiver.UnixStat;
+import org.codehaus.plexus.archiver.diags.InMemoryArchiverMetrics;
 import org.codehaus.plexus.archiver.exceptions.EmptyArchiveException;
+import org.codehaus.plexus.archiver.jar.JarToolModularJarArchiver;
 import org.codehaus.plexus.archiver.tar.TarArchiver;
 import org.codehaus.plexus.archiver.tar.TarFile;
 import org.codehaus.plexus.archiver.util.ArchiveEntryUtils;
+import org.codehaus.plexus.archiver.util.ArchiveOutputCache;
 import org.codehaus.plexus.archiver.util.DefaultArchivedFileSet;
 import org.codehaus.plexus.archiver.util.DefaultFileSet;
 import org.codehaus.plexus.archiver.util.Streams;
@@ -70,6 +82,7 @@
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.Os;
+import org.codehaus.plexus.util.StringUtils;
 
 /**
  * @author Emmanuel Venisse
@@ -366,6 +379,314 @@ public void testCreateArchive()
         createArchive( archiver );
     }
 
+    public void testCreateArchivesOnSharedExecutor()
+        throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            for ( String name : new String[]{ "shared-executor1.zip", "shared-executor2.zip" } )
+            {
+                ZipArchiver archiver = newArchiver( name );
+                archiver.setExecutor( executor );
+                archiver.setCompressionThreads( 1 );
+                createArchive( archiver );
+                assertFalse( executor.isShutdown() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testCreateArchiveWithScatterSpillPolicies()
+        throws Exception
+    {
+        final ZipArchiver reference = newArchiver( "spill-reference.zip" );
+        reference.createArchive();
+
+        final File spillDirectory = getTestFile( "target/output/spill" );
+        FileUtils.deleteDirectory( spillDirectory );
+        spillDirectory.mkdirs();
+        for ( ScatterSpillPolicy.Store store : ScatterSpillPolicy.Store.values() )
+        {
+            final ScatterSpillPolicy policy = new ScatterSpillPolicy();
+            policy.setMemoryBudget( 100000 );
+            policy.setSpillDirectory( spillDirectory );
+            policy.setStore( store );
+            assertSameEntries( reference.getDestFile(), createArchive( "spill-" + store + ".zip", policy ) );
+            assertEquals( store.toString(), 0, spillDirectory.list().length );
+        }
+
+        // direct buffers beyond their limit spill to files
+        final ScatterSpillPolicy limited = new ScatterSpillPolicy();
+        limited.setMemoryBudget( 100000 );
+        limited.setDirectMemoryLimit( 0 );
+        limited.setSpillDirectory( spillDirectory );
+        limited.setStore( ScatterSpillPolicy.Store.DIRECT_MEMORY );
+        assertSameEntries( reference.getDestFile(), createArchive( "spill-direct-limited.zip", limited ) );
+        assertEquals( 0, spillDirectory.list().length );
+        assertSameEntries( reference.getDestFile(),
+                           createArchive( "spill-in-memory.zip", ScatterSpillPolicy.inMemory() ) );
+    }
+
+    public void testCreateAndExtractArchiveWithMetrics()
+        throws Exception
+    {
+        final File zipFile = getTestFile( "target/output/metrics.zip" );
+        final ZipArchiver archiver = getZipArchiver( zipFile );
+        archiver.addDirectory( getTestFile( "src/main/java/org/codehaus/plexus/archiver/zip" ) );
+        archiver.setCompressionThreads( 2 );
+        final InMemoryArchiverMetrics metrics = new InMemoryArchiverMetrics();
+        archiver.setMetrics( metrics );
+        archiver.createArchive();
+
+        final int files = getTestFile( "src/main/java/org/codehaus/plexus/archiver/zip" ).list().length;
+        assertEquals( files, metrics.getEntries() );
+        assertEquals( 1, metrics.getArchives() );
+        assertEquals( zipFile.length(), metrics.getArchiveBytes() );
+        assertTrue( metrics.getCompressionRatio() > 1 );
+        assertTrue( metrics.getPhaseNanos( ArchiverMetrics.Phase.ADD_RESOURCES ) > 0 );
+        assertTrue( metrics.getPhaseNanos( ArchiverMetrics.Phase.GATHER ) > 0 );
+        assertTrue( metrics.getPhaseNanos( ArchiverMetrics.Phase.TOTAL ) > 0 );
+        final long entryBytes = metrics.getEntryBytes();
+
+        metrics.reset();
+        final File extracted = getTestFile( "target/output/metrics" );
+        FileUtils.deleteDirectory( extracted );
+        extracted.mkdirs();
+        final ZipUnArchiver unarchiver = getZipUnArchiver( zipFile );
+        unarchiver.setDestDirectory( extracted );
+        unarchiver.setMetrics( metrics );
+        unarchiver.extract();
+
+        assertEquals( files, metrics.getEntries() );
+        assertEquals( entryBytes, metrics.getEntryBytes() );
+        assertEquals( zipFile.length(), metrics.getArchiveBytes() );
+        assertTrue( metrics.getPhaseNanos( ArchiverMetrics.Phase.EXTRACT ) > 0 );
+        assertTrue( metrics.getMaxEntryNanos() > 0 );
+    }
+
+    public void testCreateArchiveWithDeflatedEntryCache()
+        throws Exception
+    {
+        final File cacheDirectory = getTestFile( "target/output/deflated-entry-cache" );
+        FileUtils.deleteDirectory( cacheDirectory );
+        final DeflatedEntryCache cache = new DeflatedEntryCache( cacheDirectory );
+
+        final ZipArchiver first = newArchiver( "cache-miss.zip" );
+        first.setDeflatedEntryCache( cache );
+        first.createArchive();
+        assertEquals( 0, cache.getHits() );
+        assertTrue( cache.getStores() > 0 );
+        final long misses = cache.getMisses();
+        final long stores = cache.getStores();
+
+        final ZipArchiver second = newArchiver( "cache-hit.zip" );
+        second.setDeflatedEntryCache( cache );
+        second.createArchive();
+        assertEquals( misses, cache.getMisses() );
+        assertEquals( misses, cache.getHits() );
+        assertEquals( stores, cache.getStores() );
+        assertSameEntries( first.getDestFile(), second.getDestFile() );
+
+        // entries used recently survive, the others are evicted
+        final List<File> files = FileUtils.getFiles( cacheDirectory, "**/*.deflated", null );
+        assertEquals( stores, files.size() );
+        final long old = System.currentTimeMillis() - 2 * 60 * 60 * 1000;
+        for ( int i = 1; i < files.size(); i++ )
+        {
+            assertTrue( files.get( i ).setLastModified( old - i * 1000 ) );
+        }
+        final DeflatedEntryCache bounded = new DeflatedEntryCache( cacheDirectory, 0 );
+        bounded.trim();
+        assertEquals( stores - 1, bounded.getEvictions() );
+        assertEquals( Collections.singletonList( files.get( 0 ) ),
+                      FileUtils.getFiles( cacheDirectory, "**/*.deflated", null ) );
+    }
+
+    public void testCreateArchiveIntoStream()
+        throws Exception
+    {
+        final ZipArchiver archiver = getZipArchiver();
+        archiver.addDirectory( getTestFile( "src/test/resources/java-src" ) );
+        archiver.addFile( getTestFile( "pom.xml" ), "stored/pom.xml" );
+        final ByteArrayOutputStream out = new ByteArrayOutputStream()
+        {
+
+            @Override
+            public void close()
+            {
+                fail( "The stream must not be closed" );
+            }
+
+        };
+        archiver.createArchive( out );
+
+        final File zipFile = getTestFile( "target/output/streamed.zip" );
+        Files.write( zipFile.toPath(), out.toByteArray() );
+        final ZipFile zf = new ZipFile( zipFile );
+        try
+        {
+            final ZipArchiveEntry pom = zf.getEntry( "stored/pom.xml" );
+            assertEquals( FileUtils.fileRead( getTestFile( "pom.xml" ) ),
+                          IOUtil.toString( zf.getInputStream( pom ) ) );
+            assertNotNull( zf.getEntry( "REAMDE.md" ) );
+        }
+        finally
+        {
+            zf.close();
+        }
+
+        final ZipInputStream in = new ZipInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+        int count = 0;
+        for ( ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry() )
+        {
+            IOUtil.toByteArray( in );
+            count++;
+        }
+        in.close();
+        assertTrue( count > 2 );
+    }
+
+    public void testCreateArchiveIntoStreamWithoutStreamingSupport()
+        throws Exception
+    {
+        final JarToolModularJarArchiver archiver = new JarToolModularJarArchiver();
+        archiver.addFile( getTestFile( "pom.xml" ), "pom.xml" );
+        try
+        {
+            archiver.createArchive( new ByteArrayOutputStream() );
+            fail( "Expected an ArchiverException" );
+        }
+        catch ( ArchiverException expected )
+        {
+        }
+    }
+
+    public void testRestoreArchiveFromOutputCache()
+        throws Exception
+    {
+        final File inputDirectory = getTestFile( "target/output/output-cache-input" );
+        FileUtils.deleteDirectory( inputDirectory );
+        FileUtils.copyDirectoryStructure( getTestFile( "src/test/resources/java-src" ), inputDirectory );
+        final File cacheDirectory = getTestFile( "target/output/output-cache" );
+        FileUtils.deleteDirectory( cacheDirectory );
+        final ArchiveOutputCache cache = new ArchiveOutputCache( cacheDirectory );
+        final File zipFile = getTestFile( "target/output/output-cache.zip" );
+
+        createCachedArchive( inputDirectory, cache, zipFile );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 1, cache.getStores() );
+        final byte[] created = Files.readAllBytes( zipFile.toPath() );
+
+        // touching the inputs doesn't invalidate the cache
+        zipFile.delete();
+        for ( File file : FileUtils.getFiles( inputDirectory, null, null ) )
+        {
+            assertTrue( file.setLastModified( System.currentTimeMillis() + 10000 ) );
+        }
+        createCachedArchive( inputDirectory, cache, zipFile );
+        assertEquals( 1, cache.getHits() );
+        assertTrue( Arrays.equals( created, Files.readAllBytes( zipFile.toPath() ) ) );
+
+        // changing them does
+        FileUtils.fileAppend( new File( inputDirectory, "REAMDE.md" ).getPath(), "changed" );
+        createCachedArchive( inputDirectory, cache, zipFile );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 2, cache.getStores() );
+        assertFalse( Arrays.equals( created, Files.readAllBytes( zipFile.toPath() ) ) );
+
+        // archives used recently survive, the others are evicted
+        final List<File> archives = FileUtils.getFiles( cacheDirectory, "*.archive", null );
+        assertEquals( 2, archives.size() );
+        assertTrue( archives.get( 1 ).setLastModified( System.currentTimeMillis() - 2 * 60 * 60 * 1000 ) );
+        final String recent = archives.get( 0 ).getName();
+        new ArchiveOutputCache( cacheDirectory, 0 ).store( recent.substring( 0, recent.indexOf( '.' ) ), zipFile );
+        assertEquals( Collections.singletonList( archives.get( 0 ) ),
+                      FileUtils.getFiles( cacheDirectory, "*.archive", null ) );
+    }
+
+    public void testRestoreHardLinkedArchiveFromOutputCache()
+        throws Exception
+    {
+        final File inputDirectory = getTestFile( "target/output/output-cache-link-input" );
+        FileUtils.deleteDirectory( inputDirectory );
+        FileUtils.copyDirectoryStructure( getTestFile( "src/test/resources/java-src" ), inputDirectory );
+        final File cacheDirectory = getTestFile( "target/output/output-cache-link" );
+        FileUtils.deleteDirectory( cacheDirectory );
+        final ArchiveOutputCache cache = new ArchiveOutputCache( cacheDirectory );
+        cache.setHardLinks( true );
+        final File zipFile = getTestFile( "target/output/output-cache-link.zip" );
+        zipFile.delete();
+
+        createCachedArchive( inputDirectory, cache, zipFile );
+        final byte[] created = Files.readAllBytes( zipFile.toPath() );
+        createCachedArchive( inputDirectory, cache, zipFile );
+        assertEquals( 1, cache.getHits() );
+
+        // the archive of the changed inputs replaces the link rather than writing through it into the cache
+        final File readme = new File( inputDirectory, "REAMDE.md" );
+        final byte[] original = Files.readAllBytes( readme.toPath() );
+        FileUtils.fileAppend( readme.getPath(), "changed" );
+        createCachedArchive( inputDirectory, cache, zipFile );
+        assertEquals( 2, cache.getMisses() );
+        assertFalse( Arrays.equals( created, Files.readAllBytes( zipFile.toPath() ) ) );
+
+        Files.write( readme.toPath(), original );
+        createCachedArchive( inputDirectory, cache, zipFile );
+        assertEquals( 2, cache.getHits() );
+        assertTrue( Arrays.equals( created, Files.readAllBytes( zipFile.toPath() ) ) );
+    }
+
+    private void createCachedArchive( File inputDirectory, ArchiveOutputCache cache, File zipFile )
+        throws Exception
+    {
+        final ZipArchiver archiver = getZipArchiver( zipFile );
+        archiver.setOutputCache( cache );
+        archiver.addDirectory( inputDirectory );
+        archiver.createArchive();
+        assertTrue( zipFile.isFile() );
+    }
+
+    private File createArchive( String name, ScatterSpillPolicy policy )
+        throws Exception
+    {
+        final ZipArchiver archiver = newArchiver( name );
+        archiver.setScatterSpillPolicy( policy );
+        archiver.setCompressionThreads( 2 );
+        archiver.createArchive();
+        return archiver.getDestFile();
+    }
+
+    private void assertSameEntries( File expected, File actual )
+        throws IOException
+    {
+        final ZipFile expectedZip = new ZipFile( expected );
+        final ZipFile actualZip = new ZipFile( actual );
+        try
+        {
+            int count = 0;
+            for ( Enumeration<ZipArchiveEntry> e = expectedZip.getEntries(); e.hasMoreElements(); count++ )
+            {
+                final ZipArchiveEntry entry = e.nextElement();
+                final ZipArchiveEntry actualEntry = actualZip.getEntry( entry.getName() );
+                assertNotNull( entry.getName(), actualEntry );
+                assertEquals( entry.getName(), entry.getCrc(), actualEntry.getCrc() );
+                assertTrue( entry.getName(), Arrays.equals(
+                    IOUtil.toByteArray( expectedZip.getInputStream( entry ) ),
+                    IOUtil.toByteArray( actualZip.getInputStream( actualEntry ) ) ) );
+            }
+            assertEquals( count, Collections.list( actualZip.getEntries() ).size() );
+        }
+        finally
+        {
+            expectedZip.close();
+            actualZip.close();
+        }
+    }
+
     public void testRecompressAddedZips() throws Exception
     {
         // check that by default the zip archives are re-compressed
@@ -450,6 +771,54 @@ public InputStream transform( @Nonnull PlexusIoResource resource, @Nonnull Input
         assertTrue( a3byteFile.length() == 3 );
     }
 
+    public void testAddArchivedFileSetCopiesCompressedData()
+        throws Exception
+    {
+        // Deflated without compression, so that copied entries can be told apart from recompressed ones
+        final File source = getTestFile( "target/output/archived-uncompressed.zip" );
+        final String content = StringUtils.repeat( "archived ", 1000 );
+        final ZipArchiveOutputStream zos = new ZipArchiveOutputStream( source );
+        zos.setLevel( Deflater.NO_COMPRESSION );
+        final ZipArchiveEntry sourceEntry = new ZipArchiveEntry( "dir/archived.txt" );
+        sourceEntry.setMethod( ZipEntry.DEFLATED );
+        zos.putArchiveEntry( sourceEntry );
+        zos.write( content.getBytes( "UTF-8" ) );
+        zos.closeArchiveEntry();
+        zos.close();
+
+        final File copied = getTestFile( "target/output/archived-copied.zip" );
+        ZipArchiver archiver = getZipArchiver( copied );
+        archiver.addArchivedFileSet( source );
+        archiver.addArchivedFileSet( source, "prefixed/" );
+        final PlexusArchiverZipFileResourceCollection resources = new PlexusArchiverZipFileResourceCollection();
+        resources.setFile( source );
+        resources.setPrefix( "resources/" );
+        archiver.addResources( resources );
+        archiver.createArchive();
+
+        ZipFile zipFile = new ZipFile( copied );
+        for ( String name : new String[]{ "dir/archived.txt", "prefixed/dir/archived.txt",
+            "resources/dir/archived.txt" } )
+        {
+            final ZipArchiveEntry entry = zipFile.getEntry( name );
+            assertTrue( name, entry.getCompressedSize() > entry.getSize() );
+            assertEquals( content, IOUtil.toString( zipFile.getInputStream( entry ), "UTF-8" ) );
+        }
+        zipFile.close();
+
+        final File recompressed = getTestFile( "target/output/archived-recompressed.zip" );
+        archiver = getZipArchiver( recompressed );
+        archiver.setRecompressArchivedEntries( true );
+        archiver.addArchivedFileSet( source );
+        archiver.createArchive();
+
+        zipFile = new ZipFile( recompressed );
+        final ZipArchiveEntry entry = zipFile.getEntry( "dir/archived.txt" );
+        assertTrue( entry.getCompressedSize() < entry.getSize() );
+        assertEquals( content, IOUtil.toString( zipFile.getInputStream( entry ), "UTF-8" ) );
+        zipFile.close();
+    }
+
     public void testCreateArchiveWithStreamTransformer()
         throws IOException
     {
@@ -656,6 +1025,122 @@ public void testLastModifiedTimeRounding()
         assertEquals( 1534189012_000L, resultingZipFile.getEntry( "even-seconds" ).getTime() );
     }
 
+    public void testUpdateModeReusesUnchangedEntries()
+        throws Exception
+    {
+        final File srcDir = getTestFile( "target/output/update-mode-src" );
+        FileUtils.deleteDirectory( srcDir );
+        srcDir.mkdirs();
+        final File unchanged = new File( srcDir, "unchanged.txt" );
+        final File changed = new File( srcDir, "changed.txt" );
+        FileUtils.fileWrite( unchanged, "UTF-8", StringUtils.repeat( "unchanged ", 1000 ) );
+        FileUtils.fileWrite( changed, "UTF-8", StringUtils.repeat( "original ", 1000 ) );
+        Files.setLastModifiedTime( unchanged.toPath(), FileTime.fromMillis( 1534189012_000L ) );
+        Files.setLastModifiedTime( changed.toPath(), FileTime.fromMillis( 1534189012_000L ) );
+
+        final File destFile = getTestFile( "target/output/update-mode.zip" );
+        FileUtils.fileDelete( destFile.getPath() );
+        ZipArchiver archiver = getZipArchiver( destFile );
+        archiver.addDirectory( srcDir );
+        archiver.createArchive();
+
+        // Store the entries without compression, so that reused entries can be told apart from recompressed ones
+        final File uncompressed = getTestFile( "target/output/update-mode-uncompressed.zip" );
+        ZipFile original = new ZipFile( destFile );
+        ZipArchiveOutputStream zos = new ZipArchiveOutputStream( uncompressed );
+        zos.setLevel( Deflater.NO_COMPRESSION );
+        for ( Enumeration<ZipArchiveEntry> en = original.getEntries(); en.hasMoreElements(); )
+        {
+            final ZipArchiveEntry entry = en.nextElement();
+            final ZipArchiveEntry copy = new ZipArchiveEntry( entry.getName() );
+            copy.setTime( entry.getTime() );
+            copy.setUnixMode( entry.getUnixMode() );
+            copy.setMethod( entry.getMethod() );
+            if ( entry.getMethod() == ZipEntry.STORED )
+            {
+                copy.setSize( entry.getSize() );
+                copy.setCrc( entry.getCrc() );
+            }
+            zos.putArchiveEntry( copy );
+            IOUtil.copy( original.getInputStream( entry ), zos );
+            zos.closeArchiveEntry();
+        }
+        zos.close();
+        original.close();
+        FileUtils.rename( uncompressed, destFile );
+
+        FileUtils.fileWrite( changed, "UTF-8", StringUtils.repeat( "modified ", 1000 ) );
+        Files.setLastModifiedTime( changed.toPath(), FileTime.fromMillis( 1534189014_000L ) );
+
+        archiver = getZipArchiver( destFile );
+        archiver.setUpdateMode( true );
+        archiver.addDirectory( srcDir );
+        archiver.createArchive();
+
+        final ZipFile updated = new ZipFile( destFile );
+        final ZipArchiveEntry unchangedEntry = updated.getEntry( "unchanged.txt" );
+        final ZipArchiveEntry changedEntry = updated.getEntry( "changed.txt" );
+        assertTrue( unchangedEntry.getCompressedSize() > unchangedEntry.getSize() );
+        assertTrue( changedEntry.getCompressedSize() < changedEntry.getSize() );
+        assertEquals( StringUtils.repeat( "unchanged ", 1000 ),
+                      IOUtil.toString( updated.getInputStream( unchangedEntry ), "UTF-8" ) );
+        assertEquals( StringUtils.repeat( "modified ", 1000 ),
+                      IOUtil.toString( updated.getInputStream( changedEntry ), "UTF-8" ) );
+        updated.close();
+
+        final String[] leftOvers = destFile.getParentFile().list( new FilenameFilter()
+        {
+
+            @Override
+            public boolean accept( File dir, String name )
+            {
+                return name.startsWith( "zip" ) && name.endsWith( ".tmp" );
+            }
+
+        } );
+        assertEquals( 0, leftOvers.length );
+    }
+
+    public void testUpdateModeKeepsManifestInFront()
+        throws Exception
+    {
+        final File srcDir = getTestFile( "target/output/update-mode-manifest-src" );
+        FileUtils.deleteDirectory( srcDir );
+        new File( srcDir, "META-INF" ).mkdirs();
+        // the directory entries are written ahead of the reused ones
+        new File( srcDir, "dir" ).mkdirs();
+        final File manifest = new File( srcDir, "META-INF/MANIFEST.MF" );
+        final File file = new File( srcDir, "dir/a.txt" );
+        FileUtils.fileWrite( manifest, "UTF-8", "Manifest-Version: 1.0\r\n\r\n" );
+        FileUtils.fileWrite( file, "UTF-8", "a" );
+        Files.setLastModifiedTime( manifest.toPath(), FileTime.fromMillis( 1534189012_000L ) );
+        Files.setLastModifiedTime( file.toPath(), FileTime.fromMillis( 1534189012_000L ) );
+
+        final File destFile = getTestFile( "target/output/update-mode-manifest.jar" );
+        FileUtils.fileDelete( destFile.getPath() );
+        ZipArchiver archiver = getZipArchiver( destFile );
+        archiver.addDirectory( srcDir );
+        archiver.createArchive();
+
+        // the changed file is compressed again, the unchanged manifest may be reused
+        FileUtils.fileWrite( file, "UTF-8", "b" );
+        Files.setLastModifiedTime( file.toPath(), FileTime.fromMillis( 1534189014_000L ) );
+        archiver = getZipArchiver( destFile );
+        archiver.setUpdateMode( true );
+        archiver.addDirectory( srcDir );
+        archiver.createArchive();
+
+        final JarInputStream jar = new JarInputStream( new FileInputStream( destFile ) );
+        try
+        {
+            assertNotNull( jar.getManifest() );
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+
     /*
      */
     public void testForced()
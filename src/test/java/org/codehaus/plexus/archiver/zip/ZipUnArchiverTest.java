@@ -1,9 +1,15 @@
 package org.codehaus.plexus.archiver.zip;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.util.List;
+import java.util.TreeSet;
 import org.codehaus.plexus.PlexusTestCase;
 import org.codehaus.plexus.archiver.Archiver;
+import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.components.io.fileselectors.FileSelector;
 import org.codehaus.plexus.components.io.fileselectors.IncludeExcludeFileSelector;
@@ -214,6 +220,164 @@ public void testExtractingZipWithEntryOutsideDestDirThrowsException()
         assertTrue( ex.getMessage().startsWith( "Entry is outside of the target directory" ) );
     }
 
+    public void testParallelExtractionMatchesSequentialExtraction()
+        throws Exception
+    {
+        final File zipFile = new File( "target/output/unzip/parallel.zip" );
+        final ZipArchiver zipArchiver = getZipArchiver( zipFile );
+        zipArchiver.addDirectory( new File( "src/test/resources" ), null, new String[]
+        {
+            "utf8/**", "miscUtf8/**"
+        } );
+        zipArchiver.createArchive();
+
+        final File sequential = new File( "target/output/unzip/parallel-sequential" );
+        final File parallel = new File( "target/output/unzip/parallel-parallel" );
+        FileUtils.deleteDirectory( sequential );
+        FileUtils.deleteDirectory( parallel );
+        sequential.mkdirs();
+        parallel.mkdirs();
+
+        ZipUnArchiver zu = getZipUnArchiver( zipFile );
+        zu.setDestDirectory( sequential );
+        zu.extract();
+
+        zu = getZipUnArchiver( zipFile );
+        zu.setExtractionThreads( 4 );
+        zu.setDestDirectory( parallel );
+        zu.extract();
+
+        final List<String> expected = FileUtils.getFileNames( sequential, null, null, false );
+        final List<String> actual = FileUtils.getFileNames( parallel, null, null, false );
+        assertFalse( expected.isEmpty() );
+        assertEquals( new TreeSet<String>( expected ), new TreeSet<String>( actual ) );
+        for ( String name : expected )
+        {
+            final File expectedFile = new File( sequential, name );
+            final File actualFile = new File( parallel, name );
+            assertTrue( FileUtils.contentEquals( expectedFile, actualFile ) );
+            assertEquals( expectedFile.lastModified(), actualFile.lastModified() );
+        }
+    }
+
+    public void testParallelExtractingZipWithEntryOutsideDestDirThrowsException()
+        throws Exception
+    {
+        File testZip = new File( getBasedir(), "src/test/zips/zip-slip.zip" );
+        File outputDirectory = new File( getBasedir(), "target/zip-unarchiver-parallel-slip-tests" );
+
+        FileUtils.deleteDirectory( outputDirectory );
+
+        ZipUnArchiver zu = getZipUnArchiver( testZip );
+        zu.setExtractionThreads( 2 );
+        try
+        {
+            zu.extract( "", outputDirectory );
+            fail( "Expected an ArchiverException" );
+        }
+        catch ( ArchiverException e )
+        {
+            assertTrue( e.getMessage().startsWith( "Entry is outside of the target directory" ) );
+        }
+        for ( Thread thread : Thread.getAllStackTraces().keySet() )
+        {
+            if ( thread.getName().startsWith( "plexus-archiver-ZipUnArchiver" ) )
+            {
+                assertTrue( thread.getName(), thread.isDaemon() );
+            }
+        }
+    }
+
+    public void testExtractFromStream()
+        throws Exception
+    {
+        final File zipFile = new File( "target/output/unzip/streamed.zip" );
+        final ZipArchiver zipArchiver = getZipArchiver( zipFile );
+        // symbolic links are only told apart in the central directory, a stream extracts them as files
+        zipArchiver.addDirectory( new File( "src/test/resources" ), null, new String[]
+        {
+            "utf8/**", "miscUtf8/**", "symlinks/**"
+        } );
+        zipArchiver.createArchive();
+
+        final File fromFile = new File( "target/output/unzip/streamed-file" );
+        final File fromStream = new File( "target/output/unzip/streamed-stream" );
+        FileUtils.deleteDirectory( fromFile );
+        FileUtils.deleteDirectory( fromStream );
+        fromFile.mkdirs();
+        fromStream.mkdirs();
+
+        ZipUnArchiver zu = getZipUnArchiver( zipFile );
+        zu.setDestDirectory( fromFile );
+        zu.extract();
+
+        zu = (ZipUnArchiver) lookup( UnArchiver.ROLE, "zip" );
+        zu.setDestDirectory( fromStream );
+        final InputStream in = new FileInputStream( zipFile );
+        try
+        {
+            zu.extract( new FilterInputStream( in )
+            {
+
+                @Override
+                public void close()
+                {
+                    fail( "The stream must not be closed" );
+                }
+
+            } );
+        }
+        finally
+        {
+            in.close();
+        }
+
+        final List<String> expected = FileUtils.getFileNames( fromFile, null, null, false );
+        final List<String> actual = FileUtils.getFileNames( fromStream, null, null, false );
+        assertFalse( expected.isEmpty() );
+        assertEquals( new TreeSet<String>( expected ), new TreeSet<String>( actual ) );
+        for ( String name : expected )
+        {
+            final File expectedFile = new File( fromFile, name );
+            final File actualFile = new File( fromStream, name );
+            assertTrue( FileUtils.contentEquals( expectedFile, actualFile ) );
+            assertEquals( expectedFile.lastModified(), actualFile.lastModified() );
+        }
+    }
+
+    public void testExtractStoredEntries()
+        throws Exception
+    {
+        final File sourceDirectory = new File( "src/test/resources" );
+        final File zipFile = new File( "target/output/unzip/stored.zip" );
+        final ZipArchiver zipArchiver = getZipArchiver( zipFile );
+        zipArchiver.setCompress( false );
+        zipArchiver.addDirectory( sourceDirectory, null, new String[]
+        {
+            "symlinks/**"
+        } );
+        zipArchiver.createArchive();
+
+        for ( int threads = 1; threads <= 2; threads++ )
+        {
+            final File outputDirectory = new File( "target/output/unzip/stored-" + threads );
+            FileUtils.deleteDirectory( outputDirectory );
+            outputDirectory.mkdirs();
+            final ZipUnArchiver zu = getZipUnArchiver( zipFile );
+            zu.setDestDirectory( outputDirectory );
+            zu.setExtractionThreads( threads );
+            zu.extract();
+
+            final List<String> names = FileUtils.getFileNames( outputDirectory, null, null, false );
+            assertFalse( names.isEmpty() );
+            for ( String name : names )
+            {
+                assertTrue( name, FileUtils.contentEquals( new File( sourceDirectory, name ),
+                                                           new File( outputDirectory, name ) ) );
+            }
+        }
+    }
+
     private ZipArchiver getZipArchiver()
     {
         try